@@ -18,6 +18,7 @@
 package org.fakereplace;
 
 import java.util.Collections;
+import java.util.List;
 import java.util.Set;
 
 /**
@@ -75,7 +76,39 @@ public interface Extension {
         return null;
     }
 
+    /**
+     * Returns true if this extension wants to be told about replaceable classes as they are loaded, through
+     * {@link #replaceableClassFileLoaded(String, ClassLoader)} or {@link #replaceableClassFilesLoaded(List, ClassLoader)}.
+     * Nothing is recorded for extensions that return false.
+     */
+    default boolean isReplaceableClassFileLoadedEnabled() {
+        return false;
+    }
+
+    /**
+     * Called when a replaceable class is loaded, if {@link #isReplaceableClassFileLoadedEnabled()} returns true. Unless {@link #isReplaceableClassFileLoadedSynchronous()} returns
+     * true this is called from {@link #replaceableClassFilesLoaded(List, ClassLoader)} on a background thread, some
+     * time after the class has been loaded.
+     */
     default void replaceableClassFileLoaded(String className, ClassLoader classLoader) {
 
     }
+
+    /**
+     * Called on a background thread with the replaceable classes that have been loaded by a class loader since the
+     * last call, so an extension can process them together.
+     */
+    default void replaceableClassFilesLoaded(List<String> classNames, ClassLoader classLoader) {
+        for (String className : classNames) {
+            replaceableClassFileLoaded(className, classLoader);
+        }
+    }
+
+    /**
+     * If this returns true {@link #replaceableClassFileLoaded(String, ClassLoader)} is called while the class is being
+     * loaded, rather than being batched up and called later.
+     */
+    default boolean isReplaceableClassFileLoadedSynchronous() {
+        return false;
+    }
 }
@@ -16,6 +16,8 @@
  */
 package org.fakereplace;
 
+import java.security.ProtectionDomain;
+
 /**
  * Interface that selects which classes are replaceable.
  *
@@ -30,4 +32,20 @@ public interface ReplaceableClassSelector {
      */
     boolean isClassReplaceable(final String className, final ClassLoader loader);
 
+    /**
+     * Variant that is given the protection domain of the class, if it is known. Selectors that can make their
+     * decision from the code source should override this to avoid looking up the class file.
+     * <p>
+     * Decisions are cached per class loader and class name, so a selector must give the same answer for the same
+     * class each time it is asked.
+     *
+     * @param className The class name
+     * @param loader The class loader
+     * @param protectionDomain The protection domain, may be <code>null</code>
+     * @return <code>true</code> if this class should be hot replaceable with fakereplace
+     */
+    default boolean isClassReplaceable(final String className, final ClassLoader loader, final ProtectionDomain protectionDomain) {
+        return isClassReplaceable(className, loader);
+    }
+
 }
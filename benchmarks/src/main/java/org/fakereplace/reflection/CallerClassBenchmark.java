@@ -0,0 +1,87 @@
+/*
+ * Copyright 2016, Stuart Douglas, and individual contributors as indicated
+ * by the @authors tag.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.fakereplace.reflection;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares the two ways {@link AccessVerification} finds the caller of a reflection shim.
+ * <p>
+ * The <code>reflection</code> strategy is only available on JDK8, and needs the agent to define its accessor, so
+ * run it with <code>java -jar target/benchmarks.jar -jvmArgsAppend -javaagent:../core/target/fakereplace.jar</code>.
+ * The <code>stackwalker</code> strategy is only available on JDK9 and later. A strategy that is not available
+ * fails in setup.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class CallerClassBenchmark {
+
+    @Param({"stackwalker", "reflection"})
+    public String strategy;
+
+    private Function<Integer, Class<?>> caller;
+
+    @Setup
+    public void setup() {
+        if (strategy.equals("stackwalker")) {
+            caller = AccessVerification.createStackWalkerCaller();
+        } else {
+            caller = AccessVerification.createReflectionCaller();
+        }
+        if (caller == null) {
+            throw new IllegalStateException("The " + strategy + " strategy is not available on " + System.getProperty("java.version"));
+        }
+    }
+
+    /**
+     * The depth used by the field shims, which look one frame further up than the method and constructor shims
+     */
+    @Benchmark
+    public Class<?> fieldShimDepth() {
+        return shim();
+    }
+
+    /**
+     * The baseline cost of capturing the stack, which is what a naive implementation would do
+     */
+    @Benchmark
+    public StackTraceElement[] throwableStackTrace() {
+        return new Throwable().getStackTrace();
+    }
+
+    private Class<?> shim() {
+        return caller.apply(3);
+    }
+}
@@ -17,7 +17,9 @@
 
 package org.fakereplace.api;
 
+import java.util.Collections;
 import java.util.List;
+import java.util.Set;
 
 /**
  * interface that should be implemented by classes that with to be notified of
@@ -29,4 +31,20 @@ import java.util.List;
 public interface ClassChangeAware {
 
     void afterChange(List<ChangedClass> changed, List<NewClassData> added);
+
+    /**
+     * Instances that do not depend on each other may be notified at the same time.
+     *
+     * @return the class names of the ClassChangeAware instances that have to be notified before this one
+     */
+    default Set<String> getDependencies() {
+        return Collections.emptySet();
+    }
+
+    /**
+     * @return the changes this instance needs to be notified about
+     */
+    default ClassChangeFilter getFilter() {
+        return ClassChangeFilter.ALL;
+    }
 }
@@ -0,0 +1,140 @@
+/*
+ * Copyright 2016, Stuart Douglas, and individual contributors as indicated
+ * by the @authors tag.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.fakereplace.api;
+
+import java.lang.annotation.Annotation;
+import java.util.List;
+import java.util.function.Predicate;
+
+import javassist.bytecode.AnnotationsAttribute;
+import javassist.bytecode.ClassFile;
+
+/**
+ * Describes the changes a {@link ClassChangeAware} is interested in. If none of the changed or added classes in a
+ * batch match the filter the instance is not notified at all.
+ */
+public final class ClassChangeFilter {
+
+    /**
+     * Matches every change
+     */
+    public static final ClassChangeFilter ALL = new ClassChangeFilter((c) -> true, (n) -> true);
+
+    private static final ClassChangeFilter CHANGED_CLASSES = new ClassChangeFilter((c) -> true, (n) -> false);
+
+    private static final ClassChangeFilter NEW_CLASSES = new ClassChangeFilter((c) -> false, (n) -> true);
+
+    private final Predicate<ChangedClass> changed;
+    private final Predicate<NewClassData> added;
+
+    private ClassChangeFilter(Predicate<ChangedClass> changed, Predicate<NewClassData> added) {
+        this.changed = changed;
+        this.added = added;
+    }
+
+    /**
+     * Matches classes that have the annotation, or that had it added, removed or changed on the class or one of its
+     * members
+     */
+    public static ClassChangeFilter annotatedWith(Class<? extends Annotation> annotationType) {
+        return new ClassChangeFilter((c) -> c.getChangedClass().isAnnotationPresent(annotationType) || !c.getChangedAnnotationsByType(annotationType).isEmpty(),
+                (n) -> {
+                    AnnotationsAttribute attribute = (AnnotationsAttribute) n.getClassFile().getAttribute(AnnotationsAttribute.visibleTag);
+                    return attribute != null && attribute.getAnnotation(annotationType.getName()) != null;
+                });
+    }
+
+    /**
+     * Matches classes in the package or one of its sub packages
+     */
+    public static ClassChangeFilter inPackage(String packageName) {
+        final String prefix = packageName + '.';
+        return new ClassChangeFilter((c) -> c.getChangedClass().getName().startsWith(prefix), (n) -> n.getClassName().startsWith(prefix));
+    }
+
+    /**
+     * Matches classes that extend or implement the given type
+     */
+    public static ClassChangeFilter assignableTo(Class<?> type) {
+        return new ClassChangeFilter((c) -> type.isAssignableFrom(c.getChangedClass()), (n) -> {
+            final ClassFile file = n.getClassFile();
+            if (isAssignable(type, file.getSuperclass(), n.getClassLoader())) {
+                return true;
+            }
+            for (String i : file.getInterfaces()) {
+                if (isAssignable(type, i, n.getClassLoader())) {
+                    return true;
+                }
+            }
+            return false;
+        });
+    }
+
+    /**
+     * Matches any class that has been changed, but not classes that have been added
+     */
+    public static ClassChangeFilter changedClasses() {
+        return CHANGED_CLASSES;
+    }
+
+    /**
+     * Matches any class that has been added, but not classes that have been changed
+     */
+    public static ClassChangeFilter newClasses() {
+        return NEW_CLASSES;
+    }
+
+    public ClassChangeFilter or(ClassChangeFilter other) {
+        return new ClassChangeFilter(changed.or(other.changed), added.or(other.added));
+    }
+
+    /**
+     * Matches classes that match both filters
+     */
+    public ClassChangeFilter and(ClassChangeFilter other) {
+        return new ClassChangeFilter(changed.and(other.changed), added.and(other.added));
+    }
+
+    public boolean matches(List<ChangedClass> changedClasses, List<NewClassData> addedClasses) {
+        if (this == ALL) {
+            return true;
+        }
+        for (ChangedClass c : changedClasses) {
+            if (changed.test(c)) {
+                return true;
+            }
+        }
+        for (NewClassData n : addedClasses) {
+            if (added.test(n)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isAssignable(Class<?> type, String className, ClassLoader loader) {
+        if (type.getName().equals(className)) {
+            return true;
+        }
+        try {
+            return type.isAssignableFrom(Class.forName(className, false, loader));
+        } catch (ClassNotFoundException | LinkageError e) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,230 @@
+/*
+ * Copyright 2016, Stuart Douglas, and individual contributors as indicated
+ * by the @authors tag.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.fakereplace.core;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.List;
+
+import org.fakereplace.replacement.ClassChangeKind;
+import org.fakereplace.util.ConcurrentWeakIdentityHashMap;
+import javassist.bytecode.AnnotationDefaultAttribute;
+import javassist.bytecode.AnnotationsAttribute;
+import javassist.bytecode.AttributeInfo;
+import javassist.bytecode.ClassFile;
+import javassist.bytecode.CodeAttribute;
+import javassist.bytecode.ConstantAttribute;
+import javassist.bytecode.ExceptionsAttribute;
+import javassist.bytecode.FieldInfo;
+import javassist.bytecode.InnerClassesAttribute;
+import javassist.bytecode.LineNumberAttribute;
+import javassist.bytecode.LocalVariableAttribute;
+import javassist.bytecode.LocalVariableTypeAttribute;
+import javassist.bytecode.MethodInfo;
+import javassist.bytecode.ParameterAnnotationsAttribute;
+import javassist.bytecode.SignatureAttribute;
+import javassist.bytecode.SourceFileAttribute;
+
+/**
+ * Works out how a new version of a class differs from the version that was last applied, so redefinitions that
+ * do not change anything can be dropped, and ones that only change method bodies can skip the annotation
+ * bookkeeping.
+ * <p>
+ * Only digests of the last applied version are kept. The first redefinition of a class has nothing to compare
+ * against, so it is always treated as structural.
+ */
+final class ClassChangeClassifier {
+
+    private static final ConcurrentWeakIdentityHashMap<Class<?>, Fingerprint> appliedVersions = new ConcurrentWeakIdentityHashMap<>();
+
+    private ClassChangeClassifier() {
+
+    }
+
+    static ClassChangeKind classify(Class<?> clazz, Fingerprint fingerprint) {
+        final Fingerprint previous = appliedVersions.get(clazz);
+        if (previous == null || !Arrays.equals(previous.structure, fingerprint.structure)) {
+            return ClassChangeKind.STRUCTURAL;
+        } else if (Arrays.equals(previous.bytes, fingerprint.bytes)) {
+            return ClassChangeKind.IDENTICAL;
+        } else if (Arrays.equals(previous.code, fingerprint.code)) {
+            return ClassChangeKind.DEBUG_ONLY;
+        }
+        return ClassChangeKind.BODY_ONLY;
+    }
+
+    /**
+     * Records the version of the class that has been applied
+     */
+    static void applied(Class<?> clazz, Fingerprint fingerprint) {
+        appliedVersions.put(clazz, fingerprint);
+    }
+
+    /**
+     * Computes the digests of a class file.
+     *
+     * @param bytes the class file bytes
+     * @param file  the parsed class file, this is not modified
+     */
+    static Fingerprint fingerprint(byte[] bytes, ClassFile file) throws IOException {
+        final MessageDigest digest = newDigest();
+        final byte[] bytesDigest = digest.digest(bytes);
+
+        //the code digest is of the class with the debugging information removed. The constant pool is rebuilt so
+        //entries that were only used by the debugging information do not affect it
+        final ClassFile stripped = new ClassFile(new DataInputStream(new ByteArrayInputStream(bytes)));
+        stripped.removeAttribute(SourceFileAttribute.tag);
+        stripped.removeAttribute("SourceDebugExtension");
+        for (MethodInfo method : (List<MethodInfo>) stripped.getMethods()) {
+            final CodeAttribute code = method.getCodeAttribute();
+            if (code != null) {
+                code.getAttributes().removeIf((a) -> isDebugAttribute((AttributeInfo) a));
+            }
+        }
+        stripped.compact();
+        final DataOutputStream codeOut = new DataOutputStream(new DigestOutputStream(NullOutputStream.INSTANCE, digest));
+        stripped.write(codeOut);
+        codeOut.flush();
+        final byte[] codeDigest = digest.digest();
+
+        final DataOutputStream structureOut = new DataOutputStream(new DigestOutputStream(NullOutputStream.INSTANCE, digest));
+        writeStructure(file, structureOut);
+        structureOut.flush();
+        final byte[] structureDigest = digest.digest();
+        return new Fingerprint(bytesDigest, codeDigest, structureDigest);
+    }
+
+    private static boolean isDebugAttribute(AttributeInfo attribute) {
+        final String name = attribute.getName();
+        return name.equals(LineNumberAttribute.tag) || name.equals(LocalVariableAttribute.tag) || name.equals(LocalVariableTypeAttribute.tag);
+    }
+
+    /**
+     * Writes out everything the replacement transformers look at: the class hierarchy, the inner classes and the
+     * members and annotations of the class. Invisible annotations are included on the class and on its members, as
+     * they are in the class file that the integrations are given. Attributes are written in their resolved form, as
+     * constant pool indexes change whenever a method body does.
+     */
+    private static void writeStructure(ClassFile file, DataOutputStream out) throws IOException {
+        out.writeInt(file.getAccessFlags());
+        writeString(out, file.getName());
+        writeString(out, String.valueOf(file.getSuperclass()));
+        writeString(out, Arrays.toString(file.getInterfaces()));
+        writeAnnotations(file.getAttribute(AnnotationsAttribute.visibleTag), out);
+        writeAnnotations(file.getAttribute(AnnotationsAttribute.invisibleTag), out);
+        writeSignature(file.getAttribute(SignatureAttribute.tag), out);
+        writeInnerClasses((InnerClassesAttribute) file.getAttribute(InnerClassesAttribute.tag), out);
+        final List<FieldInfo> fields = file.getFields();
+        out.writeInt(fields.size());
+        for (FieldInfo field : fields) {
+            out.writeInt(field.getAccessFlags());
+            writeString(out, field.getName());
+            writeString(out, field.getDescriptor());
+            writeAnnotations(field.getAttribute(AnnotationsAttribute.visibleTag), out);
+            writeAnnotations(field.getAttribute(AnnotationsAttribute.invisibleTag), out);
+            writeSignature(field.getAttribute(SignatureAttribute.tag), out);
+            final ConstantAttribute constant = (ConstantAttribute) field.getAttribute(ConstantAttribute.tag);
+            writeString(out, constant == null ? "" : String.valueOf(file.getConstPool().getLdcValue(constant.getConstantValue())));
+        }
+        final List<MethodInfo> methods = file.getMethods();
+        out.writeInt(methods.size());
+        for (MethodInfo method : methods) {
+            out.writeInt(method.getAccessFlags());
+            writeString(out, method.getName());
+            writeString(out, method.getDescriptor());
+            writeAnnotations(method.getAttribute(AnnotationsAttribute.visibleTag), out);
+            writeAnnotations(method.getAttribute(AnnotationsAttribute.invisibleTag), out);
+            writeAnnotations(method.getAttribute(ParameterAnnotationsAttribute.visibleTag), out);
+            writeAnnotations(method.getAttribute(ParameterAnnotationsAttribute.invisibleTag), out);
+            writeSignature(method.getAttribute(SignatureAttribute.tag), out);
+            final ExceptionsAttribute exceptions = method.getExceptionsAttribute();
+            writeString(out, exceptions == null ? "" : Arrays.toString(exceptions.getExceptions()));
+            final AttributeInfo annotationDefault = method.getAttribute(AnnotationDefaultAttribute.tag);
+            writeString(out, annotationDefault == null ? "" : annotationDefault.toString());
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        //writeUTF has a length limit, which large annotations could exceed
+        final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static void writeAnnotations(AttributeInfo attribute, DataOutputStream out) throws IOException {
+        //both annotation attributes render their annotations and values in toString()
+        writeString(out, attribute == null ? "" : attribute.toString());
+    }
+
+    private static void writeInnerClasses(InnerClassesAttribute attribute, DataOutputStream out) throws IOException {
+        final int length = attribute == null ? 0 : attribute.tableLength();
+        out.writeInt(length);
+        for (int i = 0; i < length; ++i) {
+            out.writeInt(attribute.accessFlags(i));
+            writeString(out, String.valueOf(attribute.innerClass(i)));
+            writeString(out, String.valueOf(attribute.outerClass(i)));
+            writeString(out, String.valueOf(attribute.innerName(i)));
+        }
+    }
+
+    private static void writeSignature(AttributeInfo attribute, DataOutputStream out) throws IOException {
+        writeString(out, attribute == null ? "" : ((SignatureAttribute) attribute).getSignature());
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    static final class Fingerprint {
+
+        final byte[] bytes;
+        final byte[] code;
+        final byte[] structure;
+
+        Fingerprint(byte[] bytes, byte[] code, byte[] structure) {
+            this.bytes = bytes;
+            this.code = code;
+            this.structure = structure;
+        }
+    }
+
+    private static final class NullOutputStream extends OutputStream {
+
+        static final NullOutputStream INSTANCE = new NullOutputStream();
+
+        @Override
+        public void write(int b) {
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+        }
+    }
+}
@@ -17,17 +17,46 @@
 
 package org.fakereplace.core;
 
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.fakereplace.api.ChangedClass;
 import org.fakereplace.api.ClassChangeAware;
+import org.fakereplace.api.ClassChangeFilter;
 import org.fakereplace.api.NewClassData;
 import org.fakereplace.data.ClassLoaderData;
+import org.fakereplace.logging.Logger;
 
+/**
+ * Notifies the {@link ClassChangeAware} instances once classes have been changed.
+ * <p>
+ * Instances that do not depend on each other are notified concurrently on a bounded pool, so a slow integration does
+ * not hold up the others. Each instance is only waited for until its timeout expires, after which anything that
+ * depends on it is notified anyway. The timeout defaults to the <code>org.fakereplace.notification-timeout</code>
+ * system property in milliseconds, and can be set for a single instance by appending a dot and its class name to the
+ * property name.
+ * <p>
+ * Instances whose {@link ClassChangeFilter} does not match anything in the batch are not notified.
+ */
 public class ClassChangeNotifier {
 
+    private static final String TIMEOUT_PROPERTY = "org.fakereplace.notification-timeout";
+
+    private static final long DEFAULT_TIMEOUT = Long.getLong(TIMEOUT_PROPERTY, 60000);
+
     private static final ClassChangeNotifier INSTANCE = new ClassChangeNotifier();
 
     private static final ThreadLocal<Boolean> NOTIFICATION_IN_PROGRESS = ThreadLocal.withInitial(() -> false);
@@ -47,30 +76,210 @@ public class ClassChangeNotifier {
         if (!NOTIFICATION_IN_PROGRESS.get()) {
             NOTIFICATION_IN_PROGRESS.set(true);
             try {
-                Class<?>[] a = new Class[0];
+                final List<ClassChangeAware> awares = new ArrayList<>();
                 for (Set<ClassChangeAware> c : ClassLoaderData.allAttachment(classChangeAwares)) {
-                    for (ClassChangeAware i : c) {
-                        try {
-                            i.afterChange(changed, newClasses);
-                        } catch (Exception e) {
-                            e.printStackTrace();
+                    awares.addAll(c);
+                }
+                awares.addAll(Fakereplace.getClassChangeAwares());
+                //each filter is only evaluated once per batch, no matter how many instances share it
+                final Map<ClassChangeFilter, Boolean> matches = new IdentityHashMap<>();
+                final Map<ClassChangeAware, CompletableFuture<Void>> finished = new IdentityHashMap<>();
+                //an instance that times out may finish after the cycle has been closed, so its stages are recorded by id
+                final long cycle = ReplacementTimeline.currentCycle();
+                //the instances used to be notified on the integration thread, so they still get its context class loader
+                final ClassLoader contextClassLoader = Thread.currentThread().getContextClassLoader();
+                for (ClassChangeAware aware : dependencyOrder(awares)) {
+                    final List<CompletableFuture<Void>> dependencies = new ArrayList<>();
+                    for (ClassChangeAware dependency : awares) {
+                        if (dependency != aware && finished.containsKey(dependency) && aware.getDependencies().contains(dependency.getClass().getName())) {
+                            dependencies.add(finished.get(dependency));
                         }
                     }
-                }
-                for (ClassChangeAware aware : Fakereplace.getClassChangeAwares()) {
-                    try {
-                        aware.afterChange(changed, newClasses);
-                    } catch (Exception e) {
-                        e.printStackTrace();
+                    final CompletableFuture<Void> done = new CompletableFuture<>();
+                    finished.put(aware, done);
+                    if (!matches.computeIfAbsent(aware.getFilter(), (filter) -> filter.matches(changed, newClasses))) {
+                        Logger.getLogger(ClassChangeNotifier.class).debug(aware.getClass().getName() + " skipped as no relevant classes have changed");
+                        done.complete(null);
+                        continue;
                     }
+                    final Notification notification = new Notification(aware, changed, newClasses, done, cycle, contextClassLoader);
+                    CompletableFuture.allOf(dependencies.toArray(new CompletableFuture[dependencies.size()]))
+                            .thenRun(notification::submit);
+                }
+                CompletableFuture.allOf(finished.values().toArray(new CompletableFuture[finished.size()])).join();
+            } finally {
+                NOTIFICATION_IN_PROGRESS.set(false);
+            }
+        }
+    }
+
+    /**
+     * The notification of a single instance. Its timeout starts when it is submitted to the pool, so it also covers
+     * the time spent waiting for a thread. If it times out before it has started it is not run at all, and if it times
+     * out while it is running the pool gets another thread until it finishes, so instances that never return can not
+     * use up the pool.
+     */
+    private static final class Notification implements Runnable {
+
+        private static final int QUEUED = 0;
+        private static final int RUNNING = 1;
+        private static final int FINISHED = 2;
+        private static final int TIMED_OUT = 3;
+
+        private final ClassChangeAware aware;
+        private final List<ChangedClass> changed;
+        private final List<NewClassData> newClasses;
+        private final CompletableFuture<Void> done;
+        private final long cycle;
+        private final ClassLoader contextClassLoader;
+        private final String name;
+        private int state = QUEUED;
+        private boolean stuck;
+        private ScheduledFuture<?> timer;
+
+        Notification(ClassChangeAware aware, List<ChangedClass> changed, List<NewClassData> newClasses, CompletableFuture<Void> done, long cycle, ClassLoader contextClassLoader) {
+            this.aware = aware;
+            this.changed = changed;
+            this.newClasses = newClasses;
+            this.done = done;
+            this.cycle = cycle;
+            this.contextClassLoader = contextClassLoader;
+            this.name = aware.getClass().getName();
+        }
+
+        void submit() {
+            final long timeout = Long.getLong(TIMEOUT_PROPERTY + '.' + name, DEFAULT_TIMEOUT);
+            if (timeout > 0) {
+                synchronized (this) {
+                    timer = PoolHolder.TIMEOUTS.schedule(() -> timeout(timeout), timeout, TimeUnit.MILLISECONDS);
+                }
+            }
+            PoolHolder.POOL.execute(this);
+        }
+
+        private void timeout(long timeout) {
+            synchronized (this) {
+                if (state == QUEUED) {
+                    state = TIMED_OUT;
+                    Logger.getLogger(ClassChangeNotifier.class).error(name + " was not notified as it did not start within " + timeout + "ms");
+                } else if (state == RUNNING) {
+                    stuck = true;
+                    PoolHolder.resize(1);
+                    Logger.getLogger(ClassChangeNotifier.class).error(name + " has not finished after " + timeout + "ms, no longer waiting for it");
+                }
+            }
+            done.complete(null);
+        }
+
+        @Override
+        public void run() {
+            synchronized (this) {
+                if (state != QUEUED) {
+                    return;
                 }
+                state = RUNNING;
+            }
+            final long start = System.nanoTime();
+            final Thread thread = Thread.currentThread();
+            final ClassLoader old = thread.getContextClassLoader();
+            thread.setContextClassLoader(contextClassLoader);
+            NOTIFICATION_IN_PROGRESS.set(true);
+            try {
+                aware.afterChange(changed, newClasses);
+            } catch (Throwable e) {
+                Logger.getLogger(ClassChangeNotifier.class).error("Failed to notify " + name, e);
             } finally {
                 NOTIFICATION_IN_PROGRESS.set(false);
+                thread.setContextClassLoader(old);
+                final long end = System.nanoTime();
+                synchronized (this) {
+                    state = FINISHED;
+                    if (timer != null) {
+                        timer.cancel(false);
+                    }
+                    if (stuck) {
+                        PoolHolder.resize(-1);
+                    }
+                }
+                ReplacementTimeline.mark(cycle, name + " started", start);
+                ReplacementTimeline.mark(cycle, name + " notified", end);
+                Logger.getLogger(ClassChangeNotifier.class).debug(name + " took " + TimeUnit.NANOSECONDS.toMillis(end - start) + "ms");
+                done.complete(null);
             }
         }
     }
 
+    /**
+     * Orders the instances so that each one comes after the instances it depends on. Dependencies that would form a
+     * cycle are ignored.
+     */
+    private static List<ClassChangeAware> dependencyOrder(List<ClassChangeAware> awares) {
+        final Map<String, List<ClassChangeAware>> byName = new HashMap<>();
+        for (ClassChangeAware aware : awares) {
+            byName.computeIfAbsent(aware.getClass().getName(), (k) -> new ArrayList<>()).add(aware);
+        }
+        final List<ClassChangeAware> result = new ArrayList<>(awares.size());
+        final Map<ClassChangeAware, Boolean> visited = new IdentityHashMap<>();
+        for (ClassChangeAware aware : awares) {
+            visit(aware, byName, visited, result);
+        }
+        return result;
+    }
+
+    private static void visit(ClassChangeAware aware, Map<String, List<ClassChangeAware>> byName, Map<ClassChangeAware, Boolean> visited, List<ClassChangeAware> result) {
+        final Boolean state = visited.get(aware);
+        if (state != null) {
+            if (!state) {
+                Logger.getLogger(ClassChangeNotifier.class).error("Cyclic dependency between ClassChangeAware instances involving " + aware.getClass().getName());
+            }
+            return;
+        }
+        visited.put(aware, false);
+        for (String dependency : aware.getDependencies()) {
+            for (ClassChangeAware other : byName.getOrDefault(dependency, new ArrayList<>())) {
+                visit(other, byName, visited, result);
+            }
+        }
+        visited.put(aware, true);
+        result.add(aware);
+    }
+
     public static ClassChangeNotifier instance() {
         return INSTANCE;
     }
+
+    private static final class PoolHolder {
+
+        private static final AtomicInteger threadCount = new AtomicInteger();
+
+        private static final int THREADS = Integer.getInteger("org.fakereplace.notification-threads", 4);
+
+        static final ThreadPoolExecutor POOL = new ThreadPoolExecutor(THREADS, THREADS, 0, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(), (task) -> {
+            Thread thread = new Thread(task, "Fakereplace notification worker " + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        /**
+         * Changes the number of threads in the pool, which stays one larger for each instance that is still running
+         * after it has timed out
+         */
+        static synchronized void resize(int delta) {
+            final int size = POOL.getCorePoolSize() + delta;
+            //the maximum may never be below the core size
+            if (delta > 0) {
+                POOL.setMaximumPoolSize(size);
+                POOL.setCorePoolSize(size);
+            } else {
+                POOL.setCorePoolSize(size);
+                POOL.setMaximumPoolSize(size);
+            }
+        }
+
+        static final ScheduledExecutorService TIMEOUTS = Executors.newSingleThreadScheduledExecutor((task) -> {
+            Thread thread = new Thread(task, "Fakereplace notification timer");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
 }
@@ -0,0 +1,113 @@
+/*
+ * Copyright 2016, Stuart Douglas, and individual contributors as indicated
+ * by the @authors tag.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.fakereplace.core;
+
+import java.security.ProtectionDomain;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.fakereplace.ReplaceableClassSelector;
+import org.fakereplace.util.ConcurrentWeakIdentityHashMap;
+
+/**
+ * Decides which classes are replaceable, and remembers the answer.
+ * <p>
+ * The selectors are asked once per class loader and class name. The first request usually comes from the
+ * transformer, which knows the protection domain, so selectors can decide from the code source rather than
+ * looking up the class file. Every later lookup is a pair of hash lookups.
+ * <p>
+ * A decision made without a protection domain is kept apart, and is only used until one made with a protection
+ * domain is available, as selectors may answer differently without it. Classes of the bootstrap loader are not
+ * cached, as they are never unloaded.
+ * <p>
+ * Adding or removing a selector throws away all the cached decisions.
+ */
+class ClassClassifier {
+
+    private static final List<ReplaceableClassSelector> replaceableClassSelectors = new CopyOnWriteArrayList<>();
+
+    private static volatile Decisions decisions = new Decisions();
+
+    private ClassClassifier() {
+
+    }
+
+    static boolean isClassReplaceable(String className, ClassLoader loader, ProtectionDomain protectionDomain) {
+        if (className == null) {
+            return false; //lambdas
+        }
+        final String name = className.replace('/', '.');
+        if (loader == null) {
+            return classify(name, null, protectionDomain);
+        }
+        final LoaderDecisions loaderDecisions = decisions.get(loader);
+        Boolean result = loaderDecisions.withDomain.get(name);
+        if (result == null) {
+            if (protectionDomain != null) {
+                result = classify(name, loader, protectionDomain);
+                loaderDecisions.withDomain.put(name, result);
+                loaderDecisions.withoutDomain.remove(name);
+            } else {
+                result = loaderDecisions.withoutDomain.get(name);
+                if (result == null) {
+                    result = classify(name, loader, null);
+                    loaderDecisions.withoutDomain.put(name, result);
+                }
+            }
+        }
+        return result;
+    }
+
+    static void addReplaceableClassSelector(ReplaceableClassSelector replaceableClassSelector) {
+        replaceableClassSelectors.add(replaceableClassSelector);
+        decisions = new Decisions();
+    }
+
+    static void removeReplaceableClassSelector(ReplaceableClassSelector replaceableClassSelector) {
+        replaceableClassSelectors.remove(replaceableClassSelector);
+        decisions = new Decisions();
+    }
+
+    private static boolean classify(String className, ClassLoader loader, ProtectionDomain protectionDomain) {
+        for (ReplaceableClassSelector env : replaceableClassSelectors) {
+            if (env.isClassReplaceable(className, loader, protectionDomain)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * The decisions made against one set of selectors. A classification that races with a selector change
+     * may land in a discarded instance, which is harmless.
+     */
+    private static final class Decisions {
+        private final ConcurrentWeakIdentityHashMap<ClassLoader, LoaderDecisions> loaders = new ConcurrentWeakIdentityHashMap<>();
+
+        LoaderDecisions get(ClassLoader loader) {
+            return loaders.computeIfAbsent(loader, (l) -> new LoaderDecisions());
+        }
+    }
+
+    private static final class LoaderDecisions {
+        private final Map<String, Boolean> withDomain = new ConcurrentHashMap<>();
+        private final Map<String, Boolean> withoutDomain = new ConcurrentHashMap<>();
+    }
+}
@@ -58,9 +58,22 @@ public class ClassLoaderInstrumentation {
                 // we do not need to delegate as GlobalData will only
                 // return the data to the correct classloader.
                 // if the data is not null then we define the class, link
-                // it if requested and return it.
+                // it if requested and return it. Once it is defined the data
+                // is dropped, as findLoadedClass will return it from then on.
                 final CodeIterator iterator = method.getCodeAttribute().iterator();
                 final Bytecode b = new Bytecode(classFile.getConstPool());
+                // this runs for every class lookup, so unless there are added classes waiting
+                // to be defined or it is a fakereplace class this goes straight to the
+                // original code, without any calls or allocation
+                b.addGetstatic(ClassLookupManager.class.getName(), "pendingClasses", "I");
+                b.add(Opcode.IFNE);
+                final JumpMarker slowPath = JumpUtils.addJumpInstruction(b);
+                b.addAload(1);
+                b.addLdc("org.fakereplace");
+                b.addInvokevirtual(String.class.getName(), "startsWith", "(Ljava/lang/String;)Z");
+                b.add(Opcode.IFEQ);
+                final JumpMarker fastPath = JumpUtils.addJumpInstruction(b);
+                slowPath.mark();
                 b.addAload(1);
                 b.addAload(0);
                 b.addInvokestatic(ClassLookupManager.class.getName(), "getClassData", "(Ljava/lang/String;Ljava/lang/Object;)[B");
@@ -86,6 +99,8 @@ public class ClassLoaderInstrumentation {
                 b.addAload(3);
                 b.add(Opcode.ARRAYLENGTH);
                 b.addInvokevirtual("java.lang.ClassLoader", "defineClass", "(Ljava/lang/String;[BII)Ljava/lang/Class;");
+                b.addAload(0);
+                b.addInvokestatic(ClassLookupManager.class.getName(), "classDefined", "(Ljava/lang/Class;Ljava/lang/Object;)Ljava/lang/Class;");
                 if (method.getDescriptor().equals("Ljava/lang/String;Z)Ljava/lang/Class;")) {
                     b.addIload(2);
                 } else {
@@ -117,6 +132,7 @@ public class ClassLoaderInstrumentation {
                     b.add(Opcode.ARETURN);
                     notFakereplace.mark();
                 }
+                fastPath.mark();
 
                 iterator.insert(b.get());
                 method.getCodeAttribute().computeMaxStack();
@@ -17,8 +17,16 @@
 
 package org.fakereplace.core;
 
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.Collections;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.fakereplace.util.ConcurrentWeakIdentityHashMap;
 
 /**
  * this class is responsible for serving up classes to instrumented ClassLoaders
@@ -26,7 +34,32 @@ import java.util.concurrent.ConcurrentHashMap;
  * @author stuart
  */
 public class ClassLookupManager {
-    private static final Map<ClassIdentifier, byte[]> classData = new ConcurrentHashMap<>();
+    private static final ConcurrentWeakIdentityHashMap<ClassLoader, LoaderClasses> classData = new ConcurrentWeakIdentityHashMap<>();
+
+    /**
+     * The loaders that have been given added classes. This keeps their references reachable so they are enqueued
+     * once the loader has been collected.
+     */
+    private static final Set<LoaderClasses> loaders = Collections.newSetFromMap(new ConcurrentHashMap<>());
+
+    private static final ReferenceQueue<ClassLoader> collectedLoaders = new ReferenceQueue<>();
+
+    static final byte[] DEFINED = new byte[0];
+
+    private static final int BLOOM_FILTER_BITS = 1 << 14;
+
+    /**
+     * A bloom filter of the names of the added classes, so most lookups can be answered without looking up the
+     * loader. Bits are never cleared, as the set of added classes only grows.
+     */
+    private static final AtomicLongArray addedClassNames = new AtomicLongArray(BLOOM_FILTER_BITS / 64);
+
+    /**
+     * The number of added classes that have not been defined yet, by class loaders that have not been collected.
+     * Instrumented ClassLoaders read this directly, and only call {@link #getClassData(String, Object)} for other
+     * classes if it is not zero.
+     */
+    public static volatile int pendingClasses;
 
     public static byte[] getClassData(String className, Object cl) {
         //if is possible for this to be called by an object that is not a CL
@@ -34,6 +67,7 @@ public class ClassLookupManager {
         if (!(cl instanceof ClassLoader)) {
             return null;
         }
+        expungeCollectedLoaders();
         final ClassLoader loader = (ClassLoader) cl;
         if (className.startsWith(Constants.GENERATED_CLASS_PACKAGE)) {
             return ProxyDefinitionStore.getProxyDefinition(loader, className);
@@ -41,10 +75,105 @@ public class ClassLookupManager {
         if (className.startsWith("org.fakereplace.integration")) {
             return IntegrationActivationTransformer.getIntegrationClass(loader, className);
         }
-        return classData.get(new ClassIdentifier(className, loader));
+        final int hash = className.hashCode();
+        if (!isBloomFilterBitSet(hash) || !isBloomFilterBitSet(hash >>> 16 | hash << 16)) {
+            return null;
+        }
+        final LoaderClasses classes = classData.get(loader);
+        return classes == null ? null : classes.classes.get(className);
     }
 
     public static void addClassInfo(String className, ClassLoader loader, byte[] data) {
-        classData.put(new ClassIdentifier(className, loader), data);
+        if (loader == null) {
+            //the bootstrap loader is not instrumented, so the class could never be defined
+            return;
+        }
+        final int hash = className.hashCode();
+        setBloomFilterBit(hash);
+        setBloomFilterBit(hash >>> 16 | hash << 16);
+        expungeCollectedLoaders();
+        final LoaderClasses classes = classData.computeIfAbsent(loader, LoaderClasses::new);
+        synchronized (ClassLookupManager.class) {
+            final byte[] old = classes.classes.get(className);
+            if (old == null) {
+                classes.classes.put(className, data);
+                ++classes.pending;
+                ++pendingClasses;
+            } else if (old != DEFINED) {
+                //if the class has already been defined the new bytes would never be used
+                classes.classes.put(className, data);
+            }
+        }
+    }
+    private static boolean isBloomFilterBitSet(int hash) {
+        final int bit = hash & (BLOOM_FILTER_BITS - 1);
+        return (addedClassNames.get(bit >>> 6) & (1L << bit)) != 0;
+    }
+
+    private static void setBloomFilterBit(int hash) {
+        final int bit = hash & (BLOOM_FILTER_BITS - 1);
+        long value;
+        do {
+            value = addedClassNames.get(bit >>> 6);
+        } while (!addedClassNames.compareAndSet(bit >>> 6, value, value | (1L << bit)));
+    }
+
+    /**
+     * Added classes that were never loaded by a loader that has since been collected will never be defined, so they
+     * no longer count as pending.
+     */
+    private static void expungeCollectedLoaders() {
+        Reference<? extends ClassLoader> ref;
+        while ((ref = collectedLoaders.poll()) != null) {
+            final LoaderClasses classes = (LoaderClasses) ref;
+            synchronized (ClassLookupManager.class) {
+                if (loaders.remove(classes)) {
+                    pendingClasses -= classes.pending;
+                    classes.pending = 0;
+                }
+            }
+        }
+    }
+
+    /**
+     * Called by instrumented ClassLoaders once they have defined a class served by {@link #getClassData(String, Object)}.
+     * <p>
+     * The bytes are not needed any more, so they are replaced with an empty array. This still tells the
+     * instrumented loadClass that the class belongs to this loader, and it will find it with findLoadedClass.
+     */
+    public static Class<?> classDefined(Class<?> clazz, Object cl) {
+        final ClassLoader loader = (ClassLoader) cl;
+        final String className = clazz.getName();
+        if (className.startsWith(Constants.GENERATED_CLASS_PACKAGE)) {
+            ProxyDefinitionStore.proxyDefined(loader, className);
+        } else if (!className.startsWith("org.fakereplace.integration")) {
+            final LoaderClasses classes = classData.get(loader);
+            if (classes != null) {
+                synchronized (ClassLookupManager.class) {
+                    final byte[] old = classes.classes.replace(className, DEFINED);
+                    if (old != null && old != DEFINED) {
+                        --classes.pending;
+                        --pendingClasses;
+                    }
+                }
+            }
+        }
+        return clazz;
+    }
+
+    /**
+     * The added classes of a single loader. The loader is only weakly referenced, so these do not keep it alive.
+     */
+    private static final class LoaderClasses extends WeakReference<ClassLoader> {
+        private final Map<String, byte[]> classes = new ConcurrentHashMap<>();
+        /**
+         * guarded by the ClassLookupManager class
+         */
+        private int pending;
+
+        LoaderClasses(ClassLoader loader) {
+            super(loader, collectedLoaders);
+            loaders.add(this);
+        }
     }
 }
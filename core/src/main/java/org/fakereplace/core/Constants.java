@@ -28,6 +28,57 @@ public class Constants {
 
     public static final String ADDED_CONSTRUCTOR_DESCRIPTOR = "(I[Ljava/lang/Object;Lorg/fakereplace/core/ConstructorArgument;)V";
 
+    /**
+     * Delegators that take the method number followed by four long registers holding primitive parameters and four
+     * Object registers holding reference parameters, so added methods can be called without boxing
+     */
+    public static final String ADDED_TYPED_METHOD_NAME = "______REDEFINED_TYPED_METHOD_DELEGATOR_$";
+
+    public static final String ADDED_TYPED_STATIC_METHOD_NAME = "______REDEFINED_TYPED_STATIC_METHOD_DELEGATOR_$";
+
+    public static final String ADDED_TYPED_METHOD_DESCRIPTOR = "(IJJJJLjava/lang/Object;Ljava/lang/Object;Ljava/lang/Object;Ljava/lang/Object;)Ljava/lang/Object;";
+
+    /**
+     * Typed delegators for added methods that return a primitive, the return value is encoded as a long
+     */
+    public static final String ADDED_TYPED_PRIMITIVE_METHOD_NAME = "______REDEFINED_TYPED_PRIMITIVE_METHOD_DELEGATOR_$";
+
+    public static final String ADDED_TYPED_STATIC_PRIMITIVE_METHOD_NAME = "______REDEFINED_TYPED_STATIC_PRIMITIVE_METHOD_DELEGATOR_$";
+
+    public static final String ADDED_TYPED_PRIMITIVE_METHOD_DESCRIPTOR = "(IJJJJLjava/lang/Object;Ljava/lang/Object;Ljava/lang/Object;Ljava/lang/Object;)J";
+
+    public static final String ADDED_TYPED_CONSTRUCTOR_DESCRIPTOR = "(IJJJJLjava/lang/Object;Ljava/lang/Object;Ljava/lang/Object;Ljava/lang/Object;Lorg/fakereplace/core/ConstructorArgument;)V";
+
+    /**
+     * Hidden field that holds the values of added instance fields
+     */
+    public static final String ADDED_FIELD_SLOTS_NAME = "______REDEFINED_FIELD_SLOTS_$";
+
+    public static final String ADDED_FIELD_SLOTS_DESCRIPTOR = "[Ljava/lang/Object;";
+
+    public static final String ADDED_FIELD_GETTER_NAME = "______REDEFINED_FIELD_GETTER_$";
+
+    public static final String ADDED_FIELD_GETTER_DESCRIPTOR = "(Ljava/lang/Object;I)Ljava/lang/Object;";
+
+    public static final String ADDED_FIELD_SETTER_NAME = "______REDEFINED_FIELD_SETTER_$";
+
+    public static final String ADDED_FIELD_SETTER_DESCRIPTOR = "(Ljava/lang/Object;Ljava/lang/Object;I)V";
+
+    /**
+     * Hidden field that holds the values of added primitive instance fields, encoded as longs
+     */
+    public static final String ADDED_PRIMITIVE_FIELD_SLOTS_NAME = "______REDEFINED_PRIMITIVE_FIELD_SLOTS_$";
+
+    public static final String ADDED_PRIMITIVE_FIELD_SLOTS_DESCRIPTOR = "[J";
+
+    public static final String ADDED_PRIMITIVE_FIELD_GETTER_NAME = "______REDEFINED_PRIMITIVE_FIELD_GETTER_$";
+
+    public static final String ADDED_PRIMITIVE_FIELD_GETTER_DESCRIPTOR = "(Ljava/lang/Object;I)J";
+
+    public static final String ADDED_PRIMITIVE_FIELD_SETTER_NAME = "______REDEFINED_PRIMITIVE_FIELD_SETTER_$";
+
+    public static final String ADDED_PRIMITIVE_FIELD_SETTER_DESCRIPTOR = "(Ljava/lang/Object;JI)V";
+
     public static final String FINAL_METHOD_ATTRIBUTE = "org.fakereplace.final";
 
 }
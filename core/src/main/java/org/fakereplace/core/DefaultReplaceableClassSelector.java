@@ -18,9 +18,12 @@
 package org.fakereplace.core;
 
 import java.net.URL;
+import java.security.CodeSource;
+import java.security.ProtectionDomain;
 
 import org.fakereplace.ReplaceableClassSelector;
 import org.fakereplace.logging.Logger;
+import org.fakereplace.util.PrefixTrie;
 
 /**
  * class that stores some basic environment info.
@@ -31,47 +34,82 @@ public class DefaultReplaceableClassSelector implements ReplaceableClassSelector
 
     private static final Logger log = Logger.getLogger(DefaultReplaceableClassSelector.class);
 
-    private static final String[] replaceablePackages;
+    private static final PrefixTrie replaceablePackages;
 
     public static final DefaultReplaceableClassSelector INSTANCE = new DefaultReplaceableClassSelector();
 
     static {
         String plist = AgentOptions.getOption(AgentOption.PACKAGES);
         if (plist == null || plist.length() == 0) {
-            replaceablePackages = new String[0];
+            replaceablePackages = new PrefixTrie();
         } else {
-            replaceablePackages = plist.split(";");
+            replaceablePackages = new PrefixTrie(plist.split(";"));
         }
     }
 
     @Override
     public boolean isClassReplaceable(String className, ClassLoader loader) {
+        return isClassReplaceable(className, loader, null);
+    }
+
+    @Override
+    public boolean isClassReplaceable(String className, ClassLoader loader, ProtectionDomain protectionDomain) {
         if (className == null) {
             return false; //lambdas
         }
         if (loader == null) {
             return false;
         }
-        className = className.replace("/", ".");
-        for (String i : replaceablePackages) {
-            if (className.startsWith(i)) {
-                log.trace(className + " is replaceable as it belongs to " + i);
-                return true;
-            }
+        if (replaceablePackages.matches(className)) {
+            log.trace(className + " is replaceable as it belongs to a replaceable package");
+            return true;
         }
         if (className.contains("$Proxy")) {
             log.trace(className + " is replaceable as it is a proxy");
             return true;
         }
-        URL u = loader.getResource(className.replace('.', '/') + ".class");
-        if (u != null) {
-            if (u.getProtocol().equals("file") || u.getProtocol().equals("vfsfile")) {
-                log.trace(className + " is replaceable as it is exploded");
-                return true;
-            }
+        Boolean exploded = isExploded(protectionDomain);
+        if (exploded == null) {
+            URL u = loader.getResource(className.replace('.', '/') + ".class");
+            exploded = u != null && isExplodedProtocol(u.getProtocol());
+        }
+        if (exploded) {
+            log.trace(className + " is replaceable as it is exploded");
+            return true;
         }
 
         log.trace(className + " is not replaceable");
         return false;
     }
+
+    /**
+     * Works out if a class was loaded from an exploded directory by looking at its code source, which avoids
+     * looking up the class file through the class loader.
+     *
+     * @return the answer, or <code>null</code> if the code source does not tell us
+     */
+    private static Boolean isExploded(ProtectionDomain protectionDomain) {
+        if (protectionDomain == null) {
+            return null;
+        }
+        CodeSource codeSource = protectionDomain.getCodeSource();
+        if (codeSource == null || codeSource.getLocation() == null) {
+            return null;
+        }
+        URL location = codeSource.getLocation();
+        String protocol = location.getProtocol();
+        if (protocol.equals("file")) {
+            //directory code sources end in a slash, anything else is an archive
+            return location.getPath().endsWith("/");
+        } else if (protocol.equals("vfsfile")) {
+            return true;
+        } else if (protocol.equals("jar")) {
+            return false;
+        }
+        return null;
+    }
+
+    private static boolean isExplodedProtocol(String protocol) {
+        return protocol.equals("file") || protocol.equals("vfsfile");
+    }
 }
@@ -26,11 +26,14 @@ import java.io.IOException;
 import java.lang.instrument.ClassDefinition;
 import java.lang.instrument.Instrumentation;
 import java.lang.instrument.UnmodifiableClassException;
+import java.security.ProtectionDomain;
+import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
 import java.util.ServiceLoader;
 import java.util.Set;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
 
 import org.fakereplace.Extension;
 import org.fakereplace.ReplaceableClassSelector;
@@ -39,8 +42,11 @@ import org.fakereplace.api.NewClassData;
 import org.fakereplace.data.BaseClassData;
 import org.fakereplace.data.ClassDataBuilder;
 import org.fakereplace.data.ClassDataStore;
+import org.fakereplace.logging.Logger;
+import org.fakereplace.reflection.ReflectionCache;
 import org.fakereplace.replacement.AddedClass;
 import org.fakereplace.replacement.AnnotationTransformer;
+import org.fakereplace.replacement.ClassChangeKind;
 import org.fakereplace.replacement.FieldReplacementTransformer;
 import org.fakereplace.replacement.MethodReplacementTransformer;
 
@@ -59,8 +65,6 @@ public class Fakereplace {
 
     private static volatile MainTransformer mainTransformer;
 
-    private static final List<ReplaceableClassSelector> replaceableClassSelectors = new CopyOnWriteArrayList<>();
-
     private static final List<ClassChangeAware> classChangeAwares = new CopyOnWriteArrayList<>();
 
 
@@ -71,7 +75,7 @@ public class Fakereplace {
 
         final Set<Extension> extension = getIntegrationInfo(ClassLoader.getSystemClassLoader());
 
-        replaceableClassSelectors.add(DefaultReplaceableClassSelector.INSTANCE);
+        addReplaceableClassSelector(DefaultReplaceableClassSelector.INSTANCE);
 
         //first we need to instrument the class loaders
         final Set<Class> cls = new HashSet<>();
@@ -109,23 +113,92 @@ public class Fakereplace {
 
     public static void redefine(ClassDefinition[] classes, AddedClass[] addedData, boolean wait) {
         try {
-            for (AddedClass i : addedData) {
-                ClassFile cf = new ClassFile(new DataInputStream(new ByteArrayInputStream(i.getData())));
-                mainTransformer.addNewClass(new NewClassData(i.getClassName(), i.getLoader(), cf, i.getData()));
-            }
-            for (ClassDefinition i : classes) {
+            final long start = System.nanoTime();
+            final long cycle = ReplacementTimeline.begin(start);
+            ReplacementTimeline.mark(cycle, "redefinition started", start);
+            ReflectionCache.invalidate();
+            final NewClassData[] newClasses = new NewClassData[addedData.length];
+            //parsing the classes and resetting their base data is independent for each class, so it is done in parallel
+            RedefinitionExecutor.forEach(addedData.length, (index) -> {
+                AddedClass i = addedData[index];
+                try {
+                    ClassFile cf = new ClassFile(new DataInputStream(new ByteArrayInputStream(i.getData())));
+                    newClasses[index] = new NewClassData(i.getClassName(), i.getLoader(), cf, i.getData());
+                } catch (IOException e) {
+                    throw new RuntimeException(e);
+                }
+                ClassLookupManager.addClassInfo(i.getClassName(), i.getLoader(), i.getData());
+            });
+            final ClassChangeKind[] changeKinds = new ClassChangeKind[classes.length];
+            final ClassChangeClassifier.Fingerprint[] fingerprints = new ClassChangeClassifier.Fingerprint[classes.length];
+            RedefinitionExecutor.forEach(classes.length, (index) -> {
+                ClassDefinition i = classes[index];
+                ClassFile file = null;
+                ClassChangeKind changeKind = ClassChangeKind.STRUCTURAL;
+                try {
+                    file = new ClassFile(new DataInputStream(new ByteArrayInputStream(i.getDefinitionClassFile())));
+                    fingerprints[index] = ClassChangeClassifier.fingerprint(i.getDefinitionClassFile(), file);
+                    changeKind = ClassChangeClassifier.classify(i.getDefinitionClass(), fingerprints[index]);
+                } catch (IOException e) {
+                    //the transformer will report this
+                }
+                changeKinds[index] = changeKind;
+                if (changeKind == ClassChangeKind.IDENTICAL) {
+                    return;
+                }
                 ClassDataStore.instance().markClassReplaced(i.getDefinitionClass());
                 BaseClassData baseClassData = ClassDataStore.instance().getBaseClassData(i.getDefinitionClass().getClassLoader(), i.getDefinitionClass().getName());
                 if (baseClassData != null) {
                     ClassDataStore.instance().saveClassData(i.getDefinitionClass().getClassLoader(), i.getDefinitionClass().getName(), new ClassDataBuilder(baseClassData));
                 }
+                if (file != null) {
+                    mainTransformer.addParsedClass(i.getDefinitionClass(), i.getDefinitionClassFile(), file, changeKind);
+                }
+            });
+            //identical classes are dropped, and if nothing structural has changed the integrations do not need to wait
+            final List<ClassDefinition> changed = new ArrayList<>(classes.length);
+            boolean structural = addedData.length > 0;
+            for (int index = 0; index < classes.length; ++index) {
+                if (changeKinds[index] != ClassChangeKind.IDENTICAL) {
+                    changed.add(classes[index]);
+                    structural |= changeKinds[index] == ClassChangeKind.STRUCTURAL;
+                }
+            }
+            for (NewClassData newClass : newClasses) {
+                mainTransformer.addNewClass(newClass);
             }
-            for (AddedClass c : addedData) {
-                ClassLookupManager.addClassInfo(c.getClassName(), c.getLoader(), c.getData());
+            final long analysed = System.nanoTime();
+            if (!changed.isEmpty()) {
+                try {
+                    inst.redefineClasses(changed.toArray(new ClassDefinition[changed.size()]));
+                } finally {
+                    for (ClassDefinition i : changed) {
+                        mainTransformer.removeParsedClass(i.getDefinitionClass());
+                    }
+                }
+                for (int index = 0; index < classes.length; ++index) {
+                    if (changeKinds[index] != ClassChangeKind.IDENTICAL && fingerprints[index] != null) {
+                        ClassChangeClassifier.applied(classes[index].getDefinitionClass(), fingerprints[index]);
+                    }
+                }
             }
-            inst.redefineClasses(classes);
+            final long redefined = System.nanoTime();
             clearJvmCaches();
+            final long cleared = System.nanoTime();
+            ReplacementTimeline.mark(cycle, "analysis finished", analysed);
+            ReplacementTimeline.mark(cycle, "classes redefined", redefined);
+            ReplacementTimeline.mark(cycle, "caches cleared", cleared);
+            if (!mainTransformer.isIntegrationPending()) {
+                //nothing else is going to happen as part of this cycle
+                ReplacementTimeline.complete(cycle);
+            }
+            Logger.getLogger(Fakereplace.class).debug("Fakereplace redefined " + changed.size() + " classes (" + (classes.length - changed.size()) + " unchanged) and added "
+                    + addedData.length + " classes, analysis took " + millis(analysed - start) + "ms, redefinition " + millis(redefined - analysed)
+                    + "ms and clearing caches " + millis(cleared - redefined) + "ms");
             if (wait) {
+                if (!structural) {
+                    mainTransformer.runPendingIntegration();
+                }
                 mainTransformer.waitForTasks();
             }
         } catch (Throwable e) {
@@ -158,9 +231,14 @@ public class Fakereplace {
         }
     }
 
+    private static long millis(long nanos) {
+        return TimeUnit.NANOSECONDS.toMillis(nanos);
+    }
+
     private static void clearJvmCaches() {
         Introspector.flushCaches();
         ClassInfoTransformer.clearClassInfoCache();
+        ReflectionCache.invalidate();
     }
 
     public static Instrumentation getInstrumentation() {
@@ -181,19 +259,18 @@ public class Fakereplace {
     }
 
     public static boolean isClassReplaceable(String className, ClassLoader classLoader) {
-        for (ReplaceableClassSelector env : replaceableClassSelectors) {
-            if (env.isClassReplaceable(className, classLoader)) {
-                return true;
-            }
-        }
-        return false;
+        return ClassClassifier.isClassReplaceable(className, classLoader, null);
+    }
+
+    public static boolean isClassReplaceable(String className, ClassLoader classLoader, ProtectionDomain protectionDomain) {
+        return ClassClassifier.isClassReplaceable(className, classLoader, protectionDomain);
     }
 
     public static void addReplaceableClassSelector(ReplaceableClassSelector replaceableClassSelector) {
-        replaceableClassSelectors.add(replaceableClassSelector);
+        ClassClassifier.addReplaceableClassSelector(replaceableClassSelector);
     }
     public static void removeReplaceableClassSelector(ReplaceableClassSelector replaceableClassSelector) {
-        replaceableClassSelectors.remove(replaceableClassSelector);
+        ClassClassifier.removeReplaceableClassSelector(replaceableClassSelector);
     }
 
     public static void addClassChangeAware(ClassChangeAware classChangeAware) {
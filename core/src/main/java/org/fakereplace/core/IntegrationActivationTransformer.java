@@ -28,7 +28,6 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.WeakHashMap;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArrayList;
 
@@ -37,6 +36,7 @@ import org.fakereplace.ReplaceableClassSelector;
 import org.fakereplace.api.ClassChangeAware;
 import org.fakereplace.data.InstanceTracker;
 import org.fakereplace.replacement.notification.ChangedClassImpl;
+import org.fakereplace.util.ConcurrentWeakIdentityHashMap;
 import javassist.bytecode.BadBytecode;
 import javassist.bytecode.Bytecode;
 import javassist.bytecode.ClassFile;
@@ -55,13 +55,23 @@ class IntegrationActivationTransformer implements FakereplaceTransformer {
 
     private final Set<String> loadedClassChangeAwares = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
 
-    private static final Set<ClassLoader> integrationClassloader = Collections.newSetFromMap(Collections.synchronizedMap(new WeakHashMap<>()));
+    private static final ConcurrentWeakIdentityHashMap<ClassLoader, Boolean> integrationClassloader = new ConcurrentWeakIdentityHashMap<>();
+
+    /**
+     * The integration classes are the same for every class loader, so they are only read from the agent jar once
+     */
+    private static final Map<String, byte[]> integrationClasses = new ConcurrentHashMap<>();
 
     private final List<FakereplaceTransformer> integrationTransformers = new CopyOnWriteArrayList<>();
 
     private final Set<String> trackedInstances = new HashSet<>();
 
-    private final List<Extension> extensions;
+    /**
+     * extensions that are told about replaceable classes while they are being loaded
+     */
+    private final List<Extension> synchronousExtensions = new ArrayList<>();
+
+    private final ReplaceableClassFileEvents classFileEvents;
 
 
     IntegrationActivationTransformer(Set<Extension> extension) {
@@ -81,7 +91,23 @@ class IntegrationActivationTransformer implements FakereplaceTransformer {
             }
         }
         this.integrationClassTriggers = integrationClassTriggers;
-        this.extensions = new ArrayList<>(extension);
+        final List<Extension> asynchronousExtensions = new ArrayList<>();
+        for (Extension i : extension) {
+            if (!i.isReplaceableClassFileLoadedEnabled()) {
+                continue;
+            }
+            if (i.isReplaceableClassFileLoadedSynchronous()) {
+                synchronousExtensions.add(i);
+            } else {
+                asynchronousExtensions.add(i);
+            }
+        }
+        if (asynchronousExtensions.isEmpty()) {
+            this.classFileEvents = null;
+        } else {
+            this.classFileEvents = new ReplaceableClassFileEvents(asynchronousExtensions);
+            this.classFileEvents.start();
+        }
     }
 
     @Override
@@ -93,9 +119,12 @@ class IntegrationActivationTransformer implements FakereplaceTransformer {
             }
         }
         if(replaceable) {
-            for(Extension i : extensions) {
+            for(Extension i : synchronousExtensions) {
                 i.replaceableClassFileLoaded(className, loader);
             }
+            if (classFileEvents != null) {
+                classFileEvents.classFileLoaded(className, loader);
+            }
         }
 
         if (trackedInstances.contains(file.getName())) {
@@ -105,7 +134,7 @@ class IntegrationActivationTransformer implements FakereplaceTransformer {
 
         if (integrationClassTriggers.containsKey(className)) {
             modified = true;
-            integrationClassloader.add(loader);
+            integrationClassloader.put(loader, Boolean.TRUE);
             // we need to load the class in another thread
             // otherwise it will not go through the javaagent
             final Extension extension = integrationClassTriggers.get(className);
@@ -132,15 +161,19 @@ class IntegrationActivationTransformer implements FakereplaceTransformer {
     }
 
     public static byte[] getIntegrationClass(ClassLoader c, String name) {
-        if (!integrationClassloader.contains(c)) {
+        if (integrationClassloader.get(c) == null) {
             return null;
         }
+        return integrationClasses.computeIfAbsent(name, IntegrationActivationTransformer::readIntegrationClass);
+    }
+
+    private static byte[] readIntegrationClass(String name) {
         URL resource = ClassLoader.getSystemClassLoader().getResource(name.replace('.', '/') + ".class");
         if (resource == null) {
             throw new RuntimeException("Could not load integration class " + name);
         }
         try (InputStream in = resource.openStream()) {
-            return org.fakereplace.util.FileReader.readFileBytes(resource.openStream());
+            return org.fakereplace.util.FileReader.readFileBytes(in);
         } catch (Exception e) {
             throw new RuntimeException(e);
         }
@@ -28,16 +28,20 @@ import java.lang.instrument.IllegalClassFormatException;
 import java.lang.instrument.UnmodifiableClassException;
 import java.security.ProtectionDomain;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.Timer;
 import java.util.TimerTask;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArrayList;
 
 import org.fakereplace.api.ChangedClass;
 import org.fakereplace.api.NewClassData;
 import org.fakereplace.logging.Logger;
+import org.fakereplace.replacement.ClassChangeKind;
 import org.fakereplace.replacement.notification.ChangedClassImpl;
 import org.fakereplace.util.DescriptorUtils;
 import javassist.ClassPool;
@@ -62,6 +66,11 @@ public class MainTransformer implements ClassFileTransformer {
 
     private final List<ChangedClass> changedClasses = new CopyOnWriteArrayList<>();
     private final List<NewClassData> addedClasses = new CopyOnWriteArrayList<>();
+    /**
+     * class files that have already been parsed before the class is redefined, so the work does not have to be
+     * repeated in the transformer callback
+     */
+    private final Map<Class<?>, ParsedClass> parsedClasses = new ConcurrentHashMap<>();
     private volatile long integrationTime;
     private final Timer timer = new Timer("Fakereplace integration timer", true);
 
@@ -69,6 +78,11 @@ public class MainTransformer implements ClassFileTransformer {
      * as some tasks are run asyncronously this allows external agents to wait for them to complete
      */
     private boolean waitingForIntegration;
+    /**
+     * true while {@link #runIntegration()} is notifying, so the timer and {@link #runPendingIntegration()} can not
+     * start a second run at the same time
+     */
+    private boolean integrationRunning;
     private int integrationRun;
     private int retransformationOutstandingCount;
 
@@ -83,7 +97,7 @@ public class MainTransformer implements ClassFileTransformer {
             //TODO: deal with lambdas
             return classfileBuffer;
         }
-        boolean replaceable = Fakereplace.isClassReplaceable(className, loader);
+        boolean replaceable = Fakereplace.isClassReplaceable(className, loader, protectionDomain);
         if (classBeingRedefined != null) {
             retransformationStarted = true;
             if (logClassRetransformation && replaceable) {
@@ -103,7 +117,13 @@ public class MainTransformer implements ClassFileTransformer {
         final ClassFile file;
         try {
             Set<MethodInfo> modifiedMethods = new HashSet<>();
-            file = new ClassFile(new DataInputStream(new ByteArrayInputStream(classfileBuffer)));
+            final ParsedClass parsed = classBeingRedefined == null ? null : parsedClasses.remove(classBeingRedefined);
+            if (parsed != null && Arrays.equals(parsed.bytes, classfileBuffer)) {
+                file = parsed.file;
+                changedClass.setChangeKind(parsed.changeKind);
+            } else {
+                file = new ClassFile(new DataInputStream(new ByteArrayInputStream(classfileBuffer)));
+            }
             for (final FakereplaceTransformer transformer : transformers) {
                 if (transformer.transform(loader, className, classBeingRedefined, protectionDomain, file, classesToRetransform, changedClass, modifiedMethods, replaceable)) {
                     changed = true;
@@ -193,12 +213,14 @@ public class MainTransformer implements ClassFileTransformer {
                     synchronized (this) {
                         retransformationOutstandingCount++;
                     }
+                    final long cycle = ReplacementTimeline.currentCycle();
                     Thread t = new Thread(() -> {
                         try {
                             Fakereplace.getInstrumentation().retransformClasses(classesToRetransform.toArray(new Class[classesToRetransform.size()]));
                         } catch (UnmodifiableClassException e) {
                             log.error("Failed to retransform classes", e);
                         } finally {
+                            ReplacementTimeline.mark(cycle, "classes retransformed", System.nanoTime());
                             synchronized (MainTransformer.this) {
                                 retransformationOutstandingCount--;
                                 notifyAll();
@@ -224,6 +246,18 @@ public class MainTransformer implements ClassFileTransformer {
         }
     }
 
+    /**
+     * Registers a class file that has been parsed ahead of the redefinition of the given class. It is only used if the
+     * transformer is called with exactly the same bytes.
+     */
+    void addParsedClass(Class<?> clazz, byte[] bytes, ClassFile file, ClassChangeKind changeKind) {
+        parsedClasses.put(clazz, new ParsedClass(bytes, file, changeKind));
+    }
+
+    void removeParsedClass(Class<?> clazz) {
+        parsedClasses.remove(clazz);
+    }
+
     private void queueIntegration() {
         //retransformed classes should trigger this as well
         synchronized (this) {
@@ -255,23 +289,39 @@ public class MainTransformer implements ClassFileTransformer {
     }
 
     public void runIntegration() {
+        List<ChangedClass> changes;
+        List<NewClassData> added;
+        synchronized (this) {
+            if (integrationRunning) {
+                //the run in progress will schedule another one if more changes come in
+                return;
+            }
+            integrationRunning = true;
+            changes = new ArrayList<>(changedClasses);
+            changedClasses.clear();
+            added = new ArrayList<>(addedClasses);
+            addedClasses.clear();
+        }
         System.out.println("Running Integration");
+        final long cycle = ReplacementTimeline.currentCycle();
+        ReplacementTimeline.mark(cycle, "integration started", System.nanoTime());
         try {
-            List<ChangedClass> changes;
-            List<NewClassData> added;
-            synchronized (this) {
-                changes = new ArrayList<>(changedClasses);
-                changedClasses.clear();
-                added = new ArrayList<>(addedClasses);
-                addedClasses.clear();
-            }
             if (!changes.isEmpty() || !added.isEmpty()) {
                 ClassChangeNotifier.instance().afterChange(changes, added);
             }
         } finally {
+            ReplacementTimeline.mark(cycle, "integration finished", System.nanoTime());
+            ReplacementTimeline.complete(cycle);
             synchronized (this) {
-                waitingForIntegration = false;
+                integrationRunning = false;
                 integrationRun++;
+                if (changedClasses.isEmpty() && addedClasses.isEmpty()) {
+                    waitingForIntegration = false;
+                } else {
+                    //changes that came in while this run was in progress
+                    integrationTime = System.currentTimeMillis() + INTEGRATION_WAIT_TIME;
+                    timer.schedule(new IntegrationTask(integrationRun), INTEGRATION_WAIT_TIME);
+                }
                 notifyAll();
             }
         }
@@ -283,6 +333,23 @@ public class MainTransformer implements ClassFileTransformer {
 
     }
 
+    /**
+     * Runs the integration straight away rather than waiting for the timer, as long as there are no retransformations
+     * still outstanding that could add more changes.
+     */
+    public void runPendingIntegration() {
+        synchronized (this) {
+            if (!waitingForIntegration || integrationRunning || retransformationOutstandingCount > 0) {
+                return;
+            }
+        }
+        runIntegration();
+    }
+
+    public synchronized boolean isIntegrationPending() {
+        return waitingForIntegration;
+    }
+
     public void waitForTasks() {
         synchronized (this) {
             while (waitingForIntegration) {
@@ -295,6 +362,18 @@ public class MainTransformer implements ClassFileTransformer {
         }
     }
 
+    private static final class ParsedClass {
+        final byte[] bytes;
+        final ClassFile file;
+        final ClassChangeKind changeKind;
+
+        ParsedClass(byte[] bytes, ClassFile file, ClassChangeKind changeKind) {
+            this.bytes = bytes;
+            this.file = file;
+            this.changeKind = changeKind;
+        }
+    }
+
     private class IntegrationTask extends TimerTask {
         private final int integrationRun;
         public IntegrationTask(int integrationRun) {
@@ -307,7 +386,7 @@ public class MainTransformer implements ClassFileTransformer {
                 return;
             }
             synchronized (MainTransformer.this) {
-                if (retransformationOutstandingCount > 0) {
+                if (retransformationOutstandingCount > 0 || integrationRunning) {
                     return;
                 }
                 if(this.integrationRun != MainTransformer.this.integrationRun) {
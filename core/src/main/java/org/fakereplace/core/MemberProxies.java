@@ -0,0 +1,104 @@
+/*
+ * Copyright 2016, Stuart Douglas, and individual contributors as indicated
+ * by the @authors tag.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.fakereplace.core;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+import org.fakereplace.data.ClassLoaderData;
+
+/**
+ * The proxies that back the added members of one version of a class.
+ * <p>
+ * A proxy only depends on the signature and the annotations of the member it stands in for, not on its body, so
+ * when a class is redefined again the proxies of members that have not changed are reused rather than defining
+ * another class. Each member is identified by a key that has to describe everything that goes into its proxy.
+ * <p>
+ * Once all the members of the new version have been looked up {@link #commit()} makes them the ones that the next
+ * version can reuse, and proxies of members that are gone are no longer counted as live.
+ */
+public class MemberProxies {
+
+    private static final AtomicInteger liveProxies = new AtomicInteger();
+    private static final AtomicLong reusedProxies = new AtomicLong();
+
+    private final ClassLoader loader;
+    private final String key;
+    private final Map<String, String> previous;
+    private final Map<String, String> current = new HashMap<>();
+
+    private MemberProxies(ClassLoader loader, String key, Map<String, String> previous) {
+        this.loader = loader;
+        this.key = key;
+        this.previous = previous;
+    }
+
+    /**
+     * @param kind distinguishes the different kinds of proxy for the same class, as they are committed separately
+     */
+    public static MemberProxies forClass(ClassLoader loader, String className, String kind) {
+        final String key = kind + ' ' + className.replace('/', '.');
+        final Map<String, String> previous = ClassLoaderData.get(loader).getMemberProxies().get(key);
+        return new MemberProxies(loader, key, previous == null ? new HashMap<>() : previous);
+    }
+
+    /**
+     * Returns the proxy for a member, either the one the last version used or a newly defined one.
+     *
+     * @param memberKey describes everything that goes into the proxy
+     * @param generator creates the proxy class file given the proxy name
+     */
+    public String getProxy(String memberKey, Function<String, byte[]> generator) {
+        String proxyName = current.get(memberKey);
+        if (proxyName != null) {
+            return proxyName;
+        }
+        proxyName = previous.get(memberKey);
+        if (proxyName != null) {
+            //only counted the first time this version asks for it
+            reusedProxies.incrementAndGet();
+        } else {
+            proxyName = ProxyDefinitionStore.getProxyName();
+            ProxyDefinitionStore.saveProxyDefinition(loader, proxyName, generator.apply(proxyName));
+        }
+        current.put(memberKey, proxyName);
+        return proxyName;
+    }
+
+    public void commit() {
+        final Map<String, String> old = ClassLoaderData.get(loader).getMemberProxies().put(key, current);
+        liveProxies.addAndGet(current.size() - (old == null ? 0 : old.size()));
+    }
+
+    /**
+     * @return the number of member proxies used by the current versions of all classes
+     */
+    public static int getLiveProxyCount() {
+        return liveProxies.get();
+    }
+
+    /**
+     * @return the number of times a member proxy has been reused by a new version of a class
+     */
+    public static long getReusedProxyCount() {
+        return reusedProxies.get();
+    }
+}
@@ -40,6 +40,21 @@ public class ProxyDefinitionStore {
         def.put(className, data);
     }
 
+    /**
+     * Drops the bytes of a proxy once the class loader has defined it
+     */
+    public static void proxyDefined(ClassLoader classLoader, String className) {
+        Map<String, byte[]> def = ClassLoaderData.get(classLoader).getProxyDefinitions();
+        def.replace(className, ClassLookupManager.DEFINED);
+    }
+
+    /**
+     * Returns the number of proxy classes that have been defined, each of them gets a name from {@link #getProxyName()}
+     */
+    public static long getDefinedProxyCount() {
+        return proxyNo.get();
+    }
+
     /**
      * Returns a unique proxy name
      */
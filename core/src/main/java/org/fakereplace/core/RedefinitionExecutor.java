@@ -0,0 +1,77 @@
+/*
+ * Copyright 2016, Stuart Douglas, and individual contributors as indicated
+ * by the @authors tag.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.fakereplace.core;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
+
+/**
+ * Runs the analysis that happens before classes are redefined in parallel.
+ * <p>
+ * A dedicated pool is used rather than the common pool, as the application may be keeping the common pool busy
+ * while it is being redeployed.
+ */
+final class RedefinitionExecutor {
+
+    /**
+     * Below this many items the work is just done on the calling thread
+     */
+    private static final int PARALLEL_THRESHOLD = 4;
+
+    private RedefinitionExecutor() {
+
+    }
+
+    /**
+     * Runs the task for every index from 0 to count, and waits for them all to complete
+     */
+    static void forEach(int count, IntConsumer task) {
+        if (count < PARALLEL_THRESHOLD) {
+            for (int i = 0; i < count; ++i) {
+                task.accept(i);
+            }
+            return;
+        }
+        try {
+            PoolHolder.POOL.submit(() -> IntStream.range(0, count).parallel().forEach(task)).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            } else if (e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
+            }
+            throw new RuntimeException(e.getCause());
+        }
+    }
+
+    private static final class PoolHolder {
+
+        static final ForkJoinPool POOL = new ForkJoinPool(Runtime.getRuntime().availableProcessors(), (pool) -> {
+            ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+            thread.setName("Fakereplace redefinition worker " + thread.getPoolIndex());
+            thread.setDaemon(true);
+            return thread;
+        }, null, false);
+    }
+}
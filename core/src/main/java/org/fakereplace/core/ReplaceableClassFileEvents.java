@@ -0,0 +1,98 @@
+/*
+ * Copyright 2016, Stuart Douglas, and individual contributors as indicated
+ * by the @authors tag.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.fakereplace.core;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+import org.fakereplace.Extension;
+import org.fakereplace.logging.Logger;
+
+/**
+ * Delivers {@link Extension#replaceableClassFilesLoaded(List, ClassLoader)} events on a background thread, so
+ * extensions do not do their work while the class loading lock is held.
+ * <p>
+ * Events that have queued up while the previous batch was delivered are delivered together, grouped by class loader.
+ */
+class ReplaceableClassFileEvents implements Runnable {
+
+    private final List<Extension> extensions;
+
+    private final BlockingQueue<Event> queue = new LinkedBlockingQueue<>();
+
+    private final Thread thread;
+
+    ReplaceableClassFileEvents(List<Extension> extensions) {
+        this.extensions = extensions;
+        this.thread = new Thread(this, "Fakereplace class file events");
+        this.thread.setDaemon(true);
+    }
+
+    /**
+     * Starts the delivery thread. This is done once, when the agent is installed, so loading a class only has to
+     * add to the queue.
+     */
+    void start() {
+        thread.start();
+    }
+
+    void classFileLoaded(String className, ClassLoader loader) {
+        queue.add(new Event(className, loader));
+    }
+
+    @Override
+    public void run() {
+        final List<Event> batch = new ArrayList<>();
+        while (true) {
+            try {
+                batch.add(queue.take());
+            } catch (InterruptedException e) {
+                return;
+            }
+            queue.drainTo(batch);
+            final Map<ClassLoader, List<String>> byLoader = new IdentityHashMap<>();
+            for (Event event : batch) {
+                byLoader.computeIfAbsent(event.loader, (l) -> new ArrayList<>()).add(event.className);
+            }
+            batch.clear();
+            for (Map.Entry<ClassLoader, List<String>> entry : byLoader.entrySet()) {
+                for (Extension extension : extensions) {
+                    try {
+                        extension.replaceableClassFilesLoaded(entry.getValue(), entry.getKey());
+                    } catch (Throwable e) {
+                        Logger.getLogger(ReplaceableClassFileEvents.class).error("Failed to deliver class file events to " + extension, e);
+                    }
+                }
+            }
+        }
+    }
+
+    private static final class Event {
+        final String className;
+        final ClassLoader loader;
+
+        Event(String className, ClassLoader loader) {
+            this.className = className;
+            this.loader = loader;
+        }
+    }
+}
@@ -0,0 +1,234 @@
+/*
+ * Copyright 2016, Stuart Douglas, and individual contributors as indicated
+ * by the @authors tag.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.fakereplace.core;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import javax.management.ObjectName;
+
+import org.fakereplace.logging.Logger;
+
+/**
+ * Records how long each stage of a replacement takes, from the file change being noticed until the
+ * {@link org.fakereplace.api.ClassChangeAware} instances have been notified.
+ * <p>
+ * A cycle is opened by {@link #begin(long)} when a change is noticed or classes are redefined, and closed once the
+ * integration has run, so redefinitions that end up in the same integration run are reported as one cycle. Stages
+ * that are marked while no cycle is open, or that belong to a cycle that has already been closed, are dropped. The
+ * last cycles are kept in a ring buffer, each cycle is logged when it completes and they are available over JMX under
+ * {@link #OBJECT_NAME}.
+ */
+public final class ReplacementTimeline {
+
+    public static final String OBJECT_NAME = "org.fakereplace:type=ReplacementTimeline";
+
+    private static final int SIZE = Integer.getInteger("org.fakereplace.timeline-size", 32);
+
+    private static final Cycle[] cycles = new Cycle[SIZE];
+
+    private static long cycleCount;
+
+    private static Cycle current;
+
+    private static boolean registered;
+
+    private ReplacementTimeline() {
+
+    }
+
+    /**
+     * Opens a cycle that started at the given {@link System#nanoTime()}, unless one is already in progress
+     *
+     * @return the id of the cycle in progress
+     */
+    public static synchronized long begin(long nanoTime) {
+        if (current == null) {
+            current = new Cycle(++cycleCount, System.currentTimeMillis() - TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - nanoTime), nanoTime);
+        }
+        return current.id;
+    }
+
+    /**
+     * @return the id of the cycle in progress, or 0 if there is none
+     */
+    public static synchronized long currentCycle() {
+        return current == null ? 0 : current.id;
+    }
+
+    /**
+     * Marks the end of a stage of the cycle in progress
+     */
+    public static void mark(String stage) {
+        mark(stage, System.nanoTime());
+    }
+
+    /**
+     * Marks the end of a stage of the cycle in progress that happened at the given {@link System#nanoTime()}
+     */
+    public static synchronized void mark(String stage, long nanoTime) {
+        if (current != null) {
+            current.stages.add(new Stage(stage, nanoTime - current.startNanos));
+        }
+    }
+
+    /**
+     * Marks the end of a stage of the given cycle, if it is still in progress
+     */
+    public static synchronized void mark(long cycle, String stage, long nanoTime) {
+        if (current != null && current.id == cycle) {
+            current.stages.add(new Stage(stage, nanoTime - current.startNanos));
+        }
+    }
+
+    /**
+     * Completes the given cycle, if it is still in progress
+     */
+    static void complete(long id) {
+        final Cycle cycle;
+        final boolean register;
+        synchronized (ReplacementTimeline.class) {
+            cycle = current;
+            if (cycle == null || cycle.id != id) {
+                return;
+            }
+            current = null;
+            cycles[(int) ((cycle.id - 1) % SIZE)] = cycle;
+            register = !registered;
+            registered = true;
+        }
+        Logger.getLogger(ReplacementTimeline.class).info(cycle.toString());
+        if (register) {
+            //JMX is only started once something has actually been replaced
+            try {
+                ManagementFactory.getPlatformMBeanServer().registerMBean(new Bean(), new ObjectName(OBJECT_NAME));
+            } catch (Exception e) {
+                Logger.getLogger(ReplacementTimeline.class).error("Failed to register " + OBJECT_NAME, e);
+            }
+        }
+    }
+
+    /**
+     * @return the completed cycles that are still in the buffer, oldest first
+     */
+    public static synchronized List<Cycle> getCycles() {
+        final List<Cycle> result = new ArrayList<>(SIZE);
+        for (long id = Math.max(1, cycleCount - SIZE + 1); id <= cycleCount; ++id) {
+            final Cycle cycle = cycles[(int) ((id - 1) % SIZE)];
+            //the newest cycle may still be in progress
+            if (cycle != null && cycle.id == id) {
+                result.add(cycle);
+            }
+        }
+        return result;
+    }
+
+    public static final class Cycle {
+        private final long id;
+        private final long startTime;
+        private final long startNanos;
+        private final List<Stage> stages = new ArrayList<>();
+
+        private Cycle(long id, long startTime, long startNanos) {
+            this.id = id;
+            this.startTime = startTime;
+            this.startNanos = startNanos;
+        }
+
+        public long getId() {
+            return id;
+        }
+
+        /**
+         * @return the wall clock time the cycle started, in milliseconds
+         */
+        public long getStartTime() {
+            return startTime;
+        }
+
+        public List<Stage> getStages() {
+            return Collections.unmodifiableList(stages);
+        }
+
+        @Override
+        public String toString() {
+            long total = 0;
+            for (Stage stage : stages) {
+                total = Math.max(total, stage.offset);
+            }
+            final StringBuilder sb = new StringBuilder("Replacement cycle ").append(id).append(" took ")
+                    .append(TimeUnit.NANOSECONDS.toMillis(total)).append("ms:");
+            for (Stage stage : stages) {
+                sb.append(' ').append(stage.name).append(" +").append(TimeUnit.NANOSECONDS.toMillis(stage.offset)).append("ms,");
+            }
+            if (!stages.isEmpty()) {
+                sb.setLength(sb.length() - 1);
+            }
+            return sb.toString();
+        }
+    }
+
+    public static final class Stage {
+        private final String name;
+        private final long offset;
+
+        private Stage(String name, long offset) {
+            this.name = name;
+            this.offset = offset;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * @return the time from the start of the cycle until the end of this stage, in nanoseconds
+         */
+        public long getOffset() {
+            return offset;
+        }
+    }
+
+    private static final class Bean implements ReplacementTimelineMXBean {
+
+        @Override
+        public long getCycleCount() {
+            synchronized (ReplacementTimeline.class) {
+                return cycleCount;
+            }
+        }
+
+        @Override
+        public String[] getCycles() {
+            return ReplacementTimeline.getCycles().stream().map(Cycle::toString).toArray(String[]::new);
+        }
+
+        @Override
+        public String[] getStages(long cycle) {
+            for (Cycle c : ReplacementTimeline.getCycles()) {
+                if (c.id == cycle) {
+                    return c.stages.stream().map((s) -> s.name + '=' + s.offset).toArray(String[]::new);
+                }
+            }
+            return null;
+        }
+    }
+}
@@ -0,0 +1,39 @@
+/*
+ * Copyright 2016, Stuart Douglas, and individual contributors as indicated
+ * by the @authors tag.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.fakereplace.core;
+
+/**
+ * The JMX view of the {@link ReplacementTimeline}
+ */
+public interface ReplacementTimelineMXBean {
+
+    /**
+     * @return the number of cycles that have been started
+     */
+    long getCycleCount();
+
+    /**
+     * @return a summary of each cycle that is still in the buffer, oldest first
+     */
+    String[] getCycles();
+
+    /**
+     * @return the stages of the given cycle as name=nanoseconds pairs, or null if it is no longer in the buffer
+     */
+    String[] getStages(long cycle);
+}
@@ -0,0 +1,124 @@
+/*
+ * Copyright 2016, Stuart Douglas, and individual contributors as indicated
+ * by the @authors tag.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.fakereplace.core;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+import org.fakereplace.data.ClassLoaderData;
+import javassist.bytecode.AccessFlag;
+import javassist.bytecode.ClassFile;
+import javassist.bytecode.ConstPool;
+import javassist.bytecode.DuplicateMemberException;
+import javassist.bytecode.FieldInfo;
+
+/**
+ * This class generates the holder classes for added static fields, which are loaded by the relevant ClassLoaders
+ * in the same way as other proxies.
+ * <p>
+ * Each added static field is stored in a real static field on a holder class, so accesses to it can be rewritten
+ * to a plain getstatic or putstatic. All the static fields that are added by a redefinition share a single holder.
+ * Once a field has a holder it is kept for the life of the class loader, so the value is retained across later
+ * redefinitions.
+ */
+public class StaticFieldHolderStore {
+
+    private StaticFieldHolderStore() {
+
+    }
+
+    /**
+     * Returns the name of the holder class for a static field. If the field does not have a holder yet, because the
+     * field is accessed before its declaring class has been redefined, a holder is created for just this field.
+     */
+    public static String getHolderName(ClassLoader loader, String className, String fieldName, String descriptor) {
+        final String key = key(className, fieldName, descriptor);
+        ClassLoader l = loader;
+        while (l != null) {
+            String holder = ClassLoaderData.get(l).getStaticFieldHolders().get(key);
+            if (holder != null) {
+                return holder;
+            }
+            l = l.getParent();
+        }
+        final Map<String, String> holders = ClassLoaderData.get(loader).getStaticFieldHolders();
+        synchronized (holders) {
+            String holder = holders.get(key);
+            if (holder == null) {
+                FieldInfo field = new FieldInfo(new ConstPool(className), fieldName, descriptor);
+                field.setAccessFlags(AccessFlag.STATIC);
+                holder = defineHolder(loader, className, holders, field);
+            }
+            return holder;
+        }
+    }
+
+    /**
+     * Creates a single holder class for the added static fields of a class that do not have a holder yet
+     */
+    public static void createHolder(ClassLoader loader, String className, Collection<FieldInfo> fields) {
+        final Map<String, String> holders = ClassLoaderData.get(loader).getStaticFieldHolders();
+        synchronized (holders) {
+            List<FieldInfo> required = new ArrayList<>();
+            for (FieldInfo field : fields) {
+                if (!holders.containsKey(key(className, field.getName(), field.getDescriptor()))) {
+                    required.add(field);
+                }
+            }
+            if (!required.isEmpty()) {
+                defineHolder(loader, className, holders, required.toArray(new FieldInfo[required.size()]));
+            }
+        }
+    }
+
+    private static String defineHolder(ClassLoader loader, String className, Map<String, String> holders, FieldInfo... fields) {
+        final String holderName = ProxyDefinitionStore.getProxyName();
+        final ClassFile holder = new ClassFile(false, holderName, "java.lang.Object");
+        holder.setAccessFlags(AccessFlag.PUBLIC | AccessFlag.SYNTHETIC);
+        for (FieldInfo field : fields) {
+            FieldInfo holderField = new FieldInfo(holder.getConstPool(), field.getName(), field.getDescriptor());
+            // the holder is in a different package, so the field has to be public
+            holderField.setAccessFlags(AccessFlag.PUBLIC | AccessFlag.STATIC | AccessFlag.SYNTHETIC | (field.getAccessFlags() & AccessFlag.VOLATILE));
+            try {
+                holder.addField(holderField);
+            } catch (DuplicateMemberException e) {
+                // a field with the same name and a different type, this needs a holder of its own
+                defineHolder(loader, className, holders, field);
+                continue;
+            }
+            holders.put(key(className, field.getName(), field.getDescriptor()), holderName);
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try {
+            holder.write(new DataOutputStream(bytes));
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        ProxyDefinitionStore.saveProxyDefinition(loader, holderName, bytes.toByteArray());
+        return holderName;
+    }
+
+    private static String key(String className, String fieldName, String descriptor) {
+        return className.replace('/', '.') + ' ' + fieldName + ' ' + descriptor;
+    }
+}
@@ -25,8 +25,12 @@ import org.fakereplace.data.BaseClassData;
 import org.fakereplace.data.ClassDataStore;
 import org.fakereplace.manip.ManipulationUtils;
 import org.fakereplace.manip.Manipulator;
+import org.fakereplace.manip.TypedDelegators;
 import org.fakereplace.reflection.ReflectionInstrumentationSetup;
 import org.fakereplace.replacement.notification.ChangedClassImpl;
+import org.fakereplace.runtime.FieldDataStore;
+import org.fakereplace.util.JumpMarker;
+import org.fakereplace.util.JumpUtils;
 import org.fakereplace.util.NoInstrument;
 import javassist.bytecode.AccessFlag;
 import javassist.bytecode.AnnotationsAttribute;
@@ -35,6 +39,7 @@ import javassist.bytecode.Bytecode;
 import javassist.bytecode.ClassFile;
 import javassist.bytecode.CodeAttribute;
 import javassist.bytecode.DuplicateMemberException;
+import javassist.bytecode.FieldInfo;
 import javassist.bytecode.MethodInfo;
 import javassist.bytecode.Opcode;
 
@@ -86,6 +91,7 @@ public class Transformer implements FakereplaceTransformer {
         }
 
         if (replaceable) {
+            boolean fieldSlots = false;
             if ((AccessFlag.ENUM & file.getAccessFlags()) == 0 && (AccessFlag.ANNOTATION & file.getAccessFlags()) == 0) {
                 modified = true;
 
@@ -94,11 +100,14 @@ public class Transformer implements FakereplaceTransformer {
                 } else {
                     addMethodForInstrumentation(file);
                     addConstructorForInstrumentation(file);
+                    addTypedDelegatorsForInstrumentation(file);
                     addStaticConstructorForInstrumentation(file);
+                    addFieldSlotsForInstrumentation(file, classBeingRedefined == null && !inheritsFieldSlots(file, loader), modifiedMethods);
+                    fieldSlots = true;
                 }
             }
             if (classBeingRedefined == null) {
-                BaseClassData baseData = new BaseClassData(file, loader, replaceable);
+                BaseClassData baseData = new BaseClassData(file, loader, replaceable, fieldSlots);
                 ClassDataStore.instance().saveClassData(loader, baseData.getInternalName(), baseData);
             }
         }
@@ -153,6 +162,177 @@ public class Transformer implements FakereplaceTransformer {
         }
     }
 
+    /**
+     * Adds the delegators that added methods with few parameters are called through without boxing
+     */
+    private void addTypedDelegatorsForInstrumentation(ClassFile file) {
+        try {
+            file.addMethod(TypedDelegators.createDelegator(file, Constants.ADDED_TYPED_METHOD_NAME, Constants.ADDED_TYPED_METHOD_DESCRIPTOR, false));
+            file.addMethod(TypedDelegators.createDelegator(file, Constants.ADDED_TYPED_PRIMITIVE_METHOD_NAME, Constants.ADDED_TYPED_PRIMITIVE_METHOD_DESCRIPTOR, false));
+            file.addMethod(TypedDelegators.createDelegator(file, Constants.ADDED_TYPED_STATIC_METHOD_NAME, Constants.ADDED_TYPED_METHOD_DESCRIPTOR, true));
+            file.addMethod(TypedDelegators.createDelegator(file, Constants.ADDED_TYPED_STATIC_PRIMITIVE_METHOD_NAME, Constants.ADDED_TYPED_PRIMITIVE_METHOD_DESCRIPTOR, true));
+            MethodInfo constructor = TypedDelegators.createConstructorDelegator(file);
+            if (constructor != null) {
+                file.addMethod(constructor);
+            }
+        } catch (DuplicateMemberException e) {
+            // e.printStackTrace();
+        }
+    }
+
+    /**
+     * Only the topmost replaceable class in a hierarchy has a slot field, subclasses share it.
+     * <p>
+     * The JVM loads the superclass after the subclass has been transformed, and classes loaded from within a
+     * transformer are not instrumented, so if we have not seen the superclass yet we decide based on its name.
+     */
+    private boolean inheritsFieldSlots(ClassFile file, ClassLoader loader) {
+        String superName = file.getSuperclass();
+        BaseClassData superData = ClassDataStore.instance().findBaseClassData(loader, superName);
+        if (superData != null) {
+            return superData.hasFieldSlots();
+        }
+        return !BuiltinClassData.skipInstrumentation(superName) && Fakereplace.isClassReplaceable(superName, loader);
+    }
+
+    /**
+     * Adds the hidden fields that hold the values of added instance fields, and the static accessor methods
+     * that rewritten field accesses call. Reference fields are stored in an Object[], and primitive fields are
+     * stored in a long[] so they do not need to be boxed. The accessors take an Object parameter, so invocations
+     * through a subclass resolve to the accessors on the class that owns the slot fields.
+     * <p>
+     * The fields can only be added when the class is first loaded. When a class is redefined the fields are re-added
+     * by the {@link org.fakereplace.replacement.FieldReplacementTransformer}, and we only need to add the accessors.
+     */
+    private static void addFieldSlotsForInstrumentation(ClassFile file, boolean addField, Set<MethodInfo> modifiedMethods) {
+        if (addField) {
+            addFieldSlots(file, Constants.ADDED_FIELD_SLOTS_NAME, Constants.ADDED_FIELD_SLOTS_DESCRIPTOR);
+            addFieldSlots(file, Constants.ADDED_PRIMITIVE_FIELD_SLOTS_NAME, Constants.ADDED_PRIMITIVE_FIELD_SLOTS_DESCRIPTOR);
+        } else if (file.getFields().stream().noneMatch(f -> ((FieldInfo) f).getName().equals(Constants.ADDED_FIELD_SLOTS_NAME))) {
+            return;
+        }
+        addFieldSlotAccessors(file, false, modifiedMethods);
+        addFieldSlotAccessors(file, true, modifiedMethods);
+    }
+
+    private static void addFieldSlots(ClassFile file, String name, String descriptor) {
+        try {
+            FieldInfo field = new FieldInfo(file.getConstPool(), name, descriptor);
+            field.setAccessFlags(AccessFlag.PRIVATE | AccessFlag.TRANSIENT | AccessFlag.VOLATILE | AccessFlag.SYNTHETIC);
+            file.addField(field);
+        } catch (DuplicateMemberException e) {
+            // e.printStackTrace();
+        }
+    }
+
+    /**
+     * Adds the getter and setter for one of the slot arrays. If the array has not been allocated yet, or is too
+     * small to hold the field, the accessors fall back to {@link FieldDataStore}.
+     */
+    private static void addFieldSlotAccessors(ClassFile file, boolean primitive, Set<MethodInfo> modifiedMethods) {
+        final String slotsName = primitive ? Constants.ADDED_PRIMITIVE_FIELD_SLOTS_NAME : Constants.ADDED_FIELD_SLOTS_NAME;
+        final String slotsDescriptor = primitive ? Constants.ADDED_PRIMITIVE_FIELD_SLOTS_DESCRIPTOR : Constants.ADDED_FIELD_SLOTS_DESCRIPTOR;
+        try {
+            MethodInfo m = new MethodInfo(file.getConstPool(),
+                    primitive ? Constants.ADDED_PRIMITIVE_FIELD_GETTER_NAME : Constants.ADDED_FIELD_GETTER_NAME,
+                    primitive ? Constants.ADDED_PRIMITIVE_FIELD_GETTER_DESCRIPTOR : Constants.ADDED_FIELD_GETTER_DESCRIPTOR);
+            m.setAccessFlags(AccessFlag.PUBLIC | AccessFlag.STATIC | AccessFlag.SYNTHETIC);
+            Bytecode b = new Bytecode(file.getConstPool(), 0, 3);
+            b.addAload(0);
+            b.addCheckcast(file.getName());
+            b.addGetfield(file.getName(), slotsName, slotsDescriptor);
+            b.addAstore(2);
+            b.addAload(2);
+            b.add(Opcode.IFNULL);
+            JumpMarker nullSlots = JumpUtils.addJumpInstruction(b);
+            b.addIload(1);
+            b.addAload(2);
+            b.add(Opcode.ARRAYLENGTH);
+            b.add(Opcode.IF_ICMPGE);
+            JumpMarker outOfRange = JumpUtils.addJumpInstruction(b);
+            b.addAload(2);
+            b.addIload(1);
+            if (primitive) {
+                b.add(Opcode.LALOAD);
+                b.add(Opcode.LRETURN);
+            } else {
+                b.add(Opcode.AALOAD);
+                b.add(Opcode.ARETURN);
+            }
+            nullSlots.mark();
+            outOfRange.mark();
+            b.addAload(0);
+            b.addIload(1);
+            if (primitive) {
+                b.addInvokestatic(FieldDataStore.class.getName(), "getPrimitiveValue", "(Ljava/lang/Object;I)J");
+                b.add(Opcode.LRETURN);
+            } else {
+                b.addInvokestatic(FieldDataStore.class.getName(), "getValue", "(Ljava/lang/Object;I)Ljava/lang/Object;");
+                b.add(Opcode.ARETURN);
+            }
+            CodeAttribute ca = b.toCodeAttribute();
+            ca.computeMaxStack();
+            m.setCodeAttribute(ca);
+            file.addMethod(m);
+            modifiedMethods.add(m);
+        } catch (DuplicateMemberException | BadBytecode e) {
+            // e.printStackTrace();
+        }
+        try {
+            MethodInfo m = new MethodInfo(file.getConstPool(),
+                    primitive ? Constants.ADDED_PRIMITIVE_FIELD_SETTER_NAME : Constants.ADDED_FIELD_SETTER_NAME,
+                    primitive ? Constants.ADDED_PRIMITIVE_FIELD_SETTER_DESCRIPTOR : Constants.ADDED_FIELD_SETTER_DESCRIPTOR);
+            m.setAccessFlags(AccessFlag.PUBLIC | AccessFlag.STATIC | AccessFlag.SYNTHETIC);
+            // the value takes two local variable slots if it is a long
+            final int fieldLocal = primitive ? 3 : 2;
+            final int slotsLocal = fieldLocal + 1;
+            Bytecode b = new Bytecode(file.getConstPool(), 0, slotsLocal + 1);
+            b.addAload(0);
+            b.addCheckcast(file.getName());
+            b.addGetfield(file.getName(), slotsName, slotsDescriptor);
+            b.addAstore(slotsLocal);
+            b.addAload(slotsLocal);
+            b.add(Opcode.IFNULL);
+            JumpMarker nullSlots = JumpUtils.addJumpInstruction(b);
+            b.addIload(fieldLocal);
+            b.addAload(slotsLocal);
+            b.add(Opcode.ARRAYLENGTH);
+            b.add(Opcode.IF_ICMPGE);
+            JumpMarker outOfRange = JumpUtils.addJumpInstruction(b);
+            b.addAload(slotsLocal);
+            b.addIload(fieldLocal);
+            if (primitive) {
+                b.addLload(1);
+                b.add(Opcode.LASTORE);
+            } else {
+                b.addAload(1);
+                b.add(Opcode.AASTORE);
+            }
+            b.add(Opcode.RETURN);
+            nullSlots.mark();
+            outOfRange.mark();
+            b.addAload(0);
+            b.addLdc(file.getConstPool().addClassInfo(file.getName()));
+            if (primitive) {
+                b.addLload(1);
+                b.addIload(fieldLocal);
+                b.addInvokestatic(FieldDataStore.class.getName(), "setPrimitiveSlotValue", "(Ljava/lang/Object;Ljava/lang/Class;JI)V");
+            } else {
+                b.addAload(1);
+                b.addIload(fieldLocal);
+                b.addInvokestatic(FieldDataStore.class.getName(), "setSlotValue", "(Ljava/lang/Object;Ljava/lang/Class;Ljava/lang/Object;I)V");
+            }
+            b.add(Opcode.RETURN);
+            CodeAttribute ca = b.toCodeAttribute();
+            ca.computeMaxStack();
+            m.setCodeAttribute(ca);
+            file.addMethod(m);
+            modifiedMethods.add(m);
+        } catch (DuplicateMemberException | BadBytecode e) {
+            // e.printStackTrace();
+        }
+    }
+
     private static void addStaticConstructorForInstrumentation(ClassFile file) {
         try {
             MethodInfo m = new MethodInfo(file.getConstPool(), "<clinit>", "()V");
@@ -17,9 +17,6 @@
 
 package org.fakereplace.data;
 
-import java.io.ByteArrayOutputStream;
-import java.io.DataOutputStream;
-import java.io.IOException;
 import java.lang.annotation.Annotation;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.Field;
@@ -32,16 +29,9 @@ import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 
 import org.fakereplace.api.ChangeType;
-import org.fakereplace.core.ProxyDefinitionStore;
 import org.fakereplace.replacement.notification.ChangedAnnotationImpl;
 import org.fakereplace.replacement.notification.ChangedClassImpl;
-import javassist.bytecode.AccessFlag;
 import javassist.bytecode.AnnotationsAttribute;
-import javassist.bytecode.AttributeInfo;
-import javassist.bytecode.Bytecode;
-import javassist.bytecode.ClassFile;
-import javassist.bytecode.MethodInfo;
-import javassist.bytecode.Opcode;
 import javassist.bytecode.ParameterAnnotationsAttribute;
 
 /**
@@ -74,7 +64,14 @@ public class AnnotationDataStore {
 
     private static final Map<Constructor<?>, Annotation[][]> constructorParameterAnnotations = new ConcurrentHashMap<>();
 
-    private static final String PROXY_METHOD_NAME = "annotationsMethod";
+    /**
+     * incremented every time class level annotations are recorded, so views built from them know when they are stale
+     */
+    private static volatile int classAnnotationEpoch;
+
+    public static int getClassAnnotationEpoch() {
+        return classAnnotationEpoch;
+    }
 
     public static boolean isClassDataRecorded(Class<?> clazz) {
         return classAnnotations.containsKey(clazz);
@@ -150,62 +147,6 @@ public class AnnotationDataStore {
         return constructorParameterAnnotations.get(clazz);
     }
 
-    private static Class<?> createAnnotationsProxy(ClassLoader loader, AnnotationsAttribute annotations) {
-        String proxyName = ProxyDefinitionStore.getProxyName();
-        ClassFile proxy = new ClassFile(false, proxyName, "java.lang.Object");
-        proxy.setAccessFlags(AccessFlag.PUBLIC);
-        AttributeInfo a = annotations.copy(proxy.getConstPool(), Collections.EMPTY_MAP);
-        proxy.addAttribute(a);
-        try {
-            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
-            DataOutputStream dos = new DataOutputStream(bytes);
-            try {
-                proxy.write(dos);
-            } catch (IOException e) {
-                throw new RuntimeException(e);
-            }
-            ProxyDefinitionStore.saveProxyDefinition(loader, proxyName, bytes.toByteArray());
-            return loader.loadClass(proxyName);
-        } catch (ClassNotFoundException e) {
-            throw new RuntimeException(e);
-        }
-    }
-
-    private static Class<?> createParameterAnnotationsProxy(ClassLoader loader, ParameterAnnotationsAttribute annotations, int paramCount) {
-        String proxyName = ProxyDefinitionStore.getProxyName();
-        ClassFile proxy = new ClassFile(false, proxyName, "java.lang.Object");
-        proxy.setAccessFlags(AccessFlag.PUBLIC);
-        StringBuilder sb = new StringBuilder();
-        for (int i = 0; i < paramCount; ++i) {
-            sb.append("I");
-        }
-
-        MethodInfo method = new MethodInfo(proxy.getConstPool(), PROXY_METHOD_NAME, "(" + sb.toString() + ")V");
-        Bytecode b = new Bytecode(proxy.getConstPool());
-        b.add(Opcode.RETURN);
-        method.setAccessFlags(AccessFlag.PUBLIC);
-        method.setCodeAttribute(b.toCodeAttribute());
-        method.getCodeAttribute().setMaxLocals(paramCount + 1);
-        AttributeInfo an = annotations.copy(proxy.getConstPool(), Collections.EMPTY_MAP);
-        method.addAttribute(an);
-
-        try {
-            proxy.addMethod(method);
-            method.getCodeAttribute().computeMaxStack();
-            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
-            DataOutputStream dos = new DataOutputStream(bytes);
-            try {
-                proxy.write(dos);
-            } catch (IOException e) {
-                throw new RuntimeException(e);
-            }
-            ProxyDefinitionStore.saveProxyDefinition(loader, proxyName, bytes.toByteArray());
-            return loader.loadClass(proxyName);
-        } catch (Exception e) {
-            throw new RuntimeException(e);
-        }
-    }
-
     public static void recordClassAnnotations(Class<?> clazz, AnnotationsAttribute annotations, ChangedClassImpl changedClass) {
         // no annotations
         if (annotations == null) {
@@ -216,12 +157,12 @@ public class AnnotationDataStore {
                 changedClass.changeClassAnnotation(new ChangedAnnotationImpl(null, annotation, ChangeType.REMOVE, changedClass, annotation.annotationType()));
             }
         } else {
-            final Class<?> pclass = createAnnotationsProxy(clazz.getClassLoader(), annotations);
-            classAnnotations.put(clazz, pclass.getAnnotations());
+            final Annotation[] created = AnnotationInstanceBuilder.createAnnotations(clazz.getClassLoader(), annotations);
+            classAnnotations.put(clazz, created);
             Map<Class<? extends Annotation>, Annotation> anVals = new HashMap<>();
             classAnnotationsByType.put(clazz, anVals);
             int count = 0;
-            for (Annotation a : pclass.getAnnotations()) {
+            for (Annotation a : created) {
                 anVals.put(a.annotationType(), a);
                 count++;
             }
@@ -242,6 +183,11 @@ public class AnnotationDataStore {
                 changedClass.changeClassAnnotation(new ChangedAnnotationImpl(newAnnotation, null, ChangeType.ADD, changedClass, newAnnotationType));
             }
         }
+        classAnnotationsChanged();
+    }
+
+    private static synchronized void classAnnotationsChanged() {
+        classAnnotationEpoch++;
     }
 
     public static void recordFieldAnnotations(Field field, AnnotationsAttribute annotations) {
@@ -252,12 +198,12 @@ public class AnnotationDataStore {
             fieldAnnotationsByType.put(field, Collections.emptyMap());
             return;
         }
-        Class<?> pclass = createAnnotationsProxy(field.getDeclaringClass().getClassLoader(), annotations);
-        fieldAnnotations.put(field, pclass.getAnnotations());
+        Annotation[] created = AnnotationInstanceBuilder.createAnnotations(field.getDeclaringClass().getClassLoader(), annotations);
+        fieldAnnotations.put(field, created);
         Map<Class<? extends Annotation>, Annotation> anVals = new HashMap<>();
         fieldAnnotationsByType.put(field, anVals);
         int count = 0;
-        for (Annotation a : pclass.getAnnotations()) {
+        for (Annotation a : created) {
             anVals.put(a.annotationType(), a);
             count++;
         }
@@ -271,12 +217,12 @@ public class AnnotationDataStore {
             methodAnnotationsByType.put(method, Collections.emptyMap());
             return;
         }
-        Class<?> pclass = createAnnotationsProxy(method.getDeclaringClass().getClassLoader(), annotations);
-        methodAnnotations.put(method, pclass.getAnnotations());
+        Annotation[] created = AnnotationInstanceBuilder.createAnnotations(method.getDeclaringClass().getClassLoader(), annotations);
+        methodAnnotations.put(method, created);
         Map<Class<? extends Annotation>, Annotation> anVals = new HashMap<>();
         methodAnnotationsByType.put(method, anVals);
         int count = 0;
-        for (Annotation a : pclass.getAnnotations()) {
+        for (Annotation a : created) {
             anVals.put(a.annotationType(), a);
             count++;
         }
@@ -290,19 +236,7 @@ public class AnnotationDataStore {
             return;
         }
 
-        Class<?> pclass = createParameterAnnotationsProxy(method.getDeclaringClass().getClassLoader(), annotations, method.getParameterTypes().length);
-        Class<?>[] types = new Class[method.getParameterTypes().length];
-        for (int i = 0; i < types.length; ++i) {
-            types[i] = int.class;
-        }
-        try {
-            Method anMethod = pclass.getMethod(PROXY_METHOD_NAME, types);
-            parameterAnnotations.put(method, anMethod.getParameterAnnotations());
-
-        } catch (Exception e) {
-            throw new RuntimeException(e);
-        }
-
+        parameterAnnotations.put(method, AnnotationInstanceBuilder.createParameterAnnotations(method.getDeclaringClass().getClassLoader(), annotations, method.getParameterTypes().length));
     }
 
     public static void recordConstructorAnnotations(Constructor<?> constructor, AnnotationsAttribute annotations) {
@@ -313,12 +247,12 @@ public class AnnotationDataStore {
             constructorAnnotationsByType.put(constructor, Collections.emptyMap());
             return;
         }
-        Class<?> pclass = createAnnotationsProxy(constructor.getDeclaringClass().getClassLoader(), annotations);
-        constructorAnnotations.put(constructor, pclass.getAnnotations());
+        Annotation[] created = AnnotationInstanceBuilder.createAnnotations(constructor.getDeclaringClass().getClassLoader(), annotations);
+        constructorAnnotations.put(constructor, created);
         Map<Class<? extends Annotation>, Annotation> anVals = new HashMap<>();
         constructorAnnotationsByType.put(constructor, anVals);
         int count = 0;
-        for (Annotation a : pclass.getAnnotations()) {
+        for (Annotation a : created) {
             anVals.put(a.annotationType(), a);
             count++;
         }
@@ -333,17 +267,6 @@ public class AnnotationDataStore {
             return;
         }
 
-        Class<?> pclass = createParameterAnnotationsProxy(method.getDeclaringClass().getClassLoader(), annotations, method.getParameterTypes().length);
-        Class<?>[] types = new Class[method.getParameterTypes().length];
-        for (int i = 0; i < types.length; ++i) {
-            types[i] = int.class;
-        }
-        try {
-            Method anMethod = pclass.getMethod(PROXY_METHOD_NAME, types);
-            constructorParameterAnnotations.put(method, anMethod.getParameterAnnotations());
-        } catch (Exception e) {
-            throw new RuntimeException(e);
-        }
-
+        constructorParameterAnnotations.put(method, AnnotationInstanceBuilder.createParameterAnnotations(method.getDeclaringClass().getClassLoader(), annotations, method.getParameterTypes().length));
     }
 }
@@ -0,0 +1,434 @@
+/*
+ * Copyright 2016, Stuart Douglas, and individual contributors as indicated
+ * by the @authors tag.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.fakereplace.data;
+
+import java.lang.annotation.Annotation;
+import java.lang.annotation.AnnotationTypeMismatchException;
+import java.lang.annotation.IncompleteAnnotationException;
+import java.lang.reflect.Array;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+import javassist.bytecode.AnnotationsAttribute;
+import javassist.bytecode.ParameterAnnotationsAttribute;
+import javassist.bytecode.annotation.AnnotationMemberValue;
+import javassist.bytecode.annotation.ArrayMemberValue;
+import javassist.bytecode.annotation.BooleanMemberValue;
+import javassist.bytecode.annotation.ByteMemberValue;
+import javassist.bytecode.annotation.CharMemberValue;
+import javassist.bytecode.annotation.ClassMemberValue;
+import javassist.bytecode.annotation.DoubleMemberValue;
+import javassist.bytecode.annotation.EnumMemberValue;
+import javassist.bytecode.annotation.FloatMemberValue;
+import javassist.bytecode.annotation.IntegerMemberValue;
+import javassist.bytecode.annotation.LongMemberValue;
+import javassist.bytecode.annotation.MemberValue;
+import javassist.bytecode.annotation.ShortMemberValue;
+import javassist.bytecode.annotation.StringMemberValue;
+
+/**
+ * Creates java annotations straight from the annotations attributes of a class file, the reverse of
+ * {@link AnnotationBuilder}.
+ * <p>
+ * The annotations are {@link Proxy} instances that behave the same way as the ones the JDK creates, so no class
+ * has to be defined to hold the attribute.
+ */
+class AnnotationInstanceBuilder {
+
+    private static final Annotation[] EMPTY = new Annotation[0];
+
+    /**
+     * the members of each annotation type
+     */
+    private static final ClassValue<Method[]> annotationMembers = new ClassValue<Method[]>() {
+        @Override
+        protected Method[] computeValue(Class<?> type) {
+            List<Method> members = new ArrayList<>();
+            for (Method method : type.getDeclaredMethods()) {
+                if (method.getParameterCount() == 0 && !Modifier.isStatic(method.getModifiers()) && !method.isSynthetic()) {
+                    if (!Modifier.isPublic(type.getModifiers())) {
+                        method.setAccessible(true);
+                    }
+                    members.add(method);
+                }
+            }
+            return members.toArray(new Method[members.size()]);
+        }
+    };
+
+    private AnnotationInstanceBuilder() {
+
+    }
+
+    static Annotation[] createAnnotations(ClassLoader loader, AnnotationsAttribute attribute) {
+        return createAnnotations(loader, attribute.getAnnotations());
+    }
+
+    /**
+     * Creates the parameter annotations, padded at the start if the attribute has fewer entries than the method has
+     * parameters, which is what the JDK does for the synthetic parameters of inner class constructors.
+     */
+    static Annotation[][] createParameterAnnotations(ClassLoader loader, ParameterAnnotationsAttribute attribute, int paramCount) {
+        final javassist.bytecode.annotation.Annotation[][] annotations = attribute.getAnnotations();
+        final Annotation[][] ret = new Annotation[paramCount][];
+        final int offset = paramCount - annotations.length;
+        for (int i = 0; i < paramCount; ++i) {
+            int index = i - offset;
+            if (index < 0 || index >= annotations.length) {
+                ret[i] = EMPTY;
+            } else {
+                ret[i] = createAnnotations(loader, annotations[index]);
+            }
+        }
+        return ret;
+    }
+
+    private static Annotation[] createAnnotations(ClassLoader loader, javassist.bytecode.annotation.Annotation[] annotations) {
+        final List<Annotation> ret = new ArrayList<>(annotations.length);
+        for (javassist.bytecode.annotation.Annotation annotation : annotations) {
+            Annotation result = createAnnotation(loader, annotation);
+            if (result != null) {
+                ret.add(result);
+            }
+        }
+        return ret.toArray(new Annotation[ret.size()]);
+    }
+
+    /**
+     * @return the annotation, or <code>null</code> if the annotation type is not visible, in which case the JDK
+     * ignores the annotation
+     */
+    private static Annotation createAnnotation(ClassLoader loader, javassist.bytecode.annotation.Annotation annotation) {
+        final Class<?> type;
+        try {
+            type = Class.forName(annotation.getTypeName(), false, loader);
+        } catch (ClassNotFoundException e) {
+            return null;
+        }
+        if (!type.isAnnotation()) {
+            return null;
+        }
+        final Map<String, Object> values = new LinkedHashMap<>();
+        for (Method member : annotationMembers.get(type)) {
+            final MemberValue value = annotation.getMemberValue(member.getName());
+            if (value == null) {
+                Object defaultValue = member.getDefaultValue();
+                if (defaultValue == null) {
+                    values.put(member.getName(), new ExceptionProxy(() -> new IncompleteAnnotationException(type.asSubclass(Annotation.class), member.getName())));
+                } else {
+                    values.put(member.getName(), defaultValue);
+                }
+            } else {
+                values.put(member.getName(), convert(loader, value, member, member.getReturnType()));
+            }
+        }
+        return (Annotation) Proxy.newProxyInstance(type.getClassLoader(), new Class[]{type}, new AnnotationHandler(type, values));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Object convert(ClassLoader loader, MemberValue value, Method member, Class<?> type) {
+        if (type == boolean.class && value instanceof BooleanMemberValue) {
+            return ((BooleanMemberValue) value).getValue();
+        } else if (type == byte.class && value instanceof ByteMemberValue) {
+            return ((ByteMemberValue) value).getValue();
+        } else if (type == char.class && value instanceof CharMemberValue) {
+            return ((CharMemberValue) value).getValue();
+        } else if (type == short.class && value instanceof ShortMemberValue) {
+            return ((ShortMemberValue) value).getValue();
+        } else if (type == int.class && value instanceof IntegerMemberValue) {
+            return ((IntegerMemberValue) value).getValue();
+        } else if (type == long.class && value instanceof LongMemberValue) {
+            return ((LongMemberValue) value).getValue();
+        } else if (type == float.class && value instanceof FloatMemberValue) {
+            return ((FloatMemberValue) value).getValue();
+        } else if (type == double.class && value instanceof DoubleMemberValue) {
+            return ((DoubleMemberValue) value).getValue();
+        } else if (type == String.class && value instanceof StringMemberValue) {
+            return ((StringMemberValue) value).getValue();
+        } else if (type == Class.class && value instanceof ClassMemberValue) {
+            final String className = ((ClassMemberValue) value).getValue();
+            try {
+                return loadClass(loader, className);
+            } catch (ClassNotFoundException e) {
+                return new ExceptionProxy(() -> new TypeNotPresentException(className, e));
+            }
+        } else if (type.isEnum() && value instanceof EnumMemberValue) {
+            final EnumMemberValue enumValue = (EnumMemberValue) value;
+            if (!enumValue.getType().equals(type.getName())) {
+                return mismatch(member, enumValue.getType() + "." + enumValue.getValue());
+            }
+            try {
+                return Enum.valueOf((Class<? extends Enum>) type, enumValue.getValue());
+            } catch (IllegalArgumentException e) {
+                return new ExceptionProxy(() -> new EnumConstantNotPresentException((Class<? extends Enum>) type, enumValue.getValue()));
+            }
+        } else if (type.isAnnotation() && value instanceof AnnotationMemberValue) {
+            final Annotation result = createAnnotation(loader, ((AnnotationMemberValue) value).getValue());
+            if (result == null || result.annotationType() != type) {
+                return mismatch(member, "@" + ((AnnotationMemberValue) value).getValue().getTypeName());
+            }
+            return result;
+        } else if (type.isArray() && value instanceof ArrayMemberValue) {
+            final MemberValue[] values = ((ArrayMemberValue) value).getValue();
+            final int length = values == null ? 0 : values.length;
+            final Object ret = Array.newInstance(type.getComponentType(), length);
+            for (int i = 0; i < length; ++i) {
+                Object element = convert(loader, values[i], member, type.getComponentType());
+                if (element instanceof ExceptionProxy) {
+                    return element;
+                }
+                Array.set(ret, i, element);
+            }
+            return ret;
+        }
+        return mismatch(member, value.toString());
+    }
+
+    private static ExceptionProxy mismatch(Method member, String foundType) {
+        return new ExceptionProxy(() -> new AnnotationTypeMismatchException(member, foundType));
+    }
+
+    private static Class<?> loadClass(ClassLoader loader, String name) throws ClassNotFoundException {
+        if (name.endsWith("[]")) {
+            return Array.newInstance(loadClass(loader, name.substring(0, name.length() - 2)), 0).getClass();
+        }
+        switch (name) {
+            case "boolean":
+                return boolean.class;
+            case "byte":
+                return byte.class;
+            case "char":
+                return char.class;
+            case "short":
+                return short.class;
+            case "int":
+                return int.class;
+            case "long":
+                return long.class;
+            case "float":
+                return float.class;
+            case "double":
+                return double.class;
+            case "void":
+                return void.class;
+            default:
+                return Class.forName(name, false, loader);
+        }
+    }
+
+    /**
+     * A member value that could not be resolved, the exception is thrown when the member is read, the same as for
+     * JDK annotations
+     */
+    private static final class ExceptionProxy {
+
+        private final Supplier<RuntimeException> exception;
+
+        ExceptionProxy(Supplier<RuntimeException> exception) {
+            this.exception = exception;
+        }
+
+        RuntimeException create() {
+            return exception.get();
+        }
+    }
+
+    private static final class AnnotationHandler implements InvocationHandler {
+
+        private final Class<?> type;
+        private final Map<String, Object> values;
+
+        AnnotationHandler(Class<?> type, Map<String, Object> values) {
+            this.type = type;
+            this.values = values;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            final String name = method.getName();
+            final int paramCount = method.getParameterCount();
+            if (paramCount == 1 && name.equals("equals") && method.getParameterTypes()[0] == Object.class) {
+                return equalsImpl(proxy, args[0]);
+            } else if (paramCount != 0) {
+                throw new AssertionError("Too many parameters for an annotation method " + method);
+            }
+            switch (name) {
+                case "toString":
+                    return toStringImpl();
+                case "hashCode":
+                    return hashCodeImpl();
+                case "annotationType":
+                    return type;
+            }
+            final Object value = values.get(name);
+            if (value == null) {
+                throw new IncompleteAnnotationException(type.asSubclass(Annotation.class), name);
+            } else if (value instanceof ExceptionProxy) {
+                throw ((ExceptionProxy) value).create();
+            }
+            return cloneArray(value);
+        }
+
+        private boolean equalsImpl(Object proxy, Object other) throws IllegalAccessException {
+            if (other == proxy) {
+                return true;
+            } else if (!type.isInstance(other)) {
+                return false;
+            }
+            final AnnotationHandler otherHandler = Proxy.isProxyClass(other.getClass()) && Proxy.getInvocationHandler(other) instanceof AnnotationHandler ? (AnnotationHandler) Proxy.getInvocationHandler(other) : null;
+            for (Method member : annotationMembers.get(type)) {
+                final Object ours = values.get(member.getName());
+                final Object theirs;
+                if (otherHandler != null) {
+                    theirs = otherHandler.values.get(member.getName());
+                } else {
+                    try {
+                        theirs = member.invoke(other);
+                    } catch (InvocationTargetException e) {
+                        return false;
+                    }
+                }
+                if (!memberValueEquals(ours, theirs)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private int hashCodeImpl() {
+            int result = 0;
+            for (Map.Entry<String, Object> entry : values.entrySet()) {
+                result += (127 * entry.getKey().hashCode()) ^ memberValueHashCode(entry.getValue());
+            }
+            return result;
+        }
+
+        private String toStringImpl() {
+            final StringBuilder sb = new StringBuilder("@").append(type.getName()).append('(');
+            boolean first = true;
+            for (Map.Entry<String, Object> entry : values.entrySet()) {
+                if (!first) {
+                    sb.append(", ");
+                }
+                first = false;
+                sb.append(entry.getKey()).append('=').append(memberValueToString(entry.getValue()));
+            }
+            return sb.append(')').toString();
+        }
+    }
+
+    private static Object cloneArray(Object value) {
+        if (!value.getClass().isArray() || Array.getLength(value) == 0) {
+            return value;
+        } else if (value instanceof Object[]) {
+            return ((Object[]) value).clone();
+        } else if (value instanceof boolean[]) {
+            return ((boolean[]) value).clone();
+        } else if (value instanceof byte[]) {
+            return ((byte[]) value).clone();
+        } else if (value instanceof char[]) {
+            return ((char[]) value).clone();
+        } else if (value instanceof short[]) {
+            return ((short[]) value).clone();
+        } else if (value instanceof int[]) {
+            return ((int[]) value).clone();
+        } else if (value instanceof long[]) {
+            return ((long[]) value).clone();
+        } else if (value instanceof float[]) {
+            return ((float[]) value).clone();
+        }
+        return ((double[]) value).clone();
+    }
+
+    private static boolean memberValueEquals(Object a, Object b) {
+        if (a == null || b == null) {
+            return a == b;
+        } else if (!a.getClass().isArray()) {
+            return a.equals(b);
+        } else if (a.getClass() != b.getClass()) {
+            return false;
+        } else if (a instanceof Object[]) {
+            return Arrays.equals((Object[]) a, (Object[]) b);
+        } else if (a instanceof boolean[]) {
+            return Arrays.equals((boolean[]) a, (boolean[]) b);
+        } else if (a instanceof byte[]) {
+            return Arrays.equals((byte[]) a, (byte[]) b);
+        } else if (a instanceof char[]) {
+            return Arrays.equals((char[]) a, (char[]) b);
+        } else if (a instanceof short[]) {
+            return Arrays.equals((short[]) a, (short[]) b);
+        } else if (a instanceof int[]) {
+            return Arrays.equals((int[]) a, (int[]) b);
+        } else if (a instanceof long[]) {
+            return Arrays.equals((long[]) a, (long[]) b);
+        } else if (a instanceof float[]) {
+            return Arrays.equals((float[]) a, (float[]) b);
+        }
+        return Arrays.equals((double[]) a, (double[]) b);
+    }
+
+    private static int memberValueHashCode(Object value) {
+        if (!value.getClass().isArray()) {
+            return value.hashCode();
+        } else if (value instanceof Object[]) {
+            return Arrays.hashCode((Object[]) value);
+        } else if (value instanceof boolean[]) {
+            return Arrays.hashCode((boolean[]) value);
+        } else if (value instanceof byte[]) {
+            return Arrays.hashCode((byte[]) value);
+        } else if (value instanceof char[]) {
+            return Arrays.hashCode((char[]) value);
+        } else if (value instanceof short[]) {
+            return Arrays.hashCode((short[]) value);
+        } else if (value instanceof int[]) {
+            return Arrays.hashCode((int[]) value);
+        } else if (value instanceof long[]) {
+            return Arrays.hashCode((long[]) value);
+        } else if (value instanceof float[]) {
+            return Arrays.hashCode((float[]) value);
+        }
+        return Arrays.hashCode((double[]) value);
+    }
+
+    private static String memberValueToString(Object value) {
+        if (value instanceof Class<?>) {
+            return ((Class<?>) value).getName() + ".class";
+        } else if (value instanceof String) {
+            return '"' + (String) value + '"';
+        } else if (value instanceof ExceptionProxy || !value.getClass().isArray()) {
+            return String.valueOf(value);
+        }
+        final StringBuilder sb = new StringBuilder("[");
+        for (int i = 0; i < Array.getLength(value); ++i) {
+            if (i > 0) {
+                sb.append(", ");
+            }
+            sb.append(memberValueToString(Array.get(value, i)));
+        }
+        return sb.append(']').toString();
+    }
+}
@@ -50,8 +50,12 @@ public class BaseClassData {
     private final ClassLoader loader;
     private final String superClassName;
     private final boolean replaceable;
+    /**
+     * true if the class has or inherits a slot field for added instance fields
+     */
+    private final boolean fieldSlots;
 
-    public BaseClassData(ClassFile file, ClassLoader loader, boolean replaceable) {
+    public BaseClassData(ClassFile file, ClassLoader loader, boolean replaceable, boolean fieldSlots) {
         className = file.getName();
         this.replaceable = replaceable;
         internalName = Descriptor.toJvmName(file.getName());
@@ -64,7 +68,12 @@ public class BaseClassData {
             MemberType type = MemberType.NORMAL;
             if ((m.getDescriptor().equals(Constants.ADDED_METHOD_DESCRIPTOR) && m.getName().equals(Constants.ADDED_METHOD_NAME))
                     || (m.getDescriptor().equals(Constants.ADDED_METHOD_DESCRIPTOR) && m.getName().equals(Constants.ADDED_STATIC_METHOD_NAME))
-                    || (m.getDescriptor().equals(Constants.ADDED_CONSTRUCTOR_DESCRIPTOR))) {
+                    || (m.getDescriptor().equals(Constants.ADDED_CONSTRUCTOR_DESCRIPTOR))
+                    || isTypedDelegator(m.getName(), m.getDescriptor())
+                    || m.getName().equals(Constants.ADDED_FIELD_GETTER_NAME)
+                    || m.getName().equals(Constants.ADDED_FIELD_SETTER_NAME)
+                    || m.getName().equals(Constants.ADDED_PRIMITIVE_FIELD_GETTER_NAME)
+                    || m.getName().equals(Constants.ADDED_PRIMITIVE_FIELD_SETTER_NAME)) {
                 type = MemberType.ADDED_SYSTEM;
             } else if (m.getAttribute(Constants.FINAL_METHOD_ATTRIBUTE) != null) {
                 finalMethod = true;
@@ -78,9 +87,13 @@ public class BaseClassData {
         for (Object o : file.getFields()) {
             FieldInfo m = (FieldInfo) o;
             MemberType mt = MemberType.NORMAL;
+            if (m.getName().equals(Constants.ADDED_FIELD_SLOTS_NAME) || m.getName().equals(Constants.ADDED_PRIMITIVE_FIELD_SLOTS_NAME)) {
+                mt = MemberType.ADDED_SYSTEM;
+            }
             fieldData.add(new FieldData(m, mt, className, m.getAccessFlags()));
         }
         this.fields = Collections.unmodifiableList(fieldData);
+        this.fieldSlots = fieldSlots;
     }
 
     public BaseClassData(Class<?> cls) {
@@ -98,7 +111,8 @@ public class BaseClassData {
             MemberType type = MemberType.NORMAL;
             final String descriptor = DescriptorUtils.getDescriptor(m);
             if ((descriptor.equals(Constants.ADDED_METHOD_DESCRIPTOR) && m.getName().equals(Constants.ADDED_METHOD_NAME))
-                    || (descriptor.equals(Constants.ADDED_METHOD_DESCRIPTOR) && m.getName().equals(Constants.ADDED_STATIC_METHOD_NAME))) {
+                    || (descriptor.equals(Constants.ADDED_METHOD_DESCRIPTOR) && m.getName().equals(Constants.ADDED_STATIC_METHOD_NAME))
+                    || isTypedDelegator(m.getName(), descriptor)) {
                 type = MemberType.ADDED_SYSTEM;
             }
             MethodData md = new MethodData(m.getName(), descriptor, cls.getName(), type, m.getModifiers(), false);
@@ -107,7 +121,7 @@ public class BaseClassData {
         for (Constructor<?> c : cls.getDeclaredConstructors()) {
             MemberType type = MemberType.NORMAL;
             final String descriptor = DescriptorUtils.getDescriptor(c);
-            if (descriptor.equals(Constants.ADDED_CONSTRUCTOR_DESCRIPTOR)) {
+            if (descriptor.equals(Constants.ADDED_CONSTRUCTOR_DESCRIPTOR) || descriptor.equals(Constants.ADDED_TYPED_CONSTRUCTOR_DESCRIPTOR)) {
                 type = MemberType.ADDED_SYSTEM;
             }
             MethodData md = new MethodData("<init>", descriptor, cls.getName(), type, c.getModifiers(), false);
@@ -120,6 +134,7 @@ public class BaseClassData {
             fieldData.add(new FieldData(m));
         }
         this.fields = Collections.unmodifiableList(fieldData);
+        this.fieldSlots = false;
     }
 
     public String getSuperClassName() {
@@ -159,6 +174,29 @@ public class BaseClassData {
         return null;
     }
 
+    /**
+     * @return <code>true</code> if the class has or inherits a slot field to store the values of added instance fields
+     */
+    public boolean hasFieldSlots() {
+        return fieldSlots;
+    }
+
+    /**
+     * Returns the class that owns the storage for added instance fields. This is the topmost class in the hierarchy
+     * that has slot fields, or this class if it does not have slot fields.
+     */
+    public BaseClassData getFieldSlotsOwner() {
+        BaseClassData owner = this;
+        while (owner.hasFieldSlots()) {
+            BaseClassData superData = ClassDataStore.instance().findBaseClassData(owner.getLoader(), owner.getSuperClassName());
+            if (superData == null || !superData.hasFieldSlots()) {
+                break;
+            }
+            owner = superData;
+        }
+        return owner;
+    }
+
     public MethodData getMethodOrConstructor(String methodName, String methodDesc) {
         for(MethodData method : methods) {
             if(method.getMethodName().equals(methodName) && method.getDescriptor().equals(methodDesc)) {
@@ -167,4 +205,14 @@ public class BaseClassData {
         }
         return null;
     }
+
+    private static boolean isTypedDelegator(String name, String descriptor) {
+        if (descriptor.equals(Constants.ADDED_TYPED_CONSTRUCTOR_DESCRIPTOR)) {
+            return true;
+        }
+        return name.equals(Constants.ADDED_TYPED_METHOD_NAME)
+                || name.equals(Constants.ADDED_TYPED_PRIMITIVE_METHOD_NAME)
+                || name.equals(Constants.ADDED_TYPED_STATIC_METHOD_NAME)
+                || name.equals(Constants.ADDED_TYPED_STATIC_PRIMITIVE_METHOD_NAME);
+    }
 }
@@ -108,6 +108,22 @@ public class ClassDataStore {
         return map.get(className);
     }
 
+    /**
+     * Searches through the class loader and its parents to find the base class data for a class
+     */
+    public BaseClassData findBaseClassData(ClassLoader loader, String className) {
+        if (className == null) {
+            return null;
+        }
+        BaseClassData data = getBaseClassData(loader, className);
+        ClassLoader l = loader;
+        while (data == null && l != null) {
+            l = l.getParent();
+            data = getBaseClassData(l, className);
+        }
+        return data;
+    }
+
     public Class<?> getRealClassFromProxyName(String proxyName) {
         return proxyNameToReplacedClass.get(proxyName);
     }
@@ -23,6 +23,7 @@ import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
 import java.util.WeakHashMap;
+import java.util.function.Supplier;
 
 /**
  * All data that is stored for a class loader.
@@ -43,6 +44,8 @@ public class ClassLoaderData {
     private final Map<String, ClassData> classData = Collections.synchronizedMap(new HashMap<>());
     private final Map<String, BaseClassData> baseClassData = Collections.synchronizedMap(new HashMap<>());
     private final Map<String, byte[]> proxyDefinitions = Collections.synchronizedMap(new HashMap<>());
+    private final Map<String, String> staticFieldHolders = Collections.synchronizedMap(new HashMap<>());
+    private final Map<String, Map<String, String>> memberProxies = Collections.synchronizedMap(new HashMap<>());
     private final Map<AttachmentKey, Object> attachments = Collections.synchronizedMap(new HashMap<>());
 
 
@@ -62,6 +65,14 @@ public class ClassLoaderData {
         return proxyDefinitions;
     }
 
+    public Map<String, String> getStaticFieldHolders() {
+        return staticFieldHolders;
+    }
+
+    public Map<String, Map<String, String>> getMemberProxies() {
+        return memberProxies;
+    }
+
     public <T> void putAttachment(AttachmentKey<T> attachmentKey, T value) {
         attachments.put(attachmentKey, value);
     }
@@ -71,6 +82,11 @@ public class ClassLoaderData {
         return (T) attachments.get(attachmentKey);
     }
 
+    @SuppressWarnings("unchecked")
+    public <T> T computeAttachmentIfAbsent(AttachmentKey<T> attachmentKey, Supplier<T> supplier) {
+        return (T) attachments.computeIfAbsent(attachmentKey, (k) -> supplier.get());
+    }
+
     @SuppressWarnings("unchecked")
     public static <T> Set<T> allAttachment(AttachmentKey<T> attachmentKey) {
         HashSet<T> ret = new HashSet<>();
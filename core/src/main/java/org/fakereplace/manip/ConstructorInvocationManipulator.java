@@ -32,6 +32,7 @@ import org.fakereplace.runtime.MethodIdentifierStore;
 import org.fakereplace.util.DescriptorUtils;
 import javassist.bytecode.Bytecode;
 import javassist.bytecode.ClassFile;
+import javassist.bytecode.CodeAttribute;
 import javassist.bytecode.CodeIterator;
 import javassist.bytecode.ConstPool;
 import javassist.bytecode.MethodInfo;
@@ -135,13 +136,25 @@ class ConstructorInvocationManipulator implements ClassManipulator {
                                 it.writeByte(CodeIterator.NOP, index + 2);
 
                                 Bytecode bc = new Bytecode(file.getConstPool());
-                                ManipulationUtils.pushParametersIntoArray(bc, data.getMethodDesc());
-                                // so now our stack looks like unconstructed instance : array
-                                // we need unconstructed instance : int : array : null
-                                bc.addIconst(data.getMethodNo());
-                                bc.add(Opcode.SWAP);
-                                bc.add(Opcode.ACONST_NULL);
-                                bc.addInvokespecial(data.getClazz(), "<init>", Constants.ADDED_CONSTRUCTOR_DESCRIPTOR);
+                                if (TypedDelegators.canUseRegisters(data.getMethodDesc())) {
+                                    // move the arguments into new local variables so they can be
+                                    // passed to the typed constructor without boxing
+                                    CodeAttribute code = m.getCodeAttribute();
+                                    int firstLocal = code.getMaxLocals();
+                                    code.setMaxLocals(firstLocal + TypedDelegators.storeArguments(bc, data.getMethodDesc(), firstLocal));
+                                    bc.addIconst(data.getMethodNo());
+                                    TypedDelegators.pushRegisters(bc, data.getMethodDesc(), firstLocal);
+                                    bc.add(Opcode.ACONST_NULL);
+                                    bc.addInvokespecial(data.getClazz(), "<init>", Constants.ADDED_TYPED_CONSTRUCTOR_DESCRIPTOR);
+                                } else {
+                                    ManipulationUtils.pushParametersIntoArray(bc, data.getMethodDesc());
+                                    // so now our stack looks like unconstructed instance : array
+                                    // we need unconstructed instance : int : array : null
+                                    bc.addIconst(data.getMethodNo());
+                                    bc.add(Opcode.SWAP);
+                                    bc.add(Opcode.ACONST_NULL);
+                                    bc.addInvokespecial(data.getClazz(), "<init>", Constants.ADDED_CONSTRUCTOR_DESCRIPTOR);
+                                }
                                 // and we have our bytecode
                                 it.insert(bc.get());
                                 modifiedMethods.add(m);
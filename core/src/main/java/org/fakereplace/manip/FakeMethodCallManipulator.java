@@ -39,6 +39,7 @@ import javassist.bytecode.BadBytecode;
 import javassist.bytecode.BootstrapMethodsAttribute;
 import javassist.bytecode.Bytecode;
 import javassist.bytecode.ClassFile;
+import javassist.bytecode.CodeAttribute;
 import javassist.bytecode.CodeIterator;
 import javassist.bytecode.ConstPool;
 import javassist.bytecode.MethodInfo;
@@ -292,6 +293,27 @@ public class FakeMethodCallManipulator implements ClassManipulator {
         final boolean staticMethod = data.getType() == Type.STATIC;
         Bytecode byteCode = new Bytecode(file.getConstPool());
 
+        if (data.getType() != Type.INTERFACE && TypedDelegators.canUseRegisters(data.getMethodDesc())) {
+            // move the arguments into new local variables so they can be passed
+            // to the typed delegator without boxing
+            CodeAttribute code = m.getCodeAttribute();
+            int firstLocal = code.getMaxLocals();
+            code.setMaxLocals(firstLocal + TypedDelegators.storeArguments(byteCode, data.getMethodDesc(), firstLocal));
+            byteCode.addIconst(data.getMethodNumber());
+            TypedDelegators.pushRegisters(byteCode, data.getMethodDesc(), firstLocal);
+            String name = TypedDelegators.getDelegatorName(staticMethod, data.getMethodDesc());
+            String descriptor = TypedDelegators.getDelegatorDescriptor(data.getMethodDesc());
+            if (staticMethod) {
+                byteCode.addInvokestatic(data.getClassName(), name, descriptor);
+            } else {
+                byteCode.addInvokevirtual(data.getClassName(), name, descriptor);
+            }
+            TypedDelegators.convertReturnValue(byteCode, data.getMethodDesc());
+            it.insertEx(byteCode.get());
+            modifiedMethods.add(m);
+            return;
+        }
+
         // stick the method number in the const pool then load it onto the
         // stack
 
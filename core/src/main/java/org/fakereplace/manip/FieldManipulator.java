@@ -22,15 +22,17 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
-import org.fakereplace.core.Fakereplace;
+import org.fakereplace.core.Constants;
+import org.fakereplace.core.StaticFieldHolderStore;
 import org.fakereplace.core.Transformer;
 import org.fakereplace.data.BaseClassData;
 import org.fakereplace.data.ClassDataStore;
 import org.fakereplace.data.FieldData;
+import org.fakereplace.data.MemberType;
 import org.fakereplace.logging.Logger;
-import org.fakereplace.util.Boxing;
 import org.fakereplace.runtime.FieldDataStore;
 import org.fakereplace.runtime.FieldReferenceDataStore;
+import org.fakereplace.util.Boxing;
 import org.fakereplace.util.DescriptorUtils;
 import javassist.bytecode.Bytecode;
 import javassist.bytecode.ClassFile;
@@ -69,19 +71,11 @@ public class FieldManipulator implements ClassManipulator {
                 String className = pool.getFieldrefClassName(i);
                 String fieldName = pool.getFieldrefName(i);
                 String descriptor = pool.getFieldrefType(i);
-                boolean handled = false;
-                if (addedFieldData.containsKey(className)) {
-                    for (Data data : addedFieldData.get(className)) {
-                        if (fieldName.equals(data.getName())) {
-                            // store the location in the const pool of the method ref
-                            fieldAccessLocations.put(i, data);
-                            handled = true;
-                            break;
-                        }
-
-                    }
-                }
-                if (!handled && replaceable) {
+                Data added = findAddedField(addedFieldData, className, fieldName);
+                if (added != null) {
+                    // store the location in the const pool of the method ref
+                    fieldAccessLocations.put(i, added);
+                } else if (replaceable) {
                     //may be an added field
                     //if the field does not actually exist yet we just assume it is about to come into existence
                     //and rewrite it anyway
@@ -89,14 +83,21 @@ public class FieldManipulator implements ClassManipulator {
                     if(data != null) {
                         FieldData field = data.getField(fieldName);
                         if (field == null) {
-                            //this is a new field
-                            //lets deal with it
-                            int fieldNo = FieldReferenceDataStore.instance().getFieldNo(fieldName, descriptor);
-                            Data fieldData = new Data(fieldNo, fieldName, descriptor, className, loader);
-                            fieldAccessLocations.put(i, fieldData);
-                            Transformer.getManipulator().rewriteInstanceFieldAccess(fieldNo, fieldName, descriptor, className, loader);
-                            addedFieldData = this.data.getManipulationData(loader);
-
+                            //the field may have been added to a superclass, and is being accessed through a subclass
+                            //reference, or it may be a real field on a superclass
+                            FieldLookup inherited = findInheritedField(addedFieldData, loader, data, fieldName);
+                            if (inherited.data != null) {
+                                fieldAccessLocations.put(i, inherited.data);
+                            } else if (!inherited.realField) {
+                                //this is a new field
+                                //lets deal with it
+                                BaseClassData owner = data.getFieldSlotsOwner();
+                                int fieldNo = FieldReferenceDataStore.instance().getFieldNo(owner.getLoader(), owner.getClassName(), className, fieldName, descriptor);
+                                Data fieldData = new Data(fieldNo, fieldName, descriptor, className, loader);
+                                fieldAccessLocations.put(i, fieldData);
+                                Transformer.getManipulator().rewriteInstanceFieldAccess(fieldNo, fieldName, descriptor, className, loader);
+                                addedFieldData = this.data.getManipulationData(loader);
+                            }
                         }
                     }
                 }
@@ -124,49 +125,57 @@ public class FieldManipulator implements ClassManipulator {
                             // if the field access is for an added field
                             if (fieldAccessLocations.containsKey(val)) {
                                 Data data = fieldAccessLocations.get(val);
+                                if (op == Opcode.GETSTATIC || op == Opcode.PUTSTATIC) {
+                                    // added static fields are real fields on a holder class, so we just point the instruction at it
+                                    String holder = StaticFieldHolderStore.getHolderName(data.getClassLoader(), data.getClassName(), data.getName(), data.getDescriptor());
+                                    int holderField = pool.addFieldrefInfo(pool.addClassInfo(holder), data.getName(), data.getDescriptor());
+                                    it.write16bit(holderField, index + 1);
+                                    modifiedMethods.add(m);
+                                    continue;
+                                }
                                 int arrayPos = file.getConstPool().addIntegerInfo(data.getArrayIndex());
                                 // write over the field access with nop
                                 it.writeByte(Opcode.NOP, index);
                                 it.writeByte(Opcode.NOP, index + 1);
                                 it.writeByte(Opcode.NOP, index + 2);
 
+                                final char type = data.getDescriptor().charAt(0);
+                                final boolean primitive = DescriptorUtils.isPrimitive(data.getDescriptor());
                                 if (op == Opcode.PUTFIELD) {
                                     Bytecode b = new Bytecode(file.getConstPool());
-                                    if (data.getDescriptor().charAt(0) != 'L' && data.getDescriptor().charAt(0) != '[') {
-                                        Boxing.box(b, data.getDescriptor().charAt(0));
+                                    if (primitive) {
+                                        Boxing.toBits(b, type);
                                     }
                                     b.addLdc(arrayPos);
-                                    b.addInvokestatic(FIELD_DATA_STORE_CLASS, "setValue", "(Ljava/lang/Object;Ljava/lang/Object;I)V");
+                                    if (data.isFieldSlots()) {
+                                        if (primitive) {
+                                            b.addInvokestatic(data.getClassName(), Constants.ADDED_PRIMITIVE_FIELD_SETTER_NAME, Constants.ADDED_PRIMITIVE_FIELD_SETTER_DESCRIPTOR);
+                                        } else {
+                                            b.addInvokestatic(data.getClassName(), Constants.ADDED_FIELD_SETTER_NAME, Constants.ADDED_FIELD_SETTER_DESCRIPTOR);
+                                        }
+                                    } else if (primitive) {
+                                        b.addInvokestatic(FIELD_DATA_STORE_CLASS, "setPrimitiveValue", "(Ljava/lang/Object;JI)V");
+                                    } else {
+                                        b.addInvokestatic(FIELD_DATA_STORE_CLASS, "setValue", "(Ljava/lang/Object;Ljava/lang/Object;I)V");
+                                    }
                                     it.insertEx(b.get());
                                 } else if (op == Opcode.GETFIELD) {
                                     Bytecode b = new Bytecode(file.getConstPool());
                                     b.addLdc(arrayPos);
-                                    b.addInvokestatic(FIELD_DATA_STORE_CLASS, "getValue", "(Ljava/lang/Object;I)Ljava/lang/Object;");
-
-                                    if (DescriptorUtils.isPrimitive(data.getDescriptor())) {
-                                        Boxing.unbox(b, data.getDescriptor().charAt(0));
+                                    if (data.isFieldSlots()) {
+                                        if (primitive) {
+                                            b.addInvokestatic(data.getClassName(), Constants.ADDED_PRIMITIVE_FIELD_GETTER_NAME, Constants.ADDED_PRIMITIVE_FIELD_GETTER_DESCRIPTOR);
+                                        } else {
+                                            b.addInvokestatic(data.getClassName(), Constants.ADDED_FIELD_GETTER_NAME, Constants.ADDED_FIELD_GETTER_DESCRIPTOR);
+                                        }
+                                    } else if (primitive) {
+                                        b.addInvokestatic(FIELD_DATA_STORE_CLASS, "getPrimitiveValue", "(Ljava/lang/Object;I)J");
                                     } else {
-                                        b.addCheckcast(DescriptorUtils.getTypeStringFromDescriptorFormat(data.getDescriptor()));
-                                    }
-                                    it.insertEx(b.get());
-                                } else if (op == Opcode.PUTSTATIC) {
-                                    Bytecode b = new Bytecode(file.getConstPool());
-                                    if (data.getDescriptor().charAt(0) != 'L' && data.getDescriptor().charAt(0) != '[') {
-                                        Boxing.box(b, data.getDescriptor().charAt(0));
+                                        b.addInvokestatic(FIELD_DATA_STORE_CLASS, "getValue", "(Ljava/lang/Object;I)Ljava/lang/Object;");
                                     }
-                                    b.addLdc(file.getConstPool().addClassInfo(data.getClassName()));
-                                    b.add(Opcode.SWAP);
-                                    b.addLdc(arrayPos);
-                                    b.addInvokestatic(FIELD_DATA_STORE_CLASS, "setValue", "(Ljava/lang/Object;Ljava/lang/Object;I)V");
-                                    it.insertEx(b.get());
-                                } else if (op == Opcode.GETSTATIC) {
-                                    Bytecode b = new Bytecode(file.getConstPool());
-                                    b.addLdc(file.getConstPool().addClassInfo(data.getClassName()));
-                                    b.addLdc(arrayPos);
-                                    b.addInvokestatic(FIELD_DATA_STORE_CLASS, "getValue", "(Ljava/lang/Object;I)Ljava/lang/Object;");
 
-                                    if (DescriptorUtils.isPrimitive(data.getDescriptor())) {
-                                        Boxing.unbox(b, data.getDescriptor().charAt(0));
+                                    if (primitive) {
+                                        Boxing.fromBits(b, type);
                                     } else {
                                         b.addCheckcast(DescriptorUtils.getTypeStringFromDescriptorFormat(data.getDescriptor()));
                                     }
@@ -187,10 +196,54 @@ public class FieldManipulator implements ClassManipulator {
         }
     }
 
+    private static Data findAddedField(Map<String, Set<Data>> addedFieldData, String className, String fieldName) {
+        Set<Data> fields = addedFieldData.get(className);
+        if (fields != null) {
+            for (Data data : fields) {
+                if (fieldName.equals(data.getName())) {
+                    return data;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Walks the superclasses of a class looking for a field that is accessed through a subclass reference
+     */
+    private static FieldLookup findInheritedField(Map<String, Set<Data>> addedFieldData, ClassLoader loader, BaseClassData data, String fieldName) {
+        BaseClassData current = data;
+        while (current.getSuperClassName() != null) {
+            Data added = findAddedField(addedFieldData, current.getSuperClassName(), fieldName);
+            if (added != null) {
+                return new FieldLookup(added, false);
+            }
+            current = ClassDataStore.instance().getBaseClassData(loader, current.getSuperClassName());
+            if (current == null) {
+                break;
+            }
+            FieldData field = current.getField(fieldName);
+            if (field != null && field.getMemberType() == MemberType.NORMAL) {
+                return new FieldLookup(null, true);
+            }
+        }
+        return new FieldLookup(null, false);
+    }
+
     public void clearRewrites(String className, ClassLoader loader) {
         data.remove(className, loader);
     }
 
+    private static final class FieldLookup {
+        private final Data data;
+        private final boolean realField;
+
+        private FieldLookup(Data data, boolean realField) {
+            this.data = data;
+            this.realField = realField;
+        }
+    }
+
     /**
      * Stores information about an added instance field.
      *
@@ -202,6 +255,10 @@ public class FieldManipulator implements ClassManipulator {
         private final String descriptor;
         private final String className;
         private final ClassLoader classLoader;
+        /**
+         * true if the declaring class has or inherits a slot field that holds added instance fields
+         */
+        private final boolean fieldSlots;
 
         public Data(int arrayIndex, String name, String descriptor, String className, ClassLoader classLoader) {
             super();
@@ -210,6 +267,8 @@ public class FieldManipulator implements ClassManipulator {
             this.descriptor = descriptor;
             this.className = className;
             this.classLoader = classLoader;
+            BaseClassData data = ClassDataStore.instance().getBaseClassData(classLoader, className);
+            this.fieldSlots = data != null && data.hasFieldSlots();
         }
 
         public int getArrayIndex() {
@@ -232,6 +291,10 @@ public class FieldManipulator implements ClassManipulator {
             return classLoader;
         }
 
+        public boolean isFieldSlots() {
+            return fieldSlots;
+        }
+
         public Data getInstance() {
             return this;
         }
@@ -20,6 +20,7 @@ package org.fakereplace.manip;
 import java.util.Map;
 import java.util.Set;
 
+import org.fakereplace.runtime.MethodIdentifierStore;
 import org.fakereplace.runtime.VirtualDelegator;
 import org.fakereplace.util.DescriptorUtils;
 import javassist.bytecode.BadBytecode;
@@ -31,13 +32,12 @@ import javassist.bytecode.Opcode;
 /**
  * this manipulator adds code that looks like:
  * <p>
- * if(!this.getClass().getName().equals("CurrentClass")) //if this is a subclass
+ * if(this.getClass() != CurrentClass.class) //if this is a subclass
  * {
- * if(org.fakereplace.runtime.VirtualDelegator.contains(this,methodName,
- * methodDescriptor))
+ * if(org.fakereplace.runtime.VirtualDelegator.contains(this,guardId))
  * {
- * return org.fakereplace.runtime.VirtualDelegator.run(this,methodName,
- * methodDescriptor));
+ * return org.fakereplace.runtime.VirtualDelegator.run(this,methodNumber,
+ * params));
  * }
  * }
  * <p>
@@ -78,8 +78,7 @@ class SubclassVirtualCallManipulator implements ClassManipulator {
 
                         Bytecode run = new Bytecode(file.getConstPool());
                         run.add(Opcode.ALOAD_0);
-                        run.addLdc(method.getName());
-                        run.addLdc(method.getDescriptor());
+                        run.addIconst(MethodIdentifierStore.instance().getMethodNumber(method.getName(), method.getDescriptor()));
                         String[] params = DescriptorUtils.descriptorStringToParameterArray(method.getDescriptor());
                         int count = 1;
                         for (int i = 0; i < params.length; ++i) {
@@ -99,15 +98,13 @@ class SubclassVirtualCallManipulator implements ClassManipulator {
                             count++;
                         }
                         ManipulationUtils.pushParametersIntoArray(run, method.getDescriptor());
-                        run.addInvokestatic(VirtualDelegator.class.getName(), "run", "(Ljava/lang/Object;Ljava/lang/String;Ljava/lang/String;[Ljava/lang/Object;)Ljava/lang/Object;");
+                        run.addInvokestatic(VirtualDelegator.class.getName(), "run", "(Ljava/lang/Object;I[Ljava/lang/Object;)Ljava/lang/Object;");
                         ManipulationUtils.MethodReturnRewriter.addReturnProxyMethod(method.getDescriptor(), run);
 
                         Bytecode cd = new Bytecode(file.getConstPool());
                         cd.add(Opcode.ALOAD_0);
-                        cd.addLdc(file.getName());
-                        cd.addLdc(method.getName());
-                        cd.addLdc(method.getDescriptor());
-                        cd.addInvokestatic(VirtualDelegator.class.getName(), "contains", "(Ljava/lang/Object;Ljava/lang/String;Ljava/lang/String;Ljava/lang/String;)Z");
+                        cd.addIconst(VirtualDelegator.getGuardId(file.getName(), method.getName(), method.getDescriptor()));
+                        cd.addInvokestatic(VirtualDelegator.class.getName(), "contains", "(Ljava/lang/Object;I)Z");
                         cd.add(Opcode.IFEQ); // if contains is true
                         ManipulationUtils.add16bit(cd, run.getSize() + 3);
 
@@ -115,13 +112,10 @@ class SubclassVirtualCallManipulator implements ClassManipulator {
                         // this.getClass()
                         b.add(Opcode.ALOAD_0);
                         b.addInvokevirtual("java.lang.Object", "getClass", "()Ljava/lang/Class;");
-                        b.addInvokevirtual("java.lang.Class", "getName", "()Ljava/lang/String;");
-                        // now we have the class name on the stack
-                        // push the class being manipulateds name onto the stack
-                        b.addLdc(file.getName());
-                        b.addInvokevirtual("java.lang.Object", "equals", "(Ljava/lang/Object;)Z");
-                        // now we have a boolean on top of the stack
-                        b.add(Opcode.IFNE); // if true jump
+                        // push the class being manipulated onto the stack
+                        b.addLdc(file.getConstPool().addClassInfo(file.getName()));
+                        // if they are the same class we can skip the check
+                        b.add(Opcode.IF_ACMPEQ);
                         ManipulationUtils.add16bit(b, run.getSize() + cd.getSize() + 3);
 
                         try {
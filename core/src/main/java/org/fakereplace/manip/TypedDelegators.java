@@ -0,0 +1,347 @@
+/*
+ * Copyright 2016, Stuart Douglas, and individual contributors as indicated
+ * by the @authors tag.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.fakereplace.manip;
+
+import org.fakereplace.core.BuiltinClassData;
+import org.fakereplace.core.Constants;
+import org.fakereplace.util.Boxing;
+import org.fakereplace.util.DescriptorUtils;
+import javassist.bytecode.AccessFlag;
+import javassist.bytecode.BadBytecode;
+import javassist.bytecode.Bytecode;
+import javassist.bytecode.ClassFile;
+import javassist.bytecode.CodeAttribute;
+import javassist.bytecode.MethodInfo;
+import javassist.bytecode.Opcode;
+
+/**
+ * Helper methods for calling added methods through the typed delegators.
+ * <p>
+ * A typed delegator takes the method number followed by {@link #PRIMITIVE_REGISTERS} long registers and
+ * {@link #REFERENCE_REGISTERS} Object registers. Primitive parameters are stored in the long registers in order,
+ * encoded the same way as added primitive fields, and reference parameters are stored in the Object registers.
+ * Unused registers are zero or null. Methods that return a primitive go through the delegators that return a long,
+ * so neither the parameters nor the return value need to be boxed.
+ * <p>
+ * Methods with more parameters than there are registers still go through the delegators that take an Object array.
+ */
+public class TypedDelegators {
+
+    public static final int PRIMITIVE_REGISTERS = 4;
+
+    public static final int REFERENCE_REGISTERS = 4;
+
+    /**
+     * The number of local variable slots the registers take up
+     */
+    public static final int REGISTER_SLOTS = PRIMITIVE_REGISTERS * 2 + REFERENCE_REGISTERS;
+
+    private TypedDelegators() {
+    }
+
+    /**
+     * Returns true if the parameters of the method fit into the registers
+     */
+    public static boolean canUseRegisters(String methodDescriptor) {
+        int primitives = 0;
+        int references = 0;
+        for (String param : DescriptorUtils.descriptorStringToParameterArray(methodDescriptor)) {
+            if (DescriptorUtils.isPrimitive(param)) {
+                primitives++;
+            } else {
+                references++;
+            }
+        }
+        return primitives <= PRIMITIVE_REGISTERS && references <= REFERENCE_REGISTERS;
+    }
+
+    public static boolean returnsPrimitive(String methodDescriptor) {
+        String ret = DescriptorUtils.getReturnType(methodDescriptor);
+        return ret.length() == 1 && !ret.equals("V");
+    }
+
+    /**
+     * Returns the name of the typed delegator that the given added method is dispatched through
+     */
+    public static String getDelegatorName(boolean staticMethod, String methodDescriptor) {
+        if (returnsPrimitive(methodDescriptor)) {
+            return staticMethod ? Constants.ADDED_TYPED_STATIC_PRIMITIVE_METHOD_NAME : Constants.ADDED_TYPED_PRIMITIVE_METHOD_NAME;
+        }
+        return staticMethod ? Constants.ADDED_TYPED_STATIC_METHOD_NAME : Constants.ADDED_TYPED_METHOD_NAME;
+    }
+
+    public static String getDelegatorDescriptor(String methodDescriptor) {
+        return returnsPrimitive(methodDescriptor) ? Constants.ADDED_TYPED_PRIMITIVE_METHOD_DESCRIPTOR : Constants.ADDED_TYPED_METHOD_DESCRIPTOR;
+    }
+
+    /**
+     * Creates a typed delegator with the code that runs if the method number is not found. Virtual delegators pass the
+     * call on to the superclass, static delegators throw a {@link NoSuchMethodError}.
+     */
+    public static MethodInfo createDelegator(ClassFile file, String name, String descriptor, boolean staticMethod) {
+        MethodInfo m = new MethodInfo(file.getConstPool(), name, descriptor);
+        Bytecode b = new Bytecode(file.getConstPool(), 0, REGISTER_SLOTS + (staticMethod ? 1 : 2));
+        if (staticMethod) {
+            m.setAccessFlags(AccessFlag.PUBLIC | AccessFlag.STATIC | AccessFlag.SYNTHETIC);
+            addNoSuchMethodError(b);
+        } else {
+            m.setAccessFlags(AccessFlag.PUBLIC | AccessFlag.SYNTHETIC);
+            if (BuiltinClassData.skipInstrumentation(file.getSuperclass())) {
+                addNoSuchMethodError(b);
+            } else {
+                // delegate to the parent class
+                b.add(Opcode.ALOAD_0);
+                b.add(Opcode.ILOAD_1);
+                for (int i = 0; i < PRIMITIVE_REGISTERS; ++i) {
+                    b.addLload(2 + i * 2);
+                }
+                for (int i = 0; i < REFERENCE_REGISTERS; ++i) {
+                    b.addAload(2 + PRIMITIVE_REGISTERS * 2 + i);
+                }
+                b.addInvokespecial(file.getSuperclass(), name, descriptor);
+                b.add(descriptor.endsWith("J") ? Opcode.LRETURN : Opcode.ARETURN);
+            }
+        }
+        setCode(m, b);
+        return m;
+    }
+
+    /**
+     * Creates the typed constructor delegator, or returns null if the class does not have a constructor that it can
+     * call
+     */
+    public static MethodInfo createConstructorDelegator(ClassFile file) {
+        MethodInfo m = new MethodInfo(file.getConstPool(), "<init>", Constants.ADDED_TYPED_CONSTRUCTOR_DESCRIPTOR);
+        Bytecode b = new Bytecode(file.getConstPool(), 0, REGISTER_SLOTS + 3);
+        if (!ManipulationUtils.addBogusConstructorCall(file, b)) {
+            return null;
+        }
+        m.setAccessFlags(AccessFlag.PUBLIC | AccessFlag.SYNTHETIC);
+        setCode(m, b);
+        return m;
+    }
+
+    private static void setCode(MethodInfo m, Bytecode b) {
+        CodeAttribute ca = b.toCodeAttribute();
+        m.setCodeAttribute(ca);
+        try {
+            ca.computeMaxStack();
+        } catch (BadBytecode e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static void addNoSuchMethodError(Bytecode b) {
+        b.addNew(NoSuchMethodError.class.getName());
+        b.add(Opcode.DUP);
+        b.addInvokespecial(NoSuchMethodError.class.getName(), "<init>", "()V");
+        b.add(Opcode.ATHROW);
+    }
+
+    /**
+     * Stores the arguments of a method call from the top of the stack into local variables, laid out the same way as
+     * the parameters of the method.
+     *
+     * @return the number of local variable slots that were used
+     */
+    public static int storeArguments(Bytecode b, String methodDescriptor, int firstLocal) {
+        String[] params = DescriptorUtils.descriptorStringToParameterArray(methodDescriptor);
+        int[] locals = new int[params.length];
+        int local = firstLocal;
+        for (int i = 0; i < params.length; ++i) {
+            locals[i] = local;
+            local += DescriptorUtils.isWide(params[i]) ? 2 : 1;
+        }
+        for (int i = params.length - 1; i >= 0; --i) {
+            store(b, params[i], locals[i]);
+        }
+        return local - firstLocal;
+    }
+
+    /**
+     * Unpacks the boxed parameters from an Object array into local variables, laid out the same way as the parameters
+     * of the method.
+     *
+     * @return the number of local variable slots that were used
+     */
+    public static int unpackArray(Bytecode b, String methodDescriptor, int arrayLocal, int firstLocal) {
+        String[] params = DescriptorUtils.descriptorStringToParameterArray(methodDescriptor);
+        int local = firstLocal;
+        for (int i = 0; i < params.length; ++i) {
+            b.addAload(arrayLocal);
+            b.addIconst(i);
+            b.add(Opcode.AALOAD);
+            if (DescriptorUtils.isPrimitive(params[i])) {
+                Boxing.unbox(b, params[i].charAt(0));
+            } else {
+                b.addCheckcast(checkcastType(params[i]));
+            }
+            store(b, params[i], local);
+            local += DescriptorUtils.isWide(params[i]) ? 2 : 1;
+        }
+        return local - firstLocal;
+    }
+
+    /**
+     * Pushes the registers for a call to a typed delegator, reading the parameters from the local variables starting
+     * at firstLocal
+     */
+    public static void pushRegisters(Bytecode b, String methodDescriptor, int firstLocal) {
+        String[] params = DescriptorUtils.descriptorStringToParameterArray(methodDescriptor);
+        int local = firstLocal;
+        int primitives = 0;
+        for (String param : params) {
+            if (DescriptorUtils.isPrimitive(param)) {
+                load(b, param, local);
+                Boxing.toBits(b, param.charAt(0));
+                primitives++;
+            }
+            local += DescriptorUtils.isWide(param) ? 2 : 1;
+        }
+        for (; primitives < PRIMITIVE_REGISTERS; ++primitives) {
+            b.add(Opcode.LCONST_0);
+        }
+        local = firstLocal;
+        int references = 0;
+        for (String param : params) {
+            if (!DescriptorUtils.isPrimitive(param)) {
+                b.addAload(local);
+                references++;
+            }
+            local += DescriptorUtils.isWide(param) ? 2 : 1;
+        }
+        for (; references < REFERENCE_REGISTERS; ++references) {
+            b.add(Opcode.ACONST_NULL);
+        }
+    }
+
+    /**
+     * Copies the registers of a typed delegator into the parameters of the added method.
+     *
+     * @param registerBase the local variable that holds the first long register
+     * @param firstLocal   the local variable of the first parameter
+     */
+    public static void loadParameters(Bytecode b, String methodDescriptor, int registerBase, int firstLocal) {
+        int local = firstLocal;
+        int primitives = 0;
+        int references = 0;
+        for (String param : DescriptorUtils.descriptorStringToParameterArray(methodDescriptor)) {
+            if (DescriptorUtils.isPrimitive(param)) {
+                b.addLload(registerBase + 2 * primitives++);
+                Boxing.fromBits(b, param.charAt(0));
+            } else {
+                b.addAload(registerBase + 2 * PRIMITIVE_REGISTERS + references++);
+                b.addCheckcast(checkcastType(param));
+            }
+            store(b, param, local);
+            local += DescriptorUtils.isWide(param) ? 2 : 1;
+        }
+    }
+
+    /**
+     * Converts the value returned by a typed delegator to the return type of the method. For void methods the
+     * return value is discarded.
+     */
+    public static void convertReturnValue(Bytecode b, String methodDescriptor) {
+        String ret = DescriptorUtils.getReturnType(methodDescriptor);
+        if (ret.equals("V")) {
+            b.add(Opcode.POP);
+        } else if (ret.length() == 1) {
+            Boxing.fromBits(b, ret.charAt(0));
+        } else {
+            b.addCheckcast(DescriptorUtils.getReturnTypeInJvmFormat(methodDescriptor));
+        }
+    }
+
+    /**
+     * Adds the return instruction for the return type of the method
+     */
+    public static void addReturn(Bytecode b, String methodDescriptor) {
+        switch (DescriptorUtils.getReturnType(methodDescriptor).charAt(0)) {
+            case 'V':
+                b.add(Opcode.RETURN);
+                break;
+            case 'J':
+                b.add(Opcode.LRETURN);
+                break;
+            case 'F':
+                b.add(Opcode.FRETURN);
+                break;
+            case 'D':
+                b.add(Opcode.DRETURN);
+                break;
+            case 'L':
+            case '[':
+                b.add(Opcode.ARETURN);
+                break;
+            default:
+                b.add(Opcode.IRETURN);
+        }
+    }
+
+    private static String checkcastType(String param) {
+        if (param.charAt(0) == 'L') {
+            return param.substring(1);
+        }
+        // array types from DescriptorUtils do not have the trailing semicolon
+        if (param.charAt(param.lastIndexOf('[') + 1) == 'L' && !param.endsWith(";")) {
+            return param + ';';
+        }
+        return param;
+    }
+
+    private static void load(Bytecode b, String param, int local) {
+        switch (param.charAt(0)) {
+            case 'J':
+                b.addLload(local);
+                break;
+            case 'F':
+                b.addFload(local);
+                break;
+            case 'D':
+                b.addDload(local);
+                break;
+            case 'L':
+            case '[':
+                b.addAload(local);
+                break;
+            default:
+                b.addIload(local);
+        }
+    }
+
+    private static void store(Bytecode b, String param, int local) {
+        switch (param.charAt(0)) {
+            case 'J':
+                b.addLstore(local);
+                break;
+            case 'F':
+                b.addFstore(local);
+                break;
+            case 'D':
+                b.addDstore(local);
+                break;
+            case 'L':
+            case '[':
+                b.addAstore(local);
+                break;
+            default:
+                b.addIstore(local);
+        }
+    }
+}
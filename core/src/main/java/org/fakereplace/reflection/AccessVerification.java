@@ -20,8 +20,12 @@ package org.fakereplace.reflection;
 import java.io.ByteArrayOutputStream;
 import java.io.DataOutputStream;
 import java.io.IOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Modifier;
 import java.util.function.Function;
+import java.util.stream.Stream;
 
 import org.fakereplace.core.ProxyDefinitionStore;
 import javassist.bytecode.AccessFlag;
@@ -40,12 +44,37 @@ class AccessVerification {
     /**
      * The way to do this has changed between JDK8 and JDK9.
      * <p>
-     * To make it compile on both we generate an accessor at runtime using javassist
+     * On JDK9 and later we use a {@link StackWalkerCaller}. On JDK8 we generate an accessor for
+     * <code>sun.reflect.Reflection.getCallerClass</code> at runtime using javassist, so that it compiles on both.
      */
     private static final Function<Integer, Class<?>> GET_CALLER;
 
     static {
+        Function<Integer, Class<?>> caller = createStackWalkerCaller();
+        if (caller == null) {
+            caller = createReflectionCaller();
+        }
+        GET_CALLER = caller;
+    }
+
+    /**
+     * @return a caller lookup that uses <code>StackWalker</code>, or <code>null</code> if we are running on JDK8
+     */
+    static Function<Integer, Class<?>> createStackWalkerCaller() {
+        try {
+            return new StackWalkerCaller();
+        } catch (ClassNotFoundException e) {
+            return null;
+        } catch (ReflectiveOperationException e) {
+            throw new RuntimeException(e);
+        }
+    }
 
+    /**
+     * @return a caller lookup that uses <code>sun.reflect.Reflection</code>, or <code>null</code> if it is not available
+     */
+    @SuppressWarnings("unchecked")
+    static Function<Integer, Class<?>> createReflectionCaller() {
         Function<Integer, Class<?>> caller = null;
         try {
             Class.forName("sun.reflect.Reflection");
@@ -89,7 +118,7 @@ class AccessVerification {
         } catch (IOException | IllegalAccessException | InstantiationException e) {
             throw new RuntimeException(e); //should never happen
         }
-        GET_CALLER = caller;
+        return caller;
     }
 
     static void ensureMemberAccess(Class<?> caller, Class<?> declaring, int modifiers) throws IllegalAccessException {
@@ -184,4 +213,79 @@ class AccessVerification {
     static Class<?> getCallerClass(int pos) {
         return GET_CALLER.apply(pos + 1);
     }
+
+    /**
+     * Finds the caller with <code>StackWalker</code>. We cannot compile against it while targeting JDK8, so it is
+     * driven through method handles that are resolved once.
+     * <p>
+     * The frames at the given depth are counted the same way as <code>sun.reflect.Reflection.getCallerClass</code>
+     * (reflection frames are not shown), with the frames of this class standing in for the generated accessor.
+     * Any frames that belong to the reflection shims themselves are skipped. The walk stops at the first frame that matches, so it only ever looks at the top of the stack.
+     */
+    private static final class StackWalkerCaller implements Function<Integer, Class<?>> {
+
+        /**
+         * the walk functions for the depths that are actually used, to avoid allocating a lambda per call
+         */
+        private static final int CACHED_DEPTHS = 8;
+
+        private final Object walker;
+        private final MethodHandle walk;
+        private final MethodHandle getDeclaringClass;
+        private final Function<Stream<?>, Object>[] walkFunctions;
+
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        StackWalkerCaller() throws ReflectiveOperationException {
+            final Class<?> walkerClass = Class.forName("java.lang.StackWalker");
+            final Class<? extends Enum> optionClass = (Class<? extends Enum>) Class.forName("java.lang.StackWalker$Option");
+            final Class<?> frameClass = Class.forName("java.lang.StackWalker$StackFrame");
+            walker = walkerClass.getMethod("getInstance", optionClass).invoke(null, Enum.valueOf(optionClass, "RETAIN_CLASS_REFERENCE"));
+            final MethodHandles.Lookup lookup = MethodHandles.lookup();
+            walk = lookup.findVirtual(walkerClass, "walk", MethodType.methodType(Object.class, Function.class))
+                    .asType(MethodType.methodType(Object.class, Object.class, Function.class));
+            getDeclaringClass = lookup.findVirtual(frameClass, "getDeclaringClass", MethodType.methodType(Class.class))
+                    .asType(MethodType.methodType(Class.class, Object.class));
+            walkFunctions = new Function[CACHED_DEPTHS];
+            for (int i = 0; i < CACHED_DEPTHS; ++i) {
+                walkFunctions[i] = createWalkFunction(i);
+            }
+        }
+
+        @Override
+        public Class<?> apply(Integer depth) {
+            //depth 1 is the accessor itself, which we drop from the stream
+            final int skip = depth - 1;
+            final Function<Stream<?>, Object> function = skip < CACHED_DEPTHS ? walkFunctions[skip] : createWalkFunction(skip);
+            try {
+                return (Class<?>) (Object) walk.invokeExact(walker, (Function) function);
+            } catch (RuntimeException | Error e) {
+                throw e;
+            } catch (Throwable e) {
+                throw new RuntimeException(e);
+            }
+        }
+
+        private Function<Stream<?>, Object> createWalkFunction(int skip) {
+            return (frames) -> frames.map(this::declaringClass)
+                    .filter((c) -> c != StackWalkerCaller.class)
+                    .skip(skip)
+                    .filter((c) -> !isShim(c))
+                    .findFirst()
+                    .orElse(null);
+        }
+
+        private Class<?> declaringClass(Object frame) {
+            try {
+                return (Class<?>) getDeclaringClass.invokeExact(frame);
+            } catch (RuntimeException | Error e) {
+                throw e;
+            } catch (Throwable e) {
+                throw new RuntimeException(e);
+            }
+        }
+
+        private static boolean isShim(Class<?> c) {
+            return c == AccessVerification.class || c == FieldReflection.class || c == MethodReflection.class || c == ConstructorReflection.class;
+        }
+    }
 }
@@ -25,115 +25,65 @@ import java.lang.reflect.Field;
 import java.lang.reflect.Method;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.fakereplace.data.AnnotationDataStore;
 import org.fakereplace.data.ModifiedMethod;
 
 public class AnnotationReflection {
 
-    private static boolean heiracheyChanged(Class<?> clazz) {
-        Class<?> c = clazz;
-        while (c != Object.class && c != null) {
-            if (AnnotationDataStore.isClassDataRecorded(c)) {
-                return true;
-            }
-            c = c.getSuperclass();
+    /**
+     * The merged class level annotations, as seen once changes to the class and its superclasses are taken into
+     * account. The views are rebuilt whenever new class annotations are recorded.
+     */
+    private static final ClassValue<ClassAnnotationsHolder> classAnnotations = new ClassValue<ClassAnnotationsHolder>() {
+        @Override
+        protected ClassAnnotationsHolder computeValue(Class<?> type) {
+            return new ClassAnnotationsHolder();
         }
-        return false;
+    };
+
+    private static ClassAnnotations classAnnotations(Class<?> clazz) {
+        final ClassAnnotationsHolder holder = classAnnotations.get(clazz);
+        //read the epoch first, if it changes while we are computing the view it will just be recomputed next time
+        final int epoch = AnnotationDataStore.getClassAnnotationEpoch();
+        ClassAnnotations view = holder.view;
+        if (view == null || view.epoch != epoch) {
+            holder.view = view = new ClassAnnotations(clazz, epoch);
+        }
+        return view;
     }
 
     public static boolean isAnnotationPresent(Class<?> clazz, Class<? extends Annotation> anType) {
-        if (anType.isAnnotationPresent(Inherited.class) && heiracheyChanged(clazz)) {
-            Class<?> c = clazz;
-            while (c != null && c != Object.class) {
-                if (AnnotationDataStore.isClassDataRecorded(c)) {
-                    if (AnnotationDataStore.isClassAnnotationPresent(c, anType)) {
-                        return true;
-                    }
-                } else {
-                    // can't just use getAnnotation, as an inherited annotation
-                    // may have been removed from a parent class
-                    Annotation[] declared = c.getDeclaredAnnotations();
-                    for (Annotation a : declared) {
-                        if (a.annotationType() == anType) {
-                            return true;
-                        }
-                    }
-                }
-                c = c.getSuperclass();
-            }
-            return false;
-        } else if (AnnotationDataStore.isClassDataRecorded(clazz)) {
-            return AnnotationDataStore.isClassAnnotationPresent(clazz, anType);
+        final ClassAnnotations view = classAnnotations(clazz);
+        if (view.changed) {
+            return view.byType.containsKey(anType);
         }
         return clazz.isAnnotationPresent(anType);
     }
 
     public static Annotation getAnnotation(Class<?> clazz, Class<? extends Annotation> anType) {
-        if (anType.isAnnotationPresent(Inherited.class) && heiracheyChanged(clazz)) {
-            Annotation result = null;
-            Class<?> c = clazz;
-            while (result == null && c != null && c != Object.class) {
-                if (AnnotationDataStore.isClassDataRecorded(c)) {
-                    result = AnnotationDataStore.getClassAnnotation(c, anType);
-                } else {
-                    // can't just use getAnnotation, as an inherited annotation
-                    // may have been removed from a parent class
-                    Annotation[] declared = c.getDeclaredAnnotations();
-                    for (Annotation a : declared) {
-                        if (a.annotationType() == anType) {
-                            result = a;
-                            break;
-                        }
-                    }
-                }
-                c = c.getSuperclass();
-            }
-            return result;
-        } else if (AnnotationDataStore.isClassDataRecorded(clazz)) {
-            return AnnotationDataStore.getClassAnnotation(clazz, anType);
+        final ClassAnnotations view = classAnnotations(clazz);
+        if (view.changed) {
+            return view.byType.get(anType);
         }
         return clazz.getAnnotation(anType);
     }
 
     public static Annotation[] getAnnotations(Class<?> clazz) {
-        if (heiracheyChanged(clazz)) {
-            Annotation[] pres;
-            if (AnnotationDataStore.isClassDataRecorded(clazz)) {
-                pres = AnnotationDataStore.getClassAnnotations(clazz);
-            } else {
-                pres = clazz.getDeclaredAnnotations();
-            }
-            List<Annotation> result = new ArrayList<>();
-            result.addAll(Arrays.asList(pres));
-            Class<?> c = clazz.getSuperclass();
-            while (c != Object.class && c != null) {
-                if (AnnotationDataStore.isClassDataRecorded(c)) {
-                    pres = AnnotationDataStore.getClassAnnotations(c);
-                } else {
-                    pres = c.getDeclaredAnnotations();
-                }
-                for (Annotation a : pres) {
-                    if (a.annotationType().isAnnotationPresent(Inherited.class)) {
-                        result.add(a);
-                    }
-                }
-                c = c.getSuperclass();
-            }
-            Annotation[] ret = new Annotation[result.size()];
-            int count = 0;
-            for (Annotation a : result) {
-                ret[count++] = a;
-            }
-            return ret;
+        final ClassAnnotations view = classAnnotations(clazz);
+        if (view.changed) {
+            return view.annotations.clone();
         }
         return clazz.getAnnotations();
     }
 
     public static Annotation[] getDeclaredAnnotations(Class<?> clazz) {
-        if (AnnotationDataStore.isClassDataRecorded(clazz)) {
-            return AnnotationDataStore.getClassAnnotations(clazz);
+        final ClassAnnotations view = classAnnotations(clazz);
+        if (view.changed) {
+            return view.declared.clone();
         }
         return clazz.getDeclaredAnnotations();
     }
@@ -362,4 +312,74 @@ public class AnnotationReflection {
         return clazz.getDeclaredAnnotations();
     }
 
+    private static final class ClassAnnotationsHolder {
+        volatile ClassAnnotations view;
+    }
+
+    private static final class ClassAnnotations {
+
+        final int epoch;
+
+        /**
+         * <code>false</code> if no class in the hierarchy has had its annotations changed, in which case the JDK
+         * can be asked directly
+         */
+        final boolean changed;
+
+        final Annotation[] declared;
+
+        final Annotation[] annotations;
+
+        /**
+         * the annotations that are present on the class, either directly or inherited from a superclass
+         */
+        final Map<Class<? extends Annotation>, Annotation> byType;
+
+        ClassAnnotations(Class<?> clazz, int epoch) {
+            this.epoch = epoch;
+            boolean changed = false;
+            Class<?> c = clazz;
+            while (c != Object.class && c != null) {
+                if (AnnotationDataStore.isClassDataRecorded(c)) {
+                    changed = true;
+                    break;
+                }
+                c = c.getSuperclass();
+            }
+            this.changed = changed;
+            if (!changed) {
+                declared = null;
+                annotations = null;
+                byType = null;
+                return;
+            }
+            declared = declaredAnnotations(clazz);
+            final List<Annotation> all = new ArrayList<>(Arrays.asList(declared));
+            final Map<Class<? extends Annotation>, Annotation> byType = new HashMap<>();
+            for (Annotation a : declared) {
+                byType.put(a.annotationType(), a);
+            }
+            c = clazz.getSuperclass();
+            while (c != Object.class && c != null) {
+                // can't just use getAnnotations, as an inherited annotation
+                // may have been removed from a parent class
+                for (Annotation a : declaredAnnotations(c)) {
+                    if (a.annotationType().isAnnotationPresent(Inherited.class)) {
+                        all.add(a);
+                        byType.putIfAbsent(a.annotationType(), a);
+                    }
+                }
+                c = c.getSuperclass();
+            }
+            this.annotations = all.toArray(new Annotation[all.size()]);
+            this.byType = byType;
+        }
+
+        private static Annotation[] declaredAnnotations(Class<?> c) {
+            if (AnnotationDataStore.isClassDataRecorded(c)) {
+                return AnnotationDataStore.getClassAnnotations(c);
+            }
+            return c.getDeclaredAnnotations();
+        }
+    }
 }
@@ -35,27 +35,19 @@ import javassist.bytecode.Descriptor;
 
 public class ConstructorReflection {
 
-    @SuppressWarnings("restriction")
     public static Object newInstance(Constructor<?> method, Object... args) throws IllegalArgumentException, IllegalAccessException, InvocationTargetException, InstantiationException {
-        final MethodData data = ClassDataStore.instance().getMethodInformation(method.getDeclaringClass().getName());
-        final Class<?> info = ClassDataStore.instance().getRealClassFromProxyName(method.getDeclaringClass().getName());
-        try {
-            final Constructor<?> invoke = info.getConstructor(int.class, Object[].class, ConstructorArgument.class);
-            Object ar = args;
-            if (ar == null) {
-                ar = new Object[0];
-            }
-            if (!Modifier.isPublic(method.getModifiers()) && !method.isAccessible()) {
-                Class<?> caller = AccessVerification.getCallerClass(2);
-                AccessVerification.ensureMemberAccess(caller, method.getDeclaringClass(), method.getModifiers());
-            }
-            return invoke.newInstance(data.getMethodNo(), ar, null);
-        } catch (NoSuchMethodException | SecurityException e) {
-            throw new RuntimeException(e);
+        final FakeMemberInvoker invoker = FakeMemberInvoker.get(method.getDeclaringClass());
+        if (!Modifier.isPublic(method.getModifiers()) && !method.isAccessible()) {
+            invoker.ensureAccess(AccessVerification.getCallerClass(2), method.getModifiers());
         }
+        return invoker.newInstance(args);
     }
 
     public static Constructor<?>[] getDeclaredConstructors(Class<?> clazz) {
+        return ReflectionCache.lookup(clazz, ReflectionCache.DECLARED_CONSTRUCTORS, Class::getDeclaredConstructors, ConstructorReflection::computeDeclaredConstructors, ReflectionCache::copyConstructor);
+    }
+
+    private static Constructor<?>[] computeDeclaredConstructors(Class<?> clazz) {
         try {
             ClassData cd = ClassDataStore.instance().getModifiedClassData(clazz.getClassLoader(), Descriptor.toJvmName(clazz.getName()));
 
@@ -65,7 +57,7 @@ public class ConstructorReflection {
             Constructor<?>[] meth = clazz.getDeclaredConstructors();
             List<Constructor<?>> visible = new ArrayList<>(meth.length);
             for (int i = 0; i < meth.length; ++i) {
-                if (meth[i].getParameterTypes().length != 3 || !meth[i].getParameterTypes()[2].equals(ConstructorArgument.class)) {
+                if (!isConstructorDelegator(meth[i])) {
                     visible.add(meth[i]);
                 }
             }
@@ -92,6 +84,10 @@ public class ConstructorReflection {
     }
 
     public static Constructor<?>[] getConstructors(Class<?> clazz) {
+        return ReflectionCache.lookup(clazz, ReflectionCache.CONSTRUCTORS, Class::getConstructors, ConstructorReflection::computeConstructors, ReflectionCache::copyConstructor);
+    }
+
+    private static Constructor<?>[] computeConstructors(Class<?> clazz) {
         try {
             ClassData cd = ClassDataStore.instance().getModifiedClassData(clazz.getClassLoader(), Descriptor.toJvmName(clazz.getName()));
 
@@ -102,7 +98,7 @@ public class ConstructorReflection {
             Constructor<?>[] meth = clazz.getConstructors();
             List<Constructor<?>> visible = new ArrayList<>(meth.length);
             for (int i = 0; i < meth.length; ++i) {
-                if (meth[i].getParameterTypes().length != 3 || !meth[i].getParameterTypes()[2].equals(ConstructorArgument.class)) {
+                if (!isConstructorDelegator(meth[i])) {
                     visible.add(meth[i]);
                 }
             }
@@ -202,4 +198,13 @@ public class ConstructorReflection {
     public static boolean fakeCallRequired(Constructor<?> method) {
         return method.getDeclaringClass().getName().startsWith(Constants.GENERATED_CLASS_PACKAGE);
     }
+
+    /**
+     * The constructors that added constructors are dispatched through take a {@link ConstructorArgument} as the last
+     * parameter
+     */
+    private static boolean isConstructorDelegator(Constructor<?> constructor) {
+        Class<?>[] params = constructor.getParameterTypes();
+        return params.length > 0 && params[params.length - 1].equals(ConstructorArgument.class);
+    }
 }
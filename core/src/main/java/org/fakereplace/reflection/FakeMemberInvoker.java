@@ -0,0 +1,125 @@
+/*
+ * Copyright 2016, Stuart Douglas, and individual contributors as indicated
+ * by the @authors tag.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.fakereplace.reflection;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+
+import org.fakereplace.core.ConstructorArgument;
+import org.fakereplace.data.ClassDataStore;
+import org.fakereplace.data.MemberType;
+import org.fakereplace.data.MethodData;
+import org.fakereplace.util.ConcurrentWeakIdentityHashMap;
+
+/**
+ * Invokes a fake method or constructor on behalf of {@link MethodReflection#invoke(Method, Object, Object[])} and
+ * {@link ConstructorReflection#newInstance(Constructor, Object...)}.
+ * <p>
+ * There is one invoker per proxy class, which holds an accessible reference to the method or constructor that
+ * actually runs the added code. Callers that pass the access check are remembered until classes are next redefined.
+ */
+final class FakeMemberInvoker {
+
+    private static final Object[] EMPTY_ARGS = new Object[0];
+
+    private static final ClassValue<FakeMemberInvoker> invokers = new ClassValue<FakeMemberInvoker>() {
+        @Override
+        protected FakeMemberInvoker computeValue(Class<?> proxy) {
+            //read the epoch first, if it changes while we are creating the invoker it will just be recreated next time
+            final int epoch = ReflectionCache.getEpoch();
+            final MethodData data = ClassDataStore.instance().getMethodInformation(proxy.getName());
+            final Class<?> declaringClass = ClassDataStore.instance().getRealClassFromProxyName(proxy.getName());
+            try {
+                if (data.getType() == MemberType.FAKE_CONSTRUCTOR) {
+                    Constructor<?> constructor = declaringClass.getDeclaredConstructor(int.class, Object[].class, ConstructorArgument.class);
+                    constructor.setAccessible(true);
+                    return new FakeMemberInvoker(epoch, declaringClass, null, constructor, data.getMethodNo(), false);
+                }
+                Method method = data.getMethodToInvoke(proxy);
+                method.setAccessible(true);
+                return new FakeMemberInvoker(epoch, declaringClass, method, null, 0, !data.isStatic());
+            } catch (NoSuchMethodException | ClassNotFoundException e) {
+                throw new RuntimeException(e);
+            }
+        }
+    };
+
+    /**
+     * the {@link ReflectionCache} epoch this invoker was created in, proxy classes are reused across redefinitions so
+     * an invoker from an earlier epoch may refer to a member that has since changed
+     */
+    private final int epoch;
+    /**
+     * the class the member was added to
+     */
+    private final Class<?> declaringClass;
+    private final Method method;
+    private final Constructor<?> constructor;
+    private final Integer methodNo;
+    /**
+     * if the instance is passed as the first parameter, which is how instance methods are implemented on the proxy
+     */
+    private final boolean prependInstance;
+    private final ConcurrentWeakIdentityHashMap<Class<?>, Boolean> allowedCallers = new ConcurrentWeakIdentityHashMap<>();
+
+    private FakeMemberInvoker(int epoch, Class<?> declaringClass, Method method, Constructor<?> constructor, int methodNo, boolean prependInstance) {
+        this.epoch = epoch;
+        this.declaringClass = declaringClass;
+        this.method = method;
+        this.constructor = constructor;
+        this.methodNo = methodNo;
+        this.prependInstance = prependInstance;
+    }
+
+    /**
+     * @param proxy the proxy class that declares the fake member
+     */
+    static FakeMemberInvoker get(Class<?> proxy) {
+        FakeMemberInvoker invoker = invokers.get(proxy);
+        if (invoker.epoch != ReflectionCache.getEpoch()) {
+            //classes have been redefined since the invoker was created, this also forgets the callers that were allowed
+            invokers.remove(proxy);
+            invoker = invokers.get(proxy);
+        }
+        return invoker;
+    }
+
+    /**
+     * Checks that the caller can access the member. Only successful checks are remembered, so a denied caller is
+     * checked again next time.
+     */
+    void ensureAccess(Class<?> caller, int modifiers) throws IllegalAccessException {
+        if (caller != null && allowedCallers.get(caller) != null) {
+            return;
+        }
+        AccessVerification.ensureMemberAccess(caller, declaringClass, modifiers);
+        allowedCallers.put(caller, Boolean.TRUE);
+    }
+
+    Object invoke(Object instance, Object[] args) throws IllegalAccessException, InvocationTargetException {
+        if (prependInstance) {
+            return method.invoke(null, MethodReflection.prependInstanceToParams(instance, args));
+        }
+        return method.invoke(null, args);
+    }
+
+    Object newInstance(Object[] args) throws IllegalAccessException, InvocationTargetException, InstantiationException {
+        return constructor.newInstance(methodNo, args == null ? EMPTY_ARGS : args, null);
+    }
+}
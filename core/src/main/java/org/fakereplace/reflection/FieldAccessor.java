@@ -17,43 +17,371 @@
 
 package org.fakereplace.reflection;
 
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+
+import org.fakereplace.core.StaticFieldHolderStore;
 import org.fakereplace.runtime.FieldDataStore;
+import org.fakereplace.util.ConcurrentWeakIdentityHashMap;
 
 /**
- * Class that knows how to set and get replaced fields. This is very inefficent,
- * and should be replaced with bytecode generation based reflection
+ * Class that knows how to set and get replaced fields.
+ * <p>
+ * There is one accessor per added field. The typed getters and setters read and write primitive fields in their
+ * long representation directly, applying the same widening conversions as {@link Field}. Conversions that
+ * {@link Field} does not allow fall back to the boxed path.
  *
  * @author stuart
  */
 public class FieldAccessor {
 
     private final Class<?> declaringClass;
-    private final Integer mapKey;
+    private final int mapKey;
+    private final String name;
+    private final String descriptor;
     private final boolean staticField;
+    private final boolean fieldSlots;
+    /**
+     * the descriptor of a primitive field, or 0 for reference fields
+     */
+    private final char primitiveType;
+    /**
+     * the accessors for the field on the generated holder class that stores an added static field
+     */
+    private volatile HolderHandles holderHandles;
+    /**
+     * callers that have already passed the access check for this field
+     */
+    private final ConcurrentWeakIdentityHashMap<Class<?>, Boolean> allowedCallers = new ConcurrentWeakIdentityHashMap<>();
 
-    public FieldAccessor(Class<?> declaringClass, int mapKey, boolean staticField) {
+    public FieldAccessor(Class<?> declaringClass, int mapKey, String name, String descriptor, boolean staticField, boolean fieldSlots) {
         this.declaringClass = declaringClass;
         this.mapKey = mapKey;
+        this.name = name;
+        this.descriptor = descriptor;
         this.staticField = staticField;
+        this.fieldSlots = fieldSlots;
+        this.primitiveType = descriptor.length() == 1 ? descriptor.charAt(0) : 0;
     }
 
     public void set(Object object, Object value) {
-        if(staticField) {
-            FieldDataStore.setValue(declaringClass, value, mapKey);
+        if (primitiveType != 0) {
+            setBits(object, toBits(value));
+        } else if (staticField) {
+            setStatic(value);
+        } else if (fieldSlots) {
+            FieldDataStore.setSlotValue(object, declaringClass, value, mapKey);
         } else {
             FieldDataStore.setValue(object, value, mapKey);
         }
     }
 
     public Object get(Object object) {
-        if(staticField) {
-            return FieldDataStore.getValue(declaringClass, mapKey);
+        if (primitiveType != 0) {
+            return fromBits(getBits(object));
+        } else if (staticField) {
+            return getStatic();
+        } else if (fieldSlots) {
+            return FieldDataStore.getSlotValue(object, declaringClass, mapKey);
         } else {
             return FieldDataStore.getValue(object, mapKey);
         }
     }
 
+    public boolean getBoolean(Object object) throws IllegalAccessException {
+        if (primitiveType == 'Z') {
+            return getBits(object) != 0;
+        }
+        return (Boolean) get(object);
+    }
+
+    public byte getByte(Object object) throws IllegalAccessException {
+        if (primitiveType == 'B') {
+            return (byte) getBits(object);
+        }
+        return (Byte) get(object);
+    }
+
+    public char getChar(Object object) throws IllegalAccessException {
+        if (primitiveType == 'C') {
+            return (char) getBits(object);
+        }
+        return (Character) get(object);
+    }
+
+    public short getShort(Object object) throws IllegalAccessException {
+        if (widens(primitiveType, 'S')) {
+            return (short) getBits(object);
+        }
+        return (Short) get(object);
+    }
+
+    public int getInt(Object object) throws IllegalAccessException {
+        if (widens(primitiveType, 'I')) {
+            return (int) getBits(object);
+        }
+        return (Integer) get(object);
+    }
+
+    public long getLong(Object object) throws IllegalAccessException {
+        if (widens(primitiveType, 'J')) {
+            return getBits(object);
+        }
+        return (Long) get(object);
+    }
+
+    public float getFloat(Object object) throws IllegalAccessException {
+        if (primitiveType == 'F') {
+            return Float.intBitsToFloat((int) getBits(object));
+        } else if (widens(primitiveType, 'F')) {
+            return (float) getBits(object);
+        }
+        return (Float) get(object);
+    }
+
+    public double getDouble(Object object) throws IllegalAccessException {
+        if (primitiveType == 'D') {
+            return Double.longBitsToDouble(getBits(object));
+        } else if (primitiveType == 'F') {
+            return Float.intBitsToFloat((int) getBits(object));
+        } else if (widens(primitiveType, 'D')) {
+            return (double) getBits(object);
+        }
+        return (Double) get(object);
+    }
+
+    public void setBoolean(Object object, boolean value) throws IllegalAccessException {
+        if (primitiveType == 'Z') {
+            setBits(object, value ? 1 : 0);
+        } else {
+            set(object, value);
+        }
+    }
+
+    public void setByte(Object object, byte value) throws IllegalAccessException {
+        if (!setIntegral(object, 'B', value)) {
+            set(object, value);
+        }
+    }
+
+    public void setChar(Object object, char value) throws IllegalAccessException {
+        if (!setIntegral(object, 'C', value)) {
+            set(object, value);
+        }
+    }
+
+    public void setShort(Object object, short value) throws IllegalAccessException {
+        if (!setIntegral(object, 'S', value)) {
+            set(object, value);
+        }
+    }
+
+    public void setInt(Object object, int value) throws IllegalAccessException {
+        if (!setIntegral(object, 'I', value)) {
+            set(object, value);
+        }
+    }
+
+    public void setLong(Object object, long value) throws IllegalAccessException {
+        if (!setIntegral(object, 'J', value)) {
+            set(object, value);
+        }
+    }
+
+    public void setFloat(Object object, float value) throws IllegalAccessException {
+        if (primitiveType == 'F') {
+            setBits(object, Float.floatToRawIntBits(value));
+        } else if (primitiveType == 'D') {
+            setBits(object, Double.doubleToRawLongBits(value));
+        } else {
+            set(object, value);
+        }
+    }
+
+    public void setDouble(Object object, double value) throws IllegalAccessException {
+        if (primitiveType == 'D') {
+            setBits(object, Double.doubleToRawLongBits(value));
+        } else {
+            set(object, value);
+        }
+    }
+
     public Class<?> getDeclaringClass() {
         return declaringClass;
     }
+
+    /**
+     * Checks that the caller can access this field. Only successful checks are remembered, so a denied caller is
+     * checked again next time.
+     */
+    void ensureAccess(Class<?> caller, int modifiers) throws IllegalAccessException {
+        if (caller != null && allowedCallers.get(caller) != null) {
+            return;
+        }
+        AccessVerification.ensureMemberAccess(caller, declaringClass, modifiers);
+        allowedCallers.put(caller, Boolean.TRUE);
+    }
+
+    private long getBits(Object object) {
+        if (staticField) {
+            return toBits(getStatic());
+        } else if (fieldSlots) {
+            return FieldDataStore.getPrimitiveSlotValue(object, declaringClass, mapKey);
+        } else {
+            return FieldDataStore.getPrimitiveValue(object, mapKey);
+        }
+    }
+
+    private void setBits(Object object, long bits) {
+        if (staticField) {
+            setStatic(fromBits(bits));
+        } else if (fieldSlots) {
+            FieldDataStore.setPrimitiveSlotValue(object, declaringClass, bits, mapKey);
+        } else {
+            FieldDataStore.setPrimitiveValue(object, bits, mapKey);
+        }
+    }
+
+    /**
+     * Stores an integral value, widening it to the type of the field.
+     *
+     * @return <code>false</code> if the value cannot be widened to the type of the field
+     */
+    private boolean setIntegral(Object object, char type, long value) {
+        if (!widens(type, primitiveType)) {
+            return false;
+        }
+        if (primitiveType == 'F') {
+            setBits(object, Float.floatToRawIntBits((float) value));
+        } else if (primitiveType == 'D') {
+            setBits(object, Double.doubleToRawLongBits((double) value));
+        } else {
+            setBits(object, value);
+        }
+        return true;
+    }
+
+    /**
+     * @return <code>true</code> if the primitive type <code>from</code> is the same as or can be widened to <code>to</code>
+     */
+    private static boolean widens(char from, char to) {
+        final String targets;
+        switch (from) {
+            case 'B':
+                targets = "BSIJFD";
+                break;
+            case 'C':
+                targets = "CIJFD";
+                break;
+            case 'S':
+                targets = "SIJFD";
+                break;
+            case 'I':
+                targets = "IJFD";
+                break;
+            case 'J':
+                targets = "JFD";
+                break;
+            default:
+                return from != 0 && from == to;
+        }
+        return targets.indexOf(to) >= 0;
+    }
+
+    private Object getStatic() {
+        try {
+            return getHolderHandles().getter.invoke();
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private void setStatic(Object value) {
+        try {
+            getHolderHandles().setter.invoke(value);
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * The holder field is accessed through method handles rather than {@link Field}, as the holder is a generated
+     * class and the instrumented reflection methods do not know about it.
+     */
+    private HolderHandles getHolderHandles() {
+        HolderHandles handles = holderHandles;
+        if (handles == null) {
+            final ClassLoader loader = declaringClass.getClassLoader();
+            final String holderName = StaticFieldHolderStore.getHolderName(loader, declaringClass.getName(), name, descriptor);
+            try {
+                final Class<?> holder = Class.forName(holderName, true, loader);
+                final Class<?> type = MethodType.fromMethodDescriptorString("()" + descriptor, loader).returnType();
+                final MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+                handles = new HolderHandles(
+                        lookup.findStaticGetter(holder, name, type).asType(MethodType.methodType(Object.class)),
+                        lookup.findStaticSetter(holder, name, type).asType(MethodType.methodType(void.class, Object.class)));
+            } catch (ClassNotFoundException | NoSuchFieldException | IllegalAccessException e) {
+                throw new RuntimeException(e);
+            }
+            holderHandles = handles;
+        }
+        return handles;
+    }
+
+    /**
+     * Converts a boxed primitive to the long representation used by the field store, this must match the conversions
+     * that are generated by the {@link org.fakereplace.manip.FieldManipulator}
+     */
+    private long toBits(Object value) {
+        if (primitiveType == 'Z') {
+            return (Boolean) value ? 1 : 0;
+        }
+        // the setters for narrower types pass their own box type, so we need to allow for widening
+        final Number number = value instanceof Character ? (int) (Character) value : (Number) value;
+        switch (primitiveType) {
+            case 'F':
+                return Float.floatToRawIntBits(number.floatValue());
+            case 'D':
+                return Double.doubleToRawLongBits(number.doubleValue());
+            default:
+                return number.longValue();
+        }
+    }
+
+    private Object fromBits(long bits) {
+        switch (primitiveType) {
+            case 'Z':
+                return (int) bits != 0;
+            case 'B':
+                return (byte) bits;
+            case 'C':
+                return (char) bits;
+            case 'S':
+                return (short) bits;
+            case 'I':
+                return (int) bits;
+            case 'F':
+                return Float.intBitsToFloat((int) bits);
+            case 'D':
+                return Double.longBitsToDouble(bits);
+            default:
+                return bits;
+        }
+    }
+
+    private static final class HolderHandles {
+        private final MethodHandle getter;
+        private final MethodHandle setter;
+
+        private HolderHandles(MethodHandle getter, MethodHandle setter) {
+            this.getter = getter;
+            this.setter = setter;
+        }
+    }
 }
@@ -38,6 +38,16 @@ import javassist.bytecode.Descriptor;
  */
 public class FieldReflection {
 
+    /**
+     * The accessors for fake fields, keyed by the proxy class that declares the field
+     */
+    private static final ClassValue<FieldAccessor> accessors = new ClassValue<FieldAccessor>() {
+        @Override
+        protected FieldAccessor computeValue(Class<?> type) {
+            return ClassDataStore.instance().getFieldAccessor(type.getName());
+        }
+    };
+
     public static Class<?> getDeclaringClass(Field f) {
         Class<?> c = f.getDeclaringClass();
         if (c.getName().startsWith(Constants.GENERATED_CLASS_PACKAGE)) {
@@ -47,8 +57,12 @@ public class FieldReflection {
     }
 
     public static Field[] getDeclaredFields(Class<?> clazz) {
+        return ReflectionCache.lookup(clazz, ReflectionCache.DECLARED_FIELDS, Class::getDeclaredFields, FieldReflection::computeDeclaredFields, ReflectionCache::copyField);
+    }
+
+    private static Field[] computeDeclaredFields(Class<?> clazz) {
         if (!ClassDataStore.instance().isClassReplaced(clazz)) {
-            return clazz.getDeclaredFields();
+            return hideFieldSlots(clazz.getDeclaredFields());
         }
         try {
             ClassData cd = ClassDataStore.instance().getModifiedClassData(clazz.getClassLoader(), Descriptor.toJvmName(clazz.getName()));
@@ -86,6 +100,10 @@ public class FieldReflection {
     }
 
     public static Field[] getFields(Class<?> clazz) {
+        return ReflectionCache.lookup(clazz, ReflectionCache.FIELDS, Class::getFields, FieldReflection::computeFields, ReflectionCache::copyField);
+    }
+
+    private static Field[] computeFields(Class<?> clazz) {
         if (!ClassDataStore.instance().isClassReplaced(clazz)) {
             return clazz.getFields();
         }
@@ -166,6 +184,9 @@ public class FieldReflection {
     }
 
     public static Field getDeclaredField(Class<?> clazz, String name) throws NoSuchFieldException {
+        if (name.equals(Constants.ADDED_FIELD_SLOTS_NAME) || name.equals(Constants.ADDED_PRIMITIVE_FIELD_SLOTS_NAME)) {
+            throw new NoSuchFieldException(name);
+        }
         if (!ClassDataStore.instance().isClassReplaced(clazz)) {
             return clazz.getDeclaredField(name);
         }
@@ -197,176 +218,114 @@ public class FieldReflection {
     }
 
     public static void set(Field f, Object object, Object val) throws IllegalAccessException {
-        FieldAccessor accessor = ClassDataStore.instance().getFieldAccessor(f.getDeclaringClass().getName());
-        if (!Modifier.isPublic(f.getModifiers()) && !f.isAccessible()) {
-            Class<?> caller = findCallerClass();
-            AccessVerification.ensureMemberAccess(caller, accessor.getDeclaringClass(), f.getModifiers());
-        }
-        accessor.set(object, val);
+        getAccessor(f).set(object, val);
     }
 
     public static void setBoolean(Field f, Object object, boolean val) throws IllegalAccessException {
-        FieldAccessor accessor = ClassDataStore.instance().getFieldAccessor(f.getDeclaringClass().getName());
-        if (!Modifier.isPublic(f.getModifiers()) && !f.isAccessible()) {
-            Class<?> caller = findCallerClass();
-            AccessVerification.ensureMemberAccess(caller, accessor.getDeclaringClass(), f.getModifiers());
-        }
-        accessor.set(object, val);
+        getAccessor(f).setBoolean(object, val);
     }
 
     public static void setByte(Field f, Object object, byte val) throws IllegalAccessException {
-        FieldAccessor accessor = ClassDataStore.instance().getFieldAccessor(f.getDeclaringClass().getName());
-        if (!Modifier.isPublic(f.getModifiers()) && !f.isAccessible()) {
-            Class<?> caller = findCallerClass();
-            AccessVerification.ensureMemberAccess(caller, accessor.getDeclaringClass(), f.getModifiers());
-        }
-        accessor.set(object, val);
+        getAccessor(f).setByte(object, val);
     }
 
     public static void setChar(Field f, Object object, char val) throws IllegalAccessException {
-        FieldAccessor accessor = ClassDataStore.instance().getFieldAccessor(f.getDeclaringClass().getName());
-        if (!Modifier.isPublic(f.getModifiers()) && !f.isAccessible()) {
-            Class<?> caller = findCallerClass();
-            AccessVerification.ensureMemberAccess(caller, accessor.getDeclaringClass(), f.getModifiers());
-        }
-        accessor.set(object, val);
+        getAccessor(f).setChar(object, val);
     }
 
     public static void setDouble(Field f, Object object, double val) throws IllegalAccessException {
-        FieldAccessor accessor = ClassDataStore.instance().getFieldAccessor(f.getDeclaringClass().getName());
-        if (!Modifier.isPublic(f.getModifiers()) && !f.isAccessible()) {
-            Class<?> caller = findCallerClass();
-            AccessVerification.ensureMemberAccess(caller, accessor.getDeclaringClass(), f.getModifiers());
-        }
-        accessor.set(object, val);
+        getAccessor(f).setDouble(object, val);
     }
 
     public static void setFloat(Field f, Object object, float val) throws IllegalAccessException {
-        FieldAccessor accessor = ClassDataStore.instance().getFieldAccessor(f.getDeclaringClass().getName());
-        if (!Modifier.isPublic(f.getModifiers()) && !f.isAccessible()) {
-            Class<?> caller = findCallerClass();
-            AccessVerification.ensureMemberAccess(caller, accessor.getDeclaringClass(), f.getModifiers());
-        }
-        accessor.set(object, val);
+        getAccessor(f).setFloat(object, val);
     }
 
     public static void setInt(Field f, Object object, int val) throws IllegalAccessException {
-        FieldAccessor accessor = ClassDataStore.instance().getFieldAccessor(f.getDeclaringClass().getName());
-        if (!Modifier.isPublic(f.getModifiers()) && !f.isAccessible()) {
-            Class<?> caller = findCallerClass();
-            AccessVerification.ensureMemberAccess(caller, accessor.getDeclaringClass(), f.getModifiers());
-        }
-        accessor.set(object, val);
+        getAccessor(f).setInt(object, val);
     }
 
     public static void setLong(Field f, Object object, long val) throws IllegalAccessException {
-        FieldAccessor accessor = ClassDataStore.instance().getFieldAccessor(f.getDeclaringClass().getName());
-        if (!Modifier.isPublic(f.getModifiers()) && !f.isAccessible()) {
-            Class<?> caller = findCallerClass();
-            AccessVerification.ensureMemberAccess(caller, accessor.getDeclaringClass(), f.getModifiers());
-        }
-        accessor.set(object, val);
+        getAccessor(f).setLong(object, val);
     }
 
     public static void setShort(Field f, Object object, short val) throws IllegalAccessException {
-        FieldAccessor accessor = ClassDataStore.instance().getFieldAccessor(f.getDeclaringClass().getName());
-        if (!Modifier.isPublic(f.getModifiers()) && !f.isAccessible()) {
-            Class<?> caller = findCallerClass();
-            AccessVerification.ensureMemberAccess(caller, accessor.getDeclaringClass(), f.getModifiers());
-        }
-        accessor.set(object, val);
+        getAccessor(f).setShort(object, val);
     }
 
     public static Object get(Field f, Object object) throws IllegalAccessException {
-        FieldAccessor accessor = ClassDataStore.instance().getFieldAccessor(f.getDeclaringClass().getName());
-        if (!Modifier.isPublic(f.getModifiers()) && !f.isAccessible()) {
-            Class<?> caller = findCallerClass();
-            AccessVerification.ensureMemberAccess(caller, accessor.getDeclaringClass(), f.getModifiers());
-        }
-        return accessor.get(object);
+        return getAccessor(f).get(object);
     }
 
     public static boolean getBoolean(Field f, Object object) throws IllegalAccessException {
-        FieldAccessor accessor = ClassDataStore.instance().getFieldAccessor(f.getDeclaringClass().getName());
-        if (!Modifier.isPublic(f.getModifiers()) && !f.isAccessible()) {
-            Class<?> caller = findCallerClass();
-            AccessVerification.ensureMemberAccess(caller, accessor.getDeclaringClass(), f.getModifiers());
-        }
-        return (Boolean) accessor.get(object);
+        return getAccessor(f).getBoolean(object);
     }
 
     public static byte getByte(Field f, Object object) throws IllegalAccessException {
-        FieldAccessor accessor = ClassDataStore.instance().getFieldAccessor(f.getDeclaringClass().getName());
-        if (!Modifier.isPublic(f.getModifiers()) && !f.isAccessible()) {
-            Class<?> caller = findCallerClass();
-            AccessVerification.ensureMemberAccess(caller, accessor.getDeclaringClass(), f.getModifiers());
-        }
-        return (Byte) accessor.get(object);
-
+        return getAccessor(f).getByte(object);
     }
 
     public static char getChar(Field f, Object object) throws IllegalAccessException {
-        FieldAccessor accessor = ClassDataStore.instance().getFieldAccessor(f.getDeclaringClass().getName());
-        if (!Modifier.isPublic(f.getModifiers()) && !f.isAccessible()) {
-            Class<?> caller = findCallerClass();
-            AccessVerification.ensureMemberAccess(caller, accessor.getDeclaringClass(), f.getModifiers());
-        }
-        return (Character) accessor.get(object);
-
+        return getAccessor(f).getChar(object);
     }
 
-    public static Double getDouble(Field f, Object object) throws IllegalAccessException {
-        FieldAccessor accessor = ClassDataStore.instance().getFieldAccessor(f.getDeclaringClass().getName());
-        if (!Modifier.isPublic(f.getModifiers()) && !f.isAccessible()) {
-            Class<?> caller = findCallerClass();
-            AccessVerification.ensureMemberAccess(caller, accessor.getDeclaringClass(), f.getModifiers());
-        }
-        return (Double) accessor.get(object);
+    public static double getDouble(Field f, Object object) throws IllegalAccessException {
+        return getAccessor(f).getDouble(object);
     }
 
     public static float getFloat(Field f, Object object) throws IllegalAccessException {
-        FieldAccessor accessor = ClassDataStore.instance().getFieldAccessor(f.getDeclaringClass().getName());
-        if (!Modifier.isPublic(f.getModifiers()) && !f.isAccessible()) {
-            Class<?> caller = findCallerClass();
-            AccessVerification.ensureMemberAccess(caller, accessor.getDeclaringClass(), f.getModifiers());
-        }
-        return (Float) accessor.get(object);
+        return getAccessor(f).getFloat(object);
     }
 
     public static int getInt(Field f, Object object) throws IllegalAccessException {
-        FieldAccessor accessor = ClassDataStore.instance().getFieldAccessor(f.getDeclaringClass().getName());
-        if (!Modifier.isPublic(f.getModifiers()) && !f.isAccessible()) {
-            Class<?> caller = findCallerClass();
-            AccessVerification.ensureMemberAccess(caller, accessor.getDeclaringClass(), f.getModifiers());
-        }
-        return (Integer) accessor.get(object);
+        return getAccessor(f).getInt(object);
     }
 
     public static long getLong(Field f, Object object) throws IllegalAccessException {
-        FieldAccessor accessor = ClassDataStore.instance().getFieldAccessor(f.getDeclaringClass().getName());
-        if (!Modifier.isPublic(f.getModifiers()) && !f.isAccessible()) {
-            Class<?> caller = findCallerClass();
-            AccessVerification.ensureMemberAccess(caller, accessor.getDeclaringClass(), f.getModifiers());
-        }
-        return (Long) accessor.get(object);
+        return getAccessor(f).getLong(object);
     }
 
-    public static Object getShort(Field f, Object object) throws IllegalAccessException {
-        FieldAccessor accessor = ClassDataStore.instance().getFieldAccessor(f.getDeclaringClass().getName());
+    public static short getShort(Field f, Object object) throws IllegalAccessException {
+        return getAccessor(f).getShort(object);
+    }
+
+    /**
+     * Returns the accessor for a fake field, checking that the caller can access it. This relies on the stack depth
+     * to find the caller, so it must be called directly from the public entry points.
+     */
+    private static FieldAccessor getAccessor(Field f) throws IllegalAccessException {
+        FieldAccessor accessor = accessors.get(f.getDeclaringClass());
         if (!Modifier.isPublic(f.getModifiers()) && !f.isAccessible()) {
-            Class<?> caller = findCallerClass();
-            AccessVerification.ensureMemberAccess(caller, accessor.getDeclaringClass(), f.getModifiers());
+            accessor.ensureAccess(AccessVerification.getCallerClass(3), f.getModifiers());
         }
-        return (Short) accessor.get(object);
+        return accessor;
     }
 
-
-    private static Class findCallerClass() {
-        Class<?> c =  AccessVerification.getCallerClass(3);
-        if(c == FieldReflection.class) {
-            return AccessVerification.getCallerClass(4);
+    /**
+     * Removes the hidden fields that hold added instance field values
+     */
+    private static Field[] hideFieldSlots(Field[] fields) {
+        int hidden = 0;
+        for (Field field : fields) {
+            if (isFieldSlots(field)) {
+                ++hidden;
+            }
         }
-        return c;
+        if (hidden == 0) {
+            return fields;
+        }
+        Field[] ret = new Field[fields.length - hidden];
+        int j = 0;
+        for (Field field : fields) {
+            if (!isFieldSlots(field)) {
+                ret[j++] = field;
+            }
+        }
+        return ret;
+    }
+
+    private static boolean isFieldSlots(Field field) {
+        return field.getName().equals(Constants.ADDED_FIELD_SLOTS_NAME) || field.getName().equals(Constants.ADDED_PRIMITIVE_FIELD_SLOTS_NAME);
     }
 
     public static boolean isFakeField(Field f) {
@@ -41,46 +41,35 @@ import javassist.bytecode.Descriptor;
  */
 public class MethodReflection {
     public static int getModifiers(Method method) {
-        if (method.isAnnotationPresent(ModifiedMethod.class)) {
+        if (ReflectionCache.contains(method, ReflectionCache.MODIFIED_METHODS, MethodReflection::computeModifiedMethods)) {
             return method.getModifiers() | Modifier.FINAL;
         }
         return method.getModifiers();
     }
 
-    public static Object invoke(Method method, Object instance, Object[] args) throws IllegalArgumentException, IllegalAccessException, InvocationTargetException {
-        if (!Modifier.isStatic(method.getModifiers())) {
-            MethodData info = ClassDataStore.instance().getMethodInformation(method.getDeclaringClass().getName());
-            try {
-                Method invoke = info.getMethodToInvoke(method.getDeclaringClass());
-                Object[] newAgrs = prependInstanceToParams(instance, args);
-                return invokeWithPermissionCheck(method, invoke, null, newAgrs);
-            } catch (NoSuchMethodException | ClassNotFoundException | SecurityException e) {
-                throw new RuntimeException(e);
+    private static ReflectionCache.MemberSet<Method> computeModifiedMethods(Class<?> clazz) {
+        ReflectionCache.MemberSet<Method> modified = new ReflectionCache.MemberSet<>();
+        for (Method method : clazz.getDeclaredMethods()) {
+            if (method.isAnnotationPresent(ModifiedMethod.class)) {
+                modified.add(method);
             }
         }
-
-        return invokeWithPermissionCheck(method, method, instance, args);
+        return modified;
     }
 
-    private static Object invokeWithPermissionCheck(final Method permissionCheckMethod, final Method method, final Object instance, final Object[] params) throws IllegalAccessException, InvocationTargetException {
-        if (!Modifier.isPublic(permissionCheckMethod.getModifiers()) && !permissionCheckMethod.isAccessible()) {
-            Class<?> caller = AccessVerification.getCallerClass(2);
-            AccessVerification.ensureMemberAccess(caller, permissionCheckMethod.getDeclaringClass(), permissionCheckMethod.getModifiers());
-            try {
-                //we need to lookup a new method
-                //which is very yuck
-                final Method lookedUpMethod = method.getDeclaringClass().getDeclaredMethod(method.getName(), method.getParameterTypes());
-                lookedUpMethod.setAccessible(true);
-                return lookedUpMethod.invoke(instance, params);
-            } catch (NoSuchMethodException e) {
-                throw new RuntimeException(e);
-            }
-        } else {
-            return method.invoke(instance, params);
+    public static Object invoke(Method method, Object instance, Object[] args) throws IllegalArgumentException, IllegalAccessException, InvocationTargetException {
+        final FakeMemberInvoker invoker = FakeMemberInvoker.get(method.getDeclaringClass());
+        if (!Modifier.isPublic(method.getModifiers()) && !method.isAccessible()) {
+            invoker.ensureAccess(AccessVerification.getCallerClass(2), method.getModifiers());
         }
+        return invoker.invoke(instance, args);
     }
 
     public static Method[] getDeclaredMethods(Class<?> clazz) {
+        return ReflectionCache.lookup(clazz, ReflectionCache.DECLARED_METHODS, Class::getDeclaredMethods, MethodReflection::computeDeclaredMethods, ReflectionCache::copyMethod);
+    }
+
+    private static Method[] computeDeclaredMethods(Class<?> clazz) {
         try {
             ClassData cd = ClassDataStore.instance().getModifiedClassData(clazz.getClassLoader(), Descriptor.toJvmName(clazz.getName()));
 
@@ -115,6 +104,10 @@ public class MethodReflection {
     }
 
     public static Method[] getMethods(Class<?> clazz) {
+        return ReflectionCache.lookup(clazz, ReflectionCache.METHODS, Class::getMethods, MethodReflection::computeMethods, ReflectionCache::copyMethod);
+    }
+
+    private static Method[] computeMethods(Class<?> clazz) {
         try {
             ClassData cd = ClassDataStore.instance().getModifiedClassData(clazz.getClassLoader(), Descriptor.toJvmName(clazz.getName()));
 
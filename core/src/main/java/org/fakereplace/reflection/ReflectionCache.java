@@ -0,0 +1,233 @@
+/*
+ * Copyright 2016, Stuart Douglas, and individual contributors as indicated
+ * by the @authors tag.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.fakereplace.reflection;
+
+import java.lang.reflect.Array;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Member;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Function;
+
+/**
+ * Caches the results of the reflection calls that have to reconcile the JDK's view of a class with its
+ * {@link org.fakereplace.data.ClassData}.
+ * <p>
+ * The JDK hands out fresh copies of members on every call, as the accessible flag lives on the member. Sharing
+ * cached members would leak that flag between callers, so what is cached is the outcome of the reconciliation:
+ * which of the JDK's members are hidden, and which added members have to be appended. A lookup then filters the
+ * JDK's own copies, and only re-fetches the (rare) added members.
+ * <p>
+ * Everything is cached per class and is thrown away by {@link #invalidate()}, which is called whenever classes
+ * are redefined.
+ */
+public final class ReflectionCache {
+
+    static final int DECLARED_METHODS = 0;
+    static final int METHODS = 1;
+    static final int DECLARED_FIELDS = 2;
+    static final int FIELDS = 3;
+    static final int DECLARED_CONSTRUCTORS = 4;
+    static final int CONSTRUCTORS = 5;
+    static final int MODIFIED_METHODS = 6;
+    private static final int VIEW_COUNT = 7;
+
+    /**
+     * incremented every time classes are redefined, which invalidates all cached views
+     */
+    private static volatile int epoch;
+
+    private static final ClassValue<Holder> holders = new ClassValue<Holder>() {
+        @Override
+        protected Holder computeValue(Class<?> type) {
+            return new Holder();
+        }
+    };
+
+    private ReflectionCache() {
+
+    }
+
+    public static synchronized void invalidate() {
+        epoch++;
+    }
+
+    /**
+     * @return the current epoch, other caches that depend on the class data can compare this to decide if they are stale
+     */
+    static int getEpoch() {
+        return epoch;
+    }
+
+    /**
+     * Returns the members of the given kind, reconciled with the class data.
+     *
+     * @param jdk      fetches the members from the JDK
+     * @param computer works out the visible members, this is only called when there is no valid cached view
+     * @param copier   fetches a fresh copy of an added member
+     */
+    static <T extends Member> T[] lookup(Class<?> clazz, int kind, Function<Class<?>, T[]> jdk, Function<Class<?>, T[]> computer, Function<T, T> copier) {
+        final T[] members = jdk.apply(clazz);
+        MemberView<T> view = get(clazz, kind, (c) -> new MemberView<>(members, computer.apply(c)));
+        if (view.isEmpty()) {
+            return members;
+        }
+        List<T> visible = new ArrayList<>(members.length + view.added.size());
+        for (T member : members) {
+            if (!view.hidden.contains(member)) {
+                visible.add(member);
+            }
+        }
+        for (T added : view.added) {
+            visible.add(copier.apply(added));
+        }
+        @SuppressWarnings("unchecked")
+        T[] ret = (T[]) Array.newInstance(members.getClass().getComponentType(), visible.size());
+        return visible.toArray(ret);
+    }
+
+    /**
+     * @return <code>true</code> if the member is in the set of members of the given kind of its declaring class
+     */
+    static <T extends Member> boolean contains(T member, int kind, Function<Class<?>, MemberSet<T>> computer) {
+        return get(member.getDeclaringClass(), kind, computer).contains(member);
+    }
+
+    static Method copyMethod(Method method) {
+        try {
+            return method.getDeclaringClass().getDeclaredMethod(method.getName(), method.getParameterTypes());
+        } catch (NoSuchMethodException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    static Field copyField(Field field) {
+        try {
+            return field.getDeclaringClass().getDeclaredField(field.getName());
+        } catch (NoSuchFieldException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    static Constructor<?> copyConstructor(Constructor<?> constructor) {
+        try {
+            return constructor.getDeclaringClass().getDeclaredConstructor(constructor.getParameterTypes());
+        } catch (NoSuchMethodException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <V> V get(Class<?> clazz, int kind, Function<Class<?>, V> computer) {
+        final Holder holder = holders.get(clazz);
+        //read the epoch first, if it changes while we are computing the view it will just be recomputed next time
+        final int currentEpoch = epoch;
+        Views views = holder.views;
+        if (views.epoch != currentEpoch) {
+            views = new Views(currentEpoch);
+            holder.views = views;
+        }
+        Object view = views.values.get(kind);
+        if (view == null) {
+            view = computer.apply(clazz);
+            views.values.set(kind, view);
+        }
+        return (V) view;
+    }
+
+    /**
+     * A set of members that is looked up by name first, so checking a member that is not in the set does not
+     * need to compare parameter types.
+     */
+    static final class MemberSet<T extends Member> {
+        private final Map<String, List<T>> members = new HashMap<>();
+
+        void add(T member) {
+            members.computeIfAbsent(member.getName(), (k) -> new ArrayList<>(1)).add(member);
+        }
+
+        boolean contains(T member) {
+            List<T> candidates = members.get(member.getName());
+            if (candidates == null) {
+                return false;
+            }
+            for (T candidate : candidates) {
+                if (candidate.equals(member)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        boolean isEmpty() {
+            return members.isEmpty();
+        }
+    }
+
+    /**
+     * The difference between what the JDK reports and what should be visible
+     */
+    private static final class MemberView<T extends Member> {
+        private final MemberSet<T> hidden = new MemberSet<>();
+        private final List<T> added;
+
+        MemberView(T[] members, T[] visible) {
+            MemberSet<T> visibleSet = new MemberSet<>();
+            for (T member : visible) {
+                visibleSet.add(member);
+            }
+            MemberSet<T> jdkSet = new MemberSet<>();
+            for (T member : members) {
+                jdkSet.add(member);
+                if (!visibleSet.contains(member)) {
+                    hidden.add(member);
+                }
+            }
+            List<T> added = new ArrayList<>();
+            for (T member : visible) {
+                if (!jdkSet.contains(member)) {
+                    added.add(member);
+                }
+            }
+            this.added = added.isEmpty() ? Collections.emptyList() : added;
+        }
+
+        boolean isEmpty() {
+            return hidden.isEmpty() && added.isEmpty();
+        }
+    }
+
+    private static final class Holder {
+        private volatile Views views = new Views(-1);
+    }
+
+    private static final class Views {
+        private final int epoch;
+        private final AtomicReferenceArray<Object> values = new AtomicReferenceArray<>(VIEW_COUNT);
+
+        private Views(int epoch) {
+            this.epoch = epoch;
+        }
+    }
+}
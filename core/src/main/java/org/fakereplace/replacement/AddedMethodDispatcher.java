@@ -0,0 +1,162 @@
+/*
+ * Copyright 2016, Stuart Douglas, and individual contributors as indicated
+ * by the @authors tag.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.fakereplace.replacement;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+import javassist.bytecode.BadBytecode;
+import javassist.bytecode.Bytecode;
+import javassist.bytecode.CodeAttribute;
+import javassist.bytecode.ExceptionTable;
+import javassist.bytecode.MethodInfo;
+import javassist.bytecode.Opcode;
+
+/**
+ * Builds the code of the method that added methods or constructors are dispatched through.
+ * <p>
+ * The bodies of all added methods are laid out one after another behind a single tableswitch or lookupswitch on the
+ * method number, so finding the body does not depend on how many methods have been added. If the method number does
+ * not belong to this class the original code of the method runs, which delegates to the superclass or throws a
+ * NoSuchMethodError.
+ * <p>
+ * Every body starts on a four byte boundary, so any switch instructions inside the bodies keep their padding. The
+ * switch jumps to the nop instructions in front of each body rather than to the body itself, so no unreachable code
+ * is generated.
+ */
+class AddedMethodDispatcher {
+
+    private final MethodInfo method;
+    private final int methodNumberLocal;
+    private final List<Body> bodies = new ArrayList<>();
+    private int maxLocals;
+
+    /**
+     * @param method            the method to build
+     * @param methodNumberLocal the local variable that holds the method number
+     */
+    AddedMethodDispatcher(MethodInfo method, int methodNumberLocal) {
+        this.method = method;
+        this.methodNumberLocal = methodNumberLocal;
+        this.maxLocals = method.getCodeAttribute().getMaxLocals();
+    }
+
+    /**
+     * Adds the body of an added method. The body is run when the method number matches, and must not fall off the end
+     * of its code.
+     */
+    void addBody(int methodNumber, CodeAttribute body, int bodyMaxLocals) {
+        bodies.add(new Body(methodNumber, body));
+        if (bodyMaxLocals > maxLocals) {
+            maxLocals = bodyMaxLocals;
+        }
+    }
+
+    /**
+     * Replaces the code of the method with the switch and all the added bodies. This must be called once all the bodies
+     * have been added.
+     */
+    void build() throws BadBytecode {
+        CodeAttribute fallback = method.getCodeAttribute();
+        if (bodies.isEmpty()) {
+            fallback.computeMaxStack();
+            return;
+        }
+        bodies.sort(Comparator.comparingInt(b -> b.methodNumber));
+        int low = bodies.get(0).methodNumber;
+        int high = bodies.get(bodies.size() - 1).methodNumber;
+        int count = bodies.size();
+        // the same heuristic javac uses to choose between the two switch instructions
+        long tableCost = 4 + ((long) high - low + 1) + 3 * 3;
+        long lookupCost = 3 + 2L * count + 3L * count;
+        boolean table = tableCost <= lookupCost;
+
+        Bytecode code = new Bytecode(method.getConstPool());
+        code.addIload(methodNumberLocal);
+        int switchPos = code.currentPc();
+        code.addOpcode(table ? Opcode.TABLESWITCH : Opcode.LOOKUPSWITCH);
+        while (code.currentPc() % 4 != 0) {
+            code.add(0);
+        }
+        int pos = code.currentPc() + (table ? 12 + 4 * (high - low + 1) : 8 + 8 * count);
+        int[] entries = new int[count];
+        for (int i = 0; i < count; ++i) {
+            entries[i] = pos;
+            pos = align(pos) + bodies.get(i).code.getCodeLength();
+        }
+        int defaultPos = pos;
+
+        code.add32bit(defaultPos - switchPos);
+        if (table) {
+            code.add32bit(low);
+            code.add32bit(high);
+            int next = 0;
+            for (int value = low; value <= high; ++value) {
+                if (bodies.get(next).methodNumber == value) {
+                    code.add32bit(entries[next++] - switchPos);
+                } else {
+                    code.add32bit(defaultPos - switchPos);
+                }
+            }
+        } else {
+            code.add32bit(count);
+            for (int i = 0; i < count; ++i) {
+                code.add32bit(bodies.get(i).methodNumber);
+                code.add32bit(entries[i] - switchPos);
+            }
+        }
+        for (Body body : bodies) {
+            append(code, body.code);
+        }
+        append(code, fallback);
+
+        code.setMaxLocals(maxLocals);
+        CodeAttribute result = code.toCodeAttribute();
+        method.setCodeAttribute(result);
+        result.computeMaxStack();
+    }
+
+    private static void append(Bytecode code, CodeAttribute attribute) {
+        while (code.currentPc() % 4 != 0) {
+            code.addOpcode(Opcode.NOP);
+        }
+        int start = code.currentPc();
+        for (byte b : attribute.getCode()) {
+            code.add(b & 0xFF);
+        }
+        ExceptionTable table = attribute.getExceptionTable();
+        for (int i = 0; i < table.size(); ++i) {
+            code.addExceptionHandler(table.startPc(i) + start, table.endPc(i) + start, table.handlerPc(i) + start, table.catchType(i));
+        }
+    }
+
+    private static int align(int pos) {
+        return (pos + 3) & ~3;
+    }
+
+    private static final class Body {
+        final int methodNumber;
+        final CodeAttribute code;
+
+        private Body(int methodNumber, CodeAttribute code) {
+            this.methodNumber = methodNumber;
+            this.code = code;
+        }
+    }
+}
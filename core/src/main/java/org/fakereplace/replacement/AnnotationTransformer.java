@@ -39,7 +39,10 @@ public class AnnotationTransformer implements FakereplaceTransformer {
     public boolean transform(ClassLoader loader, String className, Class<?> classBeingRedefined, ProtectionDomain protectionDomain, ClassFile file, Set<Class<?>> classesToRetransform, ChangedClassImpl changedClass, Set<MethodInfo> modifiedMethods, boolean replaceable) throws IllegalClassFormatException, BadBytecode, DuplicateMemberException {
         if(classBeingRedefined != null) {
             AnnotationsAttribute newAns = (AnnotationsAttribute) file.getAttribute(AnnotationsAttribute.visibleTag);
-            AnnotationDataStore.recordClassAnnotations(classBeingRedefined, newAns, changedClass);
+            //the annotations are already recorded if they are the same as the last version
+            if (!changedClass.getChangeKind().isStructureUnchanged()) {
+                AnnotationDataStore.recordClassAnnotations(classBeingRedefined, newAns, changedClass);
+            }
             file.addAttribute(AnnotationReplacer.duplicateAnnotationsAttribute(file.getConstPool(), classBeingRedefined));
         }
         return false;
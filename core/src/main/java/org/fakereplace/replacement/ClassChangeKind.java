@@ -0,0 +1,51 @@
+/*
+ * Copyright 2016, Stuart Douglas, and individual contributors as indicated
+ * by the @authors tag.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.fakereplace.replacement;
+
+/**
+ * How a new version of a class differs from the version that was last applied.
+ */
+public enum ClassChangeKind {
+
+    /**
+     * The bytes are the same, there is nothing to redefine
+     */
+    IDENTICAL,
+
+    /**
+     * Only debugging information such as line numbers has changed
+     */
+    DEBUG_ONLY,
+
+    /**
+     * Only method bodies have changed, the members and annotations are the same
+     */
+    BODY_ONLY,
+
+    /**
+     * Members or annotations have changed, or there is no previous version to compare against
+     */
+    STRUCTURAL;
+
+    /**
+     * @return <code>true</code> if the members and annotations of the class are the same as the last version
+     */
+    public boolean isStructureUnchanged() {
+        return this != STRUCTURAL;
+    }
+}
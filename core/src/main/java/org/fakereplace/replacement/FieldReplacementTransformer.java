@@ -23,13 +23,16 @@ import java.io.IOException;
 import java.lang.instrument.IllegalClassFormatException;
 import java.lang.reflect.Field;
 import java.security.ProtectionDomain;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.ListIterator;
 import java.util.Set;
 
-import org.fakereplace.core.ProxyDefinitionStore;
+import org.fakereplace.core.MemberProxies;
+import org.fakereplace.core.StaticFieldHolderStore;
 import org.fakereplace.core.Transformer;
 import org.fakereplace.data.AnnotationDataStore;
 import org.fakereplace.data.BaseClassData;
@@ -61,13 +64,25 @@ public class FieldReplacementTransformer implements FakereplaceTransformer {
      * store
      *
      */
-    private static int addField(ClassLoader loader, FieldInfo m, Set<FieldProxyInfo> builder, Class<?> oldClass) {
-        int fieldNo = FieldReferenceDataStore.instance().getFieldNo(m.getName(), m.getDescriptor());
-        String proxyName = ProxyDefinitionStore.getProxyName();
-        ClassFile proxy = new ClassFile(false, proxyName, "java.lang.Object");
+    private static int addField(ClassLoader loader, FieldInfo m, Set<FieldProxyInfo> builder, Class<?> oldClass, BaseClassData data, MemberProxies proxies) {
+        BaseClassData owner = data.getFieldSlotsOwner();
+        int fieldNo = FieldReferenceDataStore.instance().getFieldNo(owner.getLoader(), owner.getClassName(), data.getClassName(), m.getName(), m.getDescriptor());
+        final boolean staticField = (m.getAccessFlags() & AccessFlag.STATIC) != 0;
+        final boolean fieldSlot = !staticField && data.hasFieldSlots();
+        // the proxy only holds the field declaration, so it can be reused as long as that has not changed
+        final SignatureAttribute signature = (SignatureAttribute) m.getAttribute(SignatureAttribute.tag);
+        final String memberKey = m.getName() + ' ' + m.getDescriptor() + ' ' + m.getAccessFlags() + ' ' + fieldNo + ' ' + fieldSlot
+                + ' ' + m.getAttribute(AnnotationsAttribute.visibleTag) + ' ' + (signature == null ? "" : signature.getSignature());
+        String proxyName = proxies.getProxy(memberKey, (name) -> createFieldProxy(name, m));
         ClassDataStore.instance().registerProxyName(oldClass, proxyName);
-        FieldAccessor accessor = new FieldAccessor(oldClass, fieldNo, (m.getAccessFlags() & AccessFlag.STATIC) != 0);
+        FieldAccessor accessor = new FieldAccessor(oldClass, fieldNo, m.getName(), m.getDescriptor(), staticField, fieldSlot);
         ClassDataStore.instance().registerFieldAccessor(proxyName, accessor);
+        builder.add(new FieldProxyInfo(m, proxyName, m.getAccessFlags()));
+        return fieldNo;
+    }
+
+    private static byte[] createFieldProxy(String proxyName, FieldInfo m) {
+        ClassFile proxy = new ClassFile(false, proxyName, "java.lang.Object");
         proxy.setAccessFlags(AccessFlag.PUBLIC);
         FieldInfo newField = new FieldInfo(proxy.getConstPool(), m.getName(), m.getDescriptor());
         newField.setAccessFlags(m.getAccessFlags());
@@ -78,17 +93,12 @@ public class FieldReplacementTransformer implements FakereplaceTransformer {
             proxy.addField(newField);
             ByteArrayOutputStream bytes = new ByteArrayOutputStream();
             DataOutputStream dos = new DataOutputStream(bytes);
-            try {
-                proxy.write(dos);
-            } catch (IOException e) {
-                throw new RuntimeException(e);
-            }
-            ProxyDefinitionStore.saveProxyDefinition(loader, proxyName, bytes.toByteArray());
-            builder.add(new FieldProxyInfo(newField, proxyName, m.getAccessFlags()));
-        } catch (DuplicateMemberException e) {
+            proxy.write(dos);
+            return bytes.toByteArray();
+        } catch (DuplicateMemberException | IOException e) {
             // can't happen
+            throw new RuntimeException(e);
         }
-        return fieldNo;
     }
 
 
@@ -126,6 +136,8 @@ public class FieldReplacementTransformer implements FakereplaceTransformer {
 
         final Set<FieldData> toRemove = new HashSet<>();
         final Set<FieldProxyInfo> toAdd = new HashSet<>();
+        final List<FieldInfo> addedStaticFields = new ArrayList<>();
+        final MemberProxies proxies = MemberProxies.forClass(loader, file.getName(), "field");
 
         // now we iterator through all fields
         // in the process we modify the new class so that is's signature
@@ -139,7 +151,9 @@ public class FieldReplacementTransformer implements FakereplaceTransformer {
                 if (i.getName().equals(m.getName()) && i.getType().equals(m.getDescriptor()) && i.getAccessFlags() == m.getAccessFlags()) {
                     try {
                         Field field = i.getField(oldClass);
-                        AnnotationDataStore.recordFieldAnnotations(field, (AnnotationsAttribute) m.getAttribute(AnnotationsAttribute.visibleTag));
+                        if (!changedClass.getChangeKind().isStructureUnchanged()) {
+                            AnnotationDataStore.recordFieldAnnotations(field, (AnnotationsAttribute) m.getAttribute(AnnotationsAttribute.visibleTag));
+                        }
                         // now revert the annotations:
                         m.addAttribute(AnnotationReplacer.duplicateAnnotationsAttribute(file.getConstPool(), field));
                     } catch (Exception e) {
@@ -151,13 +165,17 @@ public class FieldReplacementTransformer implements FakereplaceTransformer {
             }
             // This is a newly added field.
             if (md == null) {
-                int fieldNo = addField(loader, m, toAdd, oldClass);
+                if ((m.getAccessFlags() & AccessFlag.STATIC) != 0) {
+                    addedStaticFields.add(m);
+                }
+                int fieldNo = addField(loader, m, toAdd, oldClass, data, proxies);
                 Transformer.getManipulator().rewriteInstanceFieldAccess(fieldNo, m.getName(), m.getDescriptor(), file.getName(), loader);
                 it.remove();
             } else {
                 fields.remove(md);
             }
         }
+        StaticFieldHolderStore.createHolder(loader, file.getName(), addedStaticFields);
         // these fields have been removed,
         // TODO: rewrite classes that access them to throw a NoSuchFieldError
         for (FieldData md : fields) {
@@ -182,8 +200,19 @@ public class FieldReplacementTransformer implements FakereplaceTransformer {
                     // this should not happen
                     throw new RuntimeException(e);
                 }
+            } else if (md.getMemberType() == MemberType.ADDED_SYSTEM) {
+                // hidden fields that fakereplace added when the class was loaded
+                try {
+                    FieldInfo old = new FieldInfo(file.getConstPool(), md.getName(), md.getType());
+                    old.setAccessFlags(md.getAccessFlags());
+                    file.addField(old);
+                } catch (DuplicateMemberException e) {
+                    // this should not happen
+                    throw new RuntimeException(e);
+                }
             }
         }
+        proxies.commit();
         ClassDataStore.instance().modifyCurrentData(loader, file.getName(), (builder) -> {
             for (FieldProxyInfo field : toAdd) {
                 builder.addFakeField(field.fieldData, field.proxyName, field.modifiers);
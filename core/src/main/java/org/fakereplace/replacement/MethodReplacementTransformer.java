@@ -24,12 +24,13 @@ import java.lang.instrument.IllegalClassFormatException;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.Method;
 import java.security.ProtectionDomain;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.ListIterator;
 import java.util.Set;
 
-import org.fakereplace.core.ProxyDefinitionStore;
+import org.fakereplace.core.MemberProxies;
 import org.fakereplace.core.BuiltinClassData;
 import org.fakereplace.core.Constants;
 import org.fakereplace.core.Transformer;
@@ -42,8 +43,10 @@ import org.fakereplace.logging.Logger;
 import org.fakereplace.manip.FakeMethodCallManipulator;
 import org.fakereplace.util.Boxing;
 import org.fakereplace.manip.ManipulationUtils;
+import org.fakereplace.manip.TypedDelegators;
 import org.fakereplace.replacement.notification.ChangedClassImpl;
 import org.fakereplace.runtime.MethodIdentifierStore;
+import org.fakereplace.runtime.VirtualDelegator;
 import org.fakereplace.core.FakereplaceTransformer;
 import org.fakereplace.util.AccessFlagUtils;
 import org.fakereplace.util.DescriptorUtils;
@@ -55,7 +58,6 @@ import javassist.bytecode.Bytecode;
 import javassist.bytecode.ClassFile;
 import javassist.bytecode.CodeAttribute;
 import javassist.bytecode.CodeIterator;
-import javassist.bytecode.ConstPool;
 import javassist.bytecode.DuplicateMemberException;
 import javassist.bytecode.ExceptionsAttribute;
 import javassist.bytecode.MethodInfo;
@@ -67,9 +69,36 @@ public class MethodReplacementTransformer implements FakereplaceTransformer {
 
     private static final Logger logger = Logger.getLogger(MethodReplacementTransformer.class);
 
-    private static String generateProxyInvocationBytecode(MethodInfo mInfo, int methodNumber, String className, ClassLoader loader, boolean staticMethod, boolean isInterface)
+    /**
+     * Returns the proxy for an added method. The proxy does not contain the method body, so the proxy of the last
+     * version of the class is reused if the signature and annotations of the method have not changed.
+     */
+    private static String generateProxyInvocationBytecode(MethodInfo mInfo, int methodNumber, String className, MemberProxies proxies, boolean staticMethod, boolean isInterface) {
+        final String memberKey = "method " + methodNumber + ' ' + staticMethod + ' ' + isInterface + ' ' + memberKey(mInfo);
+        return proxies.getProxy(memberKey, (proxyName) -> {
+            try {
+                return createProxyInvocationBytecode(proxyName, mInfo, methodNumber, className, staticMethod, isInterface);
+            } catch (BadBytecode e) {
+                throw new RuntimeException(e);
+            }
+        });
+    }
+
+    /**
+     * Describes everything about a method that is copied onto its proxy
+     */
+    private static String memberKey(MethodInfo mInfo) {
+        final SignatureAttribute signature = (SignatureAttribute) mInfo.getAttribute(SignatureAttribute.tag);
+        final ExceptionsAttribute exceptions = mInfo.getExceptionsAttribute();
+        return mInfo.getName() + ' ' + mInfo.getDescriptor() + ' ' + mInfo.getAccessFlags()
+                + ' ' + mInfo.getAttribute(AnnotationsAttribute.visibleTag)
+                + ' ' + mInfo.getAttribute(ParameterAnnotationsAttribute.visibleTag)
+                + ' ' + (signature == null ? "" : signature.getSignature())
+                + ' ' + (exceptions == null ? "" : Arrays.toString(exceptions.getExceptions()));
+    }
+
+    private static byte[] createProxyInvocationBytecode(String proxyName, MethodInfo mInfo, int methodNumber, String className, boolean staticMethod, boolean isInterface)
             throws BadBytecode {
-        String proxyName = ProxyDefinitionStore.getProxyName();
         ClassFile proxy = new ClassFile(false, proxyName, "java.lang.Object");
         proxy.setVersionToJava5();
         proxy.setAccessFlags(AccessFlag.PUBLIC);
@@ -101,64 +130,80 @@ public class MethodReplacementTransformer implements FakereplaceTransformer {
             proxyBytecode.addAload(0);
             paramOffset = 1;
         }
-
-        // stick the method number in the const pool then load it onto the
-        // stack
-        int scind = proxy.getConstPool().addIntegerInfo(methodNumber);
-        proxyBytecode.addLdc(scind);
-
-        String[] types = DescriptorUtils.descriptorStringToParameterArray(mInfo.getDescriptor());
-        // create a new array the same size as the parameter array
-        int index = proxyBytecode.getConstPool().addIntegerInfo(types.length);
-        proxyBytecode.addLdc(index);
-        // create new array to use to pass our parameters
-        proxyBytecode.addAnewarray("java.lang.Object");
-        int locals = types.length + paramOffset;
-        for (int i = 0; i < types.length; ++i) {
-            // duplicate the array reference on the stack
-            proxyBytecode.add(Opcode.DUP);
-            // load the array index into the stack
-            index = proxyBytecode.getConstPool().addIntegerInfo(i);
-            proxyBytecode.addLdc(index);
-
-            char tp = types[i].charAt(0);
-            if (tp != 'L' && tp != '[') {
-                // we have a primitive type
-                switch (tp) {
-                    case 'J':
-                        proxyBytecode.addLload(i + paramOffset);
-                        locals++;
-                        break;
-                    case 'D':
-                        proxyBytecode.addDload(i + paramOffset);
-                        locals++;
-                        break;
-                    case 'F':
-                        proxyBytecode.addFload(i + paramOffset);
-                        break;
-                    default:
-                        proxyBytecode.addIload(i + paramOffset);
-                }
-                // lets box it
-                Boxing.box(proxyBytecode, tp);
+        int locals;
+        if (!isInterface && TypedDelegators.canUseRegisters(mInfo.getDescriptor())) {
+            // call the typed delegator, so the parameters and the return value are not boxed
+            proxyBytecode.addIconst(methodNumber);
+            TypedDelegators.pushRegisters(proxyBytecode, mInfo.getDescriptor(), paramOffset);
+            String name = TypedDelegators.getDelegatorName(staticMethod, mInfo.getDescriptor());
+            String delegatorDescriptor = TypedDelegators.getDelegatorDescriptor(mInfo.getDescriptor());
+            if (staticMethod) {
+                proxyBytecode.addInvokestatic(className, name, delegatorDescriptor);
             } else {
-                proxyBytecode.addAload(i + paramOffset); // load parameter i onto
-                // the stack
+                proxyBytecode.addInvokevirtual(className, name, delegatorDescriptor);
             }
-            proxyBytecode.add(Opcode.AASTORE);// store the value in the array
+            TypedDelegators.convertReturnValue(proxyBytecode, mInfo.getDescriptor());
+            TypedDelegators.addReturn(proxyBytecode, mInfo.getDescriptor());
+            locals = paramOffset + DescriptorUtils.maxLocalsFromParameters(mInfo.getDescriptor());
+        } else {
+            // stick the method number in the const pool then load it onto the
+            // stack
+            int scind = proxy.getConstPool().addIntegerInfo(methodNumber);
+            proxyBytecode.addLdc(scind);
+
+            String[] types = DescriptorUtils.descriptorStringToParameterArray(mInfo.getDescriptor());
+            // create a new array the same size as the parameter array
+            int index = proxyBytecode.getConstPool().addIntegerInfo(types.length);
+            proxyBytecode.addLdc(index);
+            // create new array to use to pass our parameters
+            proxyBytecode.addAnewarray("java.lang.Object");
+            locals = types.length + paramOffset;
+            for (int i = 0; i < types.length; ++i) {
+                // duplicate the array reference on the stack
+                proxyBytecode.add(Opcode.DUP);
+                // load the array index into the stack
+                index = proxyBytecode.getConstPool().addIntegerInfo(i);
+                proxyBytecode.addLdc(index);
+
+                char tp = types[i].charAt(0);
+                if (tp != 'L' && tp != '[') {
+                    // we have a primitive type
+                    switch (tp) {
+                        case 'J':
+                            proxyBytecode.addLload(i + paramOffset);
+                            locals++;
+                            break;
+                        case 'D':
+                            proxyBytecode.addDload(i + paramOffset);
+                            locals++;
+                            break;
+                        case 'F':
+                            proxyBytecode.addFload(i + paramOffset);
+                            break;
+                        default:
+                            proxyBytecode.addIload(i + paramOffset);
+                    }
+                    // lets box it
+                    Boxing.box(proxyBytecode, tp);
+                } else {
+                    proxyBytecode.addAload(i + paramOffset); // load parameter i onto
+                    // the stack
+                }
+                proxyBytecode.add(Opcode.AASTORE);// store the value in the array
 
-        }
+            }
 
-        // invoke the added static method
-        if (staticMethod) {
-            proxyBytecode.addInvokestatic(className, Constants.ADDED_STATIC_METHOD_NAME, "(I[Ljava/lang/Object;)Ljava/lang/Object;");
-        } else if (isInterface) {
-            proxyBytecode.addInvokeinterface(className, Constants.ADDED_METHOD_NAME, "(I[Ljava/lang/Object;)Ljava/lang/Object;", 3);
-        } else {
-            proxyBytecode.addInvokevirtual(className, Constants.ADDED_METHOD_NAME, "(I[Ljava/lang/Object;)Ljava/lang/Object;");
+            // invoke the added static method
+            if (staticMethod) {
+                proxyBytecode.addInvokestatic(className, Constants.ADDED_STATIC_METHOD_NAME, "(I[Ljava/lang/Object;)Ljava/lang/Object;");
+            } else if (isInterface) {
+                proxyBytecode.addInvokeinterface(className, Constants.ADDED_METHOD_NAME, "(I[Ljava/lang/Object;)Ljava/lang/Object;", 3);
+            } else {
+                proxyBytecode.addInvokevirtual(className, Constants.ADDED_METHOD_NAME, "(I[Ljava/lang/Object;)Ljava/lang/Object;");
+            }
+            // cast it to the appropriate type and return it
+            ManipulationUtils.MethodReturnRewriter.addReturnProxyMethod(mInfo.getDescriptor(), proxyBytecode);
         }
-        // cast it to the appropriate type and return it
-        ManipulationUtils.MethodReturnRewriter.addReturnProxyMethod(mInfo.getDescriptor(), proxyBytecode);
         CodeAttribute ca = proxyBytecode.toCodeAttribute();
         ca.setMaxLocals(locals);
 
@@ -227,8 +272,7 @@ public class MethodReplacementTransformer implements FakereplaceTransformer {
             ByteArrayOutputStream bytes = new ByteArrayOutputStream();
             DataOutputStream dos = new DataOutputStream(bytes);
             proxy.write(dos);
-            ProxyDefinitionStore.saveProxyDefinition(loader, proxyName, bytes.toByteArray());
-            return proxyName;
+            return bytes.toByteArray();
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
@@ -238,14 +282,14 @@ public class MethodReplacementTransformer implements FakereplaceTransformer {
     /**
      * Adds a method to a class
      */
-    private static Class<?> addMethod(ClassFile file, ClassLoader loader, MethodInfo mInfo, Set<FakeMethod> builder, CodeAttribute bytecode, boolean staticMethod, Class oldClass) {
+    private static Class<?> addMethod(ClassFile file, ClassLoader loader, MethodInfo mInfo, Set<FakeMethod> builder, Dispatchers dispatchers, boolean staticMethod, Class oldClass, MemberProxies proxies) {
         int methodCount = MethodIdentifierStore.instance().getMethodNumber(mInfo.getName(), mInfo.getDescriptor());
         try {
             if ((AccessFlag.ABSTRACT & mInfo.getAccessFlags()) == 0) {
                 // abstract methods don't get a body
-                generateBoxedConditionalCodeBlock(methodCount, mInfo, file.getConstPool(), bytecode, staticMethod, false);
+                generateCodeBlock(methodCount, mInfo, file.getName(), dispatchers, staticMethod, false);
             }
-            String proxyName = generateProxyInvocationBytecode(mInfo, methodCount, file.getName(), loader, staticMethod, file.isInterface());
+            String proxyName = generateProxyInvocationBytecode(mInfo, methodCount, file.getName(), proxies, staticMethod, file.isInterface());
             ClassDataStore.instance().registerProxyName(oldClass, proxyName);
             Transformer.getManipulator().addFakeMethodCallRewrite(file.getName(), mInfo.getName(), mInfo.getDescriptor(), staticMethod ? FakeMethodCallManipulator.Type.STATIC : file.isInterface() ? FakeMethodCallManipulator.Type.INTERFACE : FakeMethodCallManipulator.Type.VIRTUAL, loader, methodCount, proxyName);
 
@@ -271,70 +315,110 @@ public class MethodReplacementTransformer implements FakereplaceTransformer {
     }
 
     /**
-     * This method will take a method body and add it to an added method local
-     * the bytecode is inserted inside a conditional that will only run the code
-     * if the method number is correct variables are removed from the parameter
-     * array and unboxed if nessesary the return value is boxed if nessesary
-     * <p>
-     * Much of this work is handled by helper classes
-     *
+     * Adds the body of an added method to the delegators. If the parameters fit into the registers of the
+     * typed delegators the body goes into the typed delegator, and the delegator that takes an Object array
+     * gets a small adapter that unpacks the array and calls the typed delegator.
      */
-    private static void generateBoxedConditionalCodeBlock(int methodNumber, MethodInfo mInfo, ConstPool methodConstPool, CodeAttribute addedMethod, boolean staticMethod, boolean constructor)
+    private static void generateCodeBlock(int methodNumber, MethodInfo mInfo, String className, Dispatchers dispatchers, boolean staticMethod, boolean constructor)
             throws BadBytecode {
+        AddedMethodDispatcher boxed = constructor ? dispatchers.constructor : staticMethod ? dispatchers.staticMethods : dispatchers.virtual;
+        AddedMethodDispatcher typed = dispatchers.typed(staticMethod, constructor, mInfo.getDescriptor());
+        if (typed == null || !TypedDelegators.canUseRegisters(mInfo.getDescriptor())) {
+            generateBoxedCodeBlock(methodNumber, mInfo, boxed, staticMethod, constructor);
+            return;
+        }
+        generateTypedCodeBlock(methodNumber, mInfo, typed, staticMethod, constructor);
+        generateTypedAdapter(methodNumber, mInfo, className, boxed, staticMethod, constructor);
+    }
 
-        // we need to insert a conditional
-        Bytecode bc = new Bytecode(mInfo.getConstPool());
+    /**
+     * Adds a method body to a typed delegator. The registers are copied into the original parameters
+     * at the start of the method, and primitive return values are converted to a long.
+     */
+    private static void generateTypedCodeBlock(int methodNumber, MethodInfo mInfo, AddedMethodDispatcher dispatcher, boolean staticMethod, boolean constructor)
+            throws BadBytecode {
         CodeAttribute ca = (CodeAttribute) mInfo.getCodeAttribute().copy(mInfo.getConstPool(), Collections.emptyMap());
-        if (staticMethod) {
-            bc.addOpcode(Opcode.ILOAD_0);
+        int offset = staticMethod ? 0 : 1;
+        // the method number and the registers come before the parameters, constructors also have the ConstructorArgument
+        int inserted = 1 + TypedDelegators.REGISTER_SLOTS + (constructor ? 1 : 0);
+        int maxLocals = ca.getMaxLocals() + inserted;
+        ca.insertLocalVar(offset, inserted);
+        Bytecode code = new Bytecode(ca.getConstPool());
+        TypedDelegators.loadParameters(code, mInfo.getDescriptor(), offset + 1, offset + inserted);
+        ca.iterator().insert(0, code.get());
+
+        if (TypedDelegators.returnsPrimitive(mInfo.getDescriptor())) {
+            rewriteTypedReturn(ca.iterator(), mInfo.getDescriptor());
+        } else if (!constructor) {
+            rewriteFakeMethod(ca.iterator(), mInfo.getDescriptor());
+        }
+        dispatcher.addBody(methodNumber, ca, maxLocals);
+    }
+
+    /**
+     * Adds code to the delegator that takes an Object array that unpacks the array and calls the typed delegator.
+     * This is used by reflection and by calls to methods that override an existing method.
+     */
+    private static void generateTypedAdapter(int methodNumber, MethodInfo mInfo, String className, AddedMethodDispatcher dispatcher, boolean staticMethod, boolean constructor) {
+        String descriptor = mInfo.getDescriptor();
+        Bytecode b = new Bytecode(mInfo.getConstPool());
+        int arrayLocal = staticMethod ? 1 : 2;
+        int firstLocal = constructor ? 4 : arrayLocal + 1;
+        int maxLocals = firstLocal + TypedDelegators.unpackArray(b, descriptor, arrayLocal, firstLocal);
+        if (!staticMethod) {
+            b.addAload(0);
+        }
+        b.addIconst(methodNumber);
+        TypedDelegators.pushRegisters(b, descriptor, firstLocal);
+        if (constructor) {
+            b.addAload(3);
+            b.addInvokespecial(className, "<init>", Constants.ADDED_TYPED_CONSTRUCTOR_DESCRIPTOR);
+            b.add(Opcode.RETURN);
         } else {
-            bc.addOpcode(Opcode.ILOAD_1);
+            String name = TypedDelegators.getDelegatorName(staticMethod, descriptor);
+            String delegatorDescriptor = TypedDelegators.getDelegatorDescriptor(descriptor);
+            if (staticMethod) {
+                b.addInvokestatic(className, name, delegatorDescriptor);
+            } else {
+                // invokespecial so we get the body from this class even if a subclass has an added method with the same number
+                b.addInvokespecial(className, name, delegatorDescriptor);
+            }
+            if (TypedDelegators.returnsPrimitive(descriptor)) {
+                char type = DescriptorUtils.getReturnType(descriptor).charAt(0);
+                Boxing.fromBits(b, type);
+                Boxing.box(b, type);
+            }
+            b.add(Opcode.ARETURN);
         }
-        int methodCountIndex = methodConstPool.addIntegerInfo(methodNumber);
-        bc.addLdc(methodCountIndex);
-        bc.addOpcode(Opcode.IF_ICMPNE);
+        dispatcher.addBody(methodNumber, b.toCodeAttribute(), maxLocals);
+    }
+
+    /**
+     * This method will take a method body and add it to the dispatcher of an added method.
+     * Variables are removed from the parameter array and unboxed if nessesary, and
+     * the return value is boxed if nessesary
+     * <p>
+     * Much of this work is handled by helper classes
+     *
+     */
+    private static void generateBoxedCodeBlock(int methodNumber, MethodInfo mInfo, AddedMethodDispatcher dispatcher, boolean staticMethod, boolean constructor)
+            throws BadBytecode {
+        CodeAttribute ca = (CodeAttribute) mInfo.getCodeAttribute().copy(mInfo.getConstPool(), Collections.emptyMap());
 
         // now we need to fix local variables and unbox parameters etc
-        int addedCodeLength = mangleParameters(staticMethod, constructor, ca, mInfo.getDescriptor());
+        mangleParameters(staticMethod, constructor, ca, mInfo.getDescriptor());
         int newMax = ca.getMaxLocals() + 2;
         if (constructor) {
             // for the extra
             newMax++;
         }
-        if (newMax > addedMethod.getMaxLocals()) {
-            addedMethod.setMaxLocals(newMax);
-        }
-        // later
-        int offset = ca.getCodeLength();
-        // offset is +3, 2 for the branch offset after the IF_ICMPNE and 1 to
-        // take it past the end of the code
-        ManipulationUtils.add16bit(bc, offset + 3); // add the branch offset
-
-        // now we need to insert our generated conditional at the start of the
-        // new method
-        ca.iterator().insert(bc.get());
 
         // now we need to make sure the function is returning an object
         // rewriteFakeMethod makes sure that the return type is properly boxed
         if (!constructor) {
             rewriteFakeMethod(ca.iterator(), mInfo.getDescriptor());
         }
-
-
-        // now insert the new method code at the beginning of the static method
-        // code attribute
-        addedMethod.iterator().insertEx(ca.getCode());
-
-        // update the exception table
-
-
-        for (int i = 0; i < mInfo.getCodeAttribute().getExceptionTable().size(); ++i) {
-            int start = ca.getExceptionTable().startPc(i) ;
-            int end = ca.getExceptionTable().endPc(i) ;
-            int handler = ca.getExceptionTable().handlerPc(i) ;
-            int type = ca.getExceptionTable().catchType(i);
-            addedMethod.getExceptionTable().add(start, end, handler, type);
-        }
+        dispatcher.addBody(methodNumber, ca, newMax);
     }
 
     private static MethodInfo createRemovedMethod(ClassFile file, MethodData md, Class<?> oldClass, Set<MethodData> methodsToRemove) {
@@ -386,12 +470,12 @@ public class MethodReplacementTransformer implements FakereplaceTransformer {
         return m;
     }
 
-    private static void addConstructor(ClassFile file, ClassLoader loader, MethodInfo mInfo, Set<FakeMethod> builder, CodeAttribute bytecode, Class<?> oldClass) {
+    private static void addConstructor(ClassFile file, ClassLoader loader, MethodInfo mInfo, Set<FakeMethod> builder, Dispatchers dispatchers, Class<?> oldClass, MemberProxies proxies) {
         int methodCount = MethodIdentifierStore.instance().getMethodNumber(mInfo.getName(), mInfo.getDescriptor());
 
         try {
-            generateBoxedConditionalCodeBlock(methodCount, mInfo, file.getConstPool(), bytecode, false, true);
-            String proxyName = generateFakeConstructorBytecode(mInfo, loader);
+            generateCodeBlock(methodCount, mInfo, file.getName(), dispatchers, false, true);
+            String proxyName = generateFakeConstructorBytecode(mInfo, proxies);
             ClassDataStore.instance().registerProxyName(oldClass, proxyName);
             Transformer.getManipulator().rewriteConstructorAccess(file.getName(), mInfo.getDescriptor(), methodCount, loader);
             builder.add(new FakeMethod(mInfo.getName(),proxyName, mInfo.getDescriptor(), mInfo.getAccessFlags(), methodCount));
@@ -409,8 +493,17 @@ public class MethodReplacementTransformer implements FakereplaceTransformer {
      * do a lot more bytecode re-writing at the actual invocation sites
      *
      */
-    private static String generateFakeConstructorBytecode(MethodInfo mInfo, ClassLoader loader) throws BadBytecode {
-        String proxyName = ProxyDefinitionStore.getProxyName();
+    private static String generateFakeConstructorBytecode(MethodInfo mInfo, MemberProxies proxies) {
+        return proxies.getProxy("constructor " + memberKey(mInfo), (proxyName) -> {
+            try {
+                return createFakeConstructorBytecode(proxyName, mInfo);
+            } catch (BadBytecode e) {
+                throw new RuntimeException(e);
+            }
+        });
+    }
+
+    private static byte[] createFakeConstructorBytecode(String proxyName, MethodInfo mInfo) throws BadBytecode {
         ClassFile proxy = new ClassFile(false, proxyName, "java.lang.Object");
         proxy.setVersionToJava5();
         proxy.setAccessFlags(AccessFlag.PUBLIC);
@@ -419,7 +512,6 @@ public class MethodReplacementTransformer implements FakereplaceTransformer {
         // they will just work without registering them with the
         // AnnotationDataStore
 
-        String[] types = DescriptorUtils.descriptorStringToParameterArray(mInfo.getDescriptor());
         // as this method is never called the bytecode just returns
         Bytecode b = new Bytecode(proxy.getConstPool());
         b.add(Opcode.ALOAD_0);
@@ -429,7 +521,7 @@ public class MethodReplacementTransformer implements FakereplaceTransformer {
         method.setAccessFlags(mInfo.getAccessFlags());
         method.setCodeAttribute(b.toCodeAttribute());
         method.getCodeAttribute().computeMaxStack();
-        method.getCodeAttribute().setMaxLocals(types.length + 1);
+        method.getCodeAttribute().setMaxLocals(DescriptorUtils.maxLocalsFromParameters(mInfo.getDescriptor()) + 1);
 
         copyMethodAttributes(mInfo, method);
 
@@ -444,8 +536,7 @@ public class MethodReplacementTransformer implements FakereplaceTransformer {
             ByteArrayOutputStream bytes = new ByteArrayOutputStream();
             DataOutputStream dos = new DataOutputStream(bytes);
             proxy.write(dos);
-            ProxyDefinitionStore.saveProxyDefinition(loader, proxyName, bytes.toByteArray());
-            return proxyName;
+            return bytes.toByteArray();
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
@@ -584,17 +675,28 @@ public class MethodReplacementTransformer implements FakereplaceTransformer {
 
     }
 
+    private static AddedMethodDispatcher addTypedDelegator(ClassFile file, String name, String descriptor, boolean staticMethod, Set<MethodInfo> modifiedMethods) throws DuplicateMemberException {
+        MethodInfo m = TypedDelegators.createDelegator(file, name, descriptor, staticMethod);
+        modifiedMethods.add(m);
+        file.addMethod(m);
+        return new AddedMethodDispatcher(m, staticMethod ? 0 : 1);
+    }
+
     @Override
     public boolean transform(ClassLoader loader, String className, Class<?> oldClass, ProtectionDomain protectionDomain, ClassFile file, Set<Class<?>> classesToRetransform, ChangedClassImpl changedClass, Set<MethodInfo> modifiedMethods, boolean replaceable) throws IllegalClassFormatException, BadBytecode, DuplicateMemberException {
         if(oldClass == null || className == null) {
             return false;
         }
+        // overrides that are still there are registered again as the added methods are processed, so one that has
+        // been removed is no longer delegated to
+        VirtualDelegator.clear(loader, file.getName());
         final Set<MethodData> methodsToRemove = new HashSet<>();
         final Set<FakeMethod> methodsToAdd = new HashSet<>();
         final Set<FakeMethod> constructorsToAdd = new HashSet<>();
         BaseClassData data = ClassDataStore.instance().getBaseClassData(loader, className);
         // state for added static methods
-        CodeAttribute staticCodeAttribute = null, virtualCodeAttribute = null, constructorCodeAttribute = null;
+        final Dispatchers dispatchers = new Dispatchers();
+        final MemberProxies proxies = MemberProxies.forClass(loader, className, "method");
         try {
             // stick our added methods into the class file
             // we can't finalise the code yet because we will probably need
@@ -619,8 +721,8 @@ public class MethodReplacementTransformer implements FakereplaceTransformer {
                     b.addInvokespecial(file.getSuperclass(), Constants.ADDED_METHOD_NAME, Constants.ADDED_METHOD_DESCRIPTOR);
                     b.add(Bytecode.ARETURN);
                 }
-                virtualCodeAttribute = b.toCodeAttribute();
-                virtMethod.setCodeAttribute(virtualCodeAttribute);
+                virtMethod.setCodeAttribute(b.toCodeAttribute());
+                dispatchers.virtual = new AddedMethodDispatcher(virtMethod, 1);
 
                 MethodInfo m = new MethodInfo(file.getConstPool(), Constants.ADDED_STATIC_METHOD_NAME, Constants.ADDED_METHOD_DESCRIPTOR);
                 modifiedMethods.add(m);
@@ -630,8 +732,8 @@ public class MethodReplacementTransformer implements FakereplaceTransformer {
                 b.add(Opcode.DUP);
                 b.addInvokespecial(NoSuchMethodError.class.getName(), "<init>", "()V");
                 b.add(Opcode.ATHROW);
-                staticCodeAttribute = b.toCodeAttribute();
-                m.setCodeAttribute(staticCodeAttribute);
+                m.setCodeAttribute(b.toCodeAttribute());
+                dispatchers.staticMethods = new AddedMethodDispatcher(m, 0);
                 file.addMethod(m);
 
                 m = new MethodInfo(file.getConstPool(), "<init>", Constants.ADDED_CONSTRUCTOR_DESCRIPTOR);
@@ -639,10 +741,22 @@ public class MethodReplacementTransformer implements FakereplaceTransformer {
                 m.setAccessFlags(AccessFlag.PUBLIC | AccessFlag.SYNTHETIC);
                 b = new Bytecode(file.getConstPool(), 0, 4);
                 if (ManipulationUtils.addBogusConstructorCall(file, b)) {
-                    constructorCodeAttribute = b.toCodeAttribute();
+                    CodeAttribute constructorCodeAttribute = b.toCodeAttribute();
                     m.setCodeAttribute(constructorCodeAttribute);
                     constructorCodeAttribute.setMaxLocals(6);
+                    dispatchers.constructor = new AddedMethodDispatcher(m, 1);
+                    file.addMethod(m);
+                }
+
+                dispatchers.typedVirtual = addTypedDelegator(file, Constants.ADDED_TYPED_METHOD_NAME, Constants.ADDED_TYPED_METHOD_DESCRIPTOR, false, modifiedMethods);
+                dispatchers.typedVirtualPrimitive = addTypedDelegator(file, Constants.ADDED_TYPED_PRIMITIVE_METHOD_NAME, Constants.ADDED_TYPED_PRIMITIVE_METHOD_DESCRIPTOR, false, modifiedMethods);
+                dispatchers.typedStatic = addTypedDelegator(file, Constants.ADDED_TYPED_STATIC_METHOD_NAME, Constants.ADDED_TYPED_METHOD_DESCRIPTOR, true, modifiedMethods);
+                dispatchers.typedStaticPrimitive = addTypedDelegator(file, Constants.ADDED_TYPED_STATIC_PRIMITIVE_METHOD_NAME, Constants.ADDED_TYPED_PRIMITIVE_METHOD_DESCRIPTOR, true, modifiedMethods);
+                m = TypedDelegators.createConstructorDelegator(file);
+                if (m != null) {
+                    modifiedMethods.add(m);
                     file.addMethod(m);
+                    dispatchers.typedConstructor = new AddedMethodDispatcher(m, 1);
                 }
             }
             file.addMethod(virtMethod);
@@ -685,8 +799,10 @@ public class MethodReplacementTransformer implements FakereplaceTransformer {
                     if (m.getName().equals("<init>")) {
                         try {
                             Constructor<?> meth = i.getConstructor(oldClass);
-                            AnnotationDataStore.recordConstructorAnnotations(meth, (AnnotationsAttribute) m.getAttribute(AnnotationsAttribute.visibleTag));
-                            AnnotationDataStore.recordConstructorParameterAnnotations(meth, (ParameterAnnotationsAttribute) m.getAttribute(ParameterAnnotationsAttribute.visibleTag));
+                            if (!changedClass.getChangeKind().isStructureUnchanged()) {
+                                AnnotationDataStore.recordConstructorAnnotations(meth, (AnnotationsAttribute) m.getAttribute(AnnotationsAttribute.visibleTag));
+                                AnnotationDataStore.recordConstructorParameterAnnotations(meth, (ParameterAnnotationsAttribute) m.getAttribute(ParameterAnnotationsAttribute.visibleTag));
+                            }
                             // now revert the annotations:
                             m.addAttribute(AnnotationReplacer.duplicateAnnotationsAttribute(file.getConstPool(), meth));
                             m.addAttribute(AnnotationReplacer.duplicateParameterAnnotationsAttribute(file.getConstPool(), meth));
@@ -699,8 +815,10 @@ public class MethodReplacementTransformer implements FakereplaceTransformer {
                         // we do not have to worry about them
                         try {
                             Method meth = i.getMethod(oldClass);
-                            AnnotationDataStore.recordMethodAnnotations(meth, (AnnotationsAttribute) m.getAttribute(AnnotationsAttribute.visibleTag));
-                            AnnotationDataStore.recordMethodParameterAnnotations(meth, (ParameterAnnotationsAttribute) m.getAttribute(ParameterAnnotationsAttribute.visibleTag));
+                            if (!changedClass.getChangeKind().isStructureUnchanged()) {
+                                AnnotationDataStore.recordMethodAnnotations(meth, (AnnotationsAttribute) m.getAttribute(AnnotationsAttribute.visibleTag));
+                                AnnotationDataStore.recordMethodParameterAnnotations(meth, (ParameterAnnotationsAttribute) m.getAttribute(ParameterAnnotationsAttribute.visibleTag));
+                            }
                             // now revert the annotations:
                             m.addAttribute(AnnotationReplacer.duplicateAnnotationsAttribute(file.getConstPool(), meth));
                             m.addAttribute(AnnotationReplacer.duplicateParameterAnnotationsAttribute(file.getConstPool(), meth));
@@ -723,16 +841,16 @@ public class MethodReplacementTransformer implements FakereplaceTransformer {
             // so it is still in the original
             if (md == null || upgradedVisibility) {
                 if ((m.getAccessFlags() & AccessFlag.STATIC) != 0) {
-                    Class<?> c = addMethod(file, loader, m, methodsToAdd, staticCodeAttribute, true, oldClass);
+                    Class<?> c = addMethod(file, loader, m, methodsToAdd, dispatchers, true, oldClass, proxies);
                     if (c != null) {
                         classesToRetransform.add(c);
                     }
                 } else if ((m.getName().equals("<init>"))) {
-                    addConstructor(file, loader, m, constructorsToAdd, constructorCodeAttribute, oldClass);
+                    addConstructor(file, loader, m, constructorsToAdd, dispatchers, oldClass, proxies);
                 } else if (m.getName().equals("<clinit>")) {
                     // nop, we can't change this, just ignore it
                 } else {
-                    Class<?> c = addMethod(file, loader, m, methodsToAdd, virtualCodeAttribute, false, oldClass);
+                    Class<?> c = addMethod(file, loader, m, methodsToAdd, dispatchers, false, oldClass, proxies);
                     if (c != null) {
                         classesToRetransform.add(c);
                     }
@@ -759,6 +877,7 @@ public class MethodReplacementTransformer implements FakereplaceTransformer {
             }
         }
 
+        proxies.commit();
         ClassDataStore.instance().modifyCurrentData(loader, className, (builder) -> {
             for(MethodData method : methodsToRemove) {
                 builder.removeMethod(method);
@@ -772,16 +891,12 @@ public class MethodReplacementTransformer implements FakereplaceTransformer {
 
         });
 
-        // if we did not return from a virtual method we need to call the parent
-        // method directly so to this end we append some stuff to the bottom of
-        // the method declaration to propagate the call to the parent
+        // now build the switch statements that dispatch to the added method bodies.
+        // if the method number is not found the original code runs, which
+        // propagates the call to the parent
         if (!file.isInterface()) {
             try {
-                staticCodeAttribute.computeMaxStack();
-                virtualCodeAttribute.computeMaxStack();
-                if (constructorCodeAttribute != null) {
-                    constructorCodeAttribute.computeMaxStack();
-                }
+                dispatchers.build();
             } catch (BadBytecode e) {
                 e.printStackTrace();
             }
@@ -845,6 +960,66 @@ public class MethodReplacementTransformer implements FakereplaceTransformer {
         }
     }
 
+    /**
+     * Changes the primitive return instructions of a method body into LRETURN, converting the return value to a long
+     */
+    private static void rewriteTypedReturn(CodeIterator methodBody, String methodDescriptor) {
+        char type = DescriptorUtils.getReturnType(methodDescriptor).charAt(0);
+        while (methodBody.hasNext()) {
+            try {
+                int index = methodBody.next();
+                int opcode = methodBody.byteAt(index);
+                switch (opcode) {
+                    case Opcode.IRETURN:
+                    case Opcode.LRETURN:
+                    case Opcode.DRETURN:
+                    case Opcode.FRETURN:
+                        methodBody.writeByte(Opcode.LRETURN, index);
+                        Bytecode b = new Bytecode(methodBody.get().getConstPool());
+                        Boxing.toBits(b, type);
+                        if (b.length() > 0) {
+                            methodBody.insertAt(index, b.get());
+                        }
+                }
+            } catch (BadBytecode e) {
+                throw new RuntimeException(e);
+            }
+        }
+    }
+
+    /**
+     * The delegators of the class being redefined
+     */
+    private static final class Dispatchers {
+        AddedMethodDispatcher virtual;
+        AddedMethodDispatcher staticMethods;
+        AddedMethodDispatcher constructor;
+        AddedMethodDispatcher typedVirtual;
+        AddedMethodDispatcher typedVirtualPrimitive;
+        AddedMethodDispatcher typedStatic;
+        AddedMethodDispatcher typedStaticPrimitive;
+        AddedMethodDispatcher typedConstructor;
+
+        AddedMethodDispatcher typed(boolean staticMethod, boolean constructor, String descriptor) {
+            if (constructor) {
+                return typedConstructor;
+            }
+            boolean primitive = TypedDelegators.returnsPrimitive(descriptor);
+            if (staticMethod) {
+                return primitive ? typedStaticPrimitive : typedStatic;
+            }
+            return primitive ? typedVirtualPrimitive : typedVirtual;
+        }
+
+        void build() throws BadBytecode {
+            for (AddedMethodDispatcher dispatcher : new AddedMethodDispatcher[]{virtual, staticMethods, constructor, typedVirtual, typedVirtualPrimitive, typedStatic, typedStaticPrimitive, typedConstructor}) {
+                if (dispatcher != null) {
+                    dispatcher.build();
+                }
+            }
+        }
+    }
+
     private static final class FakeMethod {
         final String name;
         final String proxyName;
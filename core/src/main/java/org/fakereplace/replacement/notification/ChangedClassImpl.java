@@ -26,6 +26,7 @@ import java.util.Set;
 
 import org.fakereplace.api.ChangedAnnotation;
 import org.fakereplace.api.ChangedClass;
+import org.fakereplace.replacement.ClassChangeKind;
 
 /**
  * @author Stuart Douglas
@@ -35,6 +36,7 @@ public class ChangedClassImpl implements ChangedClass {
     private final Map<Class<? extends Annotation>, Set<ChangedAnnotation>> changedAnnotationsByType = new HashMap<>();
     private final Class<?> changedClass;
     private final byte[] data;
+    private ClassChangeKind changeKind = ClassChangeKind.STRUCTURAL;
 
     public ChangedClassImpl(final Class<?> changedClass, byte[] data) {
         this.changedClass = changedClass;
@@ -66,6 +68,17 @@ public class ChangedClassImpl implements ChangedClass {
         return data;
     }
 
+    /**
+     * @return how this version of the class differs from the last one
+     */
+    public ClassChangeKind getChangeKind() {
+        return changeKind;
+    }
+
+    public void setChangeKind(ClassChangeKind changeKind) {
+        this.changeKind = changeKind;
+    }
+
     public void changeClassAnnotation(final ChangedAnnotation annotation) {
         changedAnnotation(annotation);
     }
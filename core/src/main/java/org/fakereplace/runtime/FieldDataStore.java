@@ -17,38 +17,194 @@
 
 package org.fakereplace.runtime;
 
-import java.util.Collections;
+import java.lang.reflect.Field;
 import java.util.Map;
-import java.util.WeakHashMap;
 
+import org.fakereplace.core.Constants;
+import org.fakereplace.util.ConcurrentWeakIdentityHashMap;
 import org.fakereplace.util.NullSafeConcurrentHashMap;
 
 /**
- * This class holds field data for added fields. It maintains a weakly
- * referenced computing map of instance to field value.
+ * This class holds field data for added fields.
+ * <p>
+ * Replaceable classes have hidden slot array fields that hold the values of added instance fields, which
+ * are accessed directly by the rewritten bytecode. Reference fields are stored in an Object[], and primitive fields
+ * are stored in a long[] (float and double values are stored as their raw bits), so that the zero value in a new
+ * array is the default value of every field type. This class allocates the slot arrays, and maintains a weakly
+ * referenced identity map of instance to field value for everything else (receivers without slot fields, and
+ * fields that were added after an instances slot array was allocated).
+ * <p>
+ * Added static fields are not stored here, they are real fields on a generated holder class.
+ *
+ * @see org.fakereplace.core.StaticFieldHolderStore
  *
  * @author Stuart Douglas
  */
 public class FieldDataStore {
-    private static final Map<Object, Map<Integer, Object>> fieldData = Collections.synchronizedMap(new WeakHashMap<>());
+
+    /**
+     * extra room that is allocated in slot arrays, so fields added in later replacements can still use them
+     */
+    private static final int SLOT_HEADROOM = 4;
+
+    private static final int LOCK_STRIPES = 64;
+
+    private static final ConcurrentWeakIdentityHashMap<Object, Map<Integer, Object>> fieldData = new ConcurrentWeakIdentityHashMap<>();
+
+    private static final Object[] locks = new Object[LOCK_STRIPES];
+
+    private static final ClassValue<Field> slotFields = new SlotFieldLookup(Constants.ADDED_FIELD_SLOTS_NAME);
+
+    private static final ClassValue<Field> primitiveSlotFields = new SlotFieldLookup(Constants.ADDED_PRIMITIVE_FIELD_SLOTS_NAME);
+
+    static {
+        for (int i = 0; i < LOCK_STRIPES; ++i) {
+            locks[i] = new Object();
+        }
+    }
 
     public static Object getValue(Object instance, int field) {
         Map<Integer, Object> map = fieldData.get(instance);
-        if(map != null) {
-            Object ret = map.get(field);
-            if(ret != null) {
-                return ret;
-            }
-        }
-        String type = FieldReferenceDataStore.instance().getFieldDescriptor(field);
-        if(type.length() == 1) {
-            return 0;
-        } else {
-            return null;
+        if (map != null) {
+            return map.get(field);
         }
+        return null;
     }
 
     public static void setValue(Object instance, Object value, int field) {
         fieldData.computeIfAbsent(instance, (e) -> new NullSafeConcurrentHashMap<>()).put(field, value);
     }
+
+    /**
+     * Reads an added primitive field that is not stored in a slot array
+     */
+    public static long getPrimitiveValue(Object instance, int field) {
+        Object value = getValue(instance, field);
+        if (value == null) {
+            return 0;
+        }
+        return (Long) value;
+    }
+
+    /**
+     * Writes an added primitive field that is not stored in a slot array
+     */
+    public static void setPrimitiveValue(Object instance, long value, int field) {
+        setValue(instance, value, field);
+    }
+
+    /**
+     * Reads an added field from the slot array of the given owner class
+     */
+    public static Object getSlotValue(Object instance, Class<?> owner, int field) {
+        try {
+            Object[] slots = (Object[]) slotFields.get(owner).get(instance);
+            if (slots != null && field < slots.length) {
+                return slots[field];
+            }
+            return getValue(instance, field);
+        } catch (IllegalAccessException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Writes an added field to the slot array of the given owner class. This is the slow path of the generated
+     * setter, and is only called if the slot array has not been allocated yet, or is too small to hold the field.
+     * <p>
+     * Slot arrays are never resized once they have been allocated, as a concurrent write to the old array could be lost.
+     * Fields that do not fit are stored in the identity map instead.
+     */
+    public static void setSlotValue(Object instance, Class<?> owner, Object value, int field) {
+        try {
+            final Field slotField = slotFields.get(owner);
+            Object[] slots;
+            synchronized (locks[System.identityHashCode(instance) & (LOCK_STRIPES - 1)]) {
+                slots = (Object[]) slotField.get(instance);
+                if (slots == null) {
+                    slots = new Object[slotCount(slotField, field)];
+                    slotField.set(instance, slots);
+                }
+            }
+            if (field < slots.length) {
+                slots[field] = value;
+            } else {
+                setValue(instance, value, field);
+            }
+        } catch (IllegalAccessException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Reads an added primitive field from the primitive slot array of the given owner class
+     */
+    public static long getPrimitiveSlotValue(Object instance, Class<?> owner, int field) {
+        try {
+            long[] slots = (long[]) primitiveSlotFields.get(owner).get(instance);
+            if (slots != null && field < slots.length) {
+                return slots[field];
+            }
+            return getPrimitiveValue(instance, field);
+        } catch (IllegalAccessException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Writes an added primitive field to the primitive slot array of the given owner class.
+     *
+     * @see #setSlotValue(Object, Class, Object, int)
+     */
+    public static void setPrimitiveSlotValue(Object instance, Class<?> owner, long value, int field) {
+        try {
+            final Field slotField = primitiveSlotFields.get(owner);
+            long[] slots;
+            synchronized (locks[System.identityHashCode(instance) & (LOCK_STRIPES - 1)]) {
+                slots = (long[]) slotField.get(instance);
+                if (slots == null) {
+                    slots = new long[slotCount(slotField, field)];
+                    slotField.set(instance, slots);
+                }
+            }
+            if (field < slots.length) {
+                slots[field] = value;
+            } else {
+                setPrimitiveValue(instance, value, field);
+            }
+        } catch (IllegalAccessException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static int slotCount(Field slotField, int field) {
+        // field numbers are assigned per class that declares the slot fields
+        return Math.max(field + 1, FieldReferenceDataStore.instance().getFieldCount(slotField.getDeclaringClass())) + SLOT_HEADROOM;
+    }
+
+    /**
+     * Finds a slot field, which is declared on the topmost replaceable class
+     */
+    private static final class SlotFieldLookup extends ClassValue<Field> {
+
+        private final String name;
+
+        private SlotFieldLookup(String name) {
+            this.name = name;
+        }
+
+        @Override
+        protected Field computeValue(Class<?> type) {
+            for (Class<?> c = type; c != null; c = c.getSuperclass()) {
+                try {
+                    Field field = c.getDeclaredField(name);
+                    field.setAccessible(true);
+                    return field;
+                } catch (NoSuchFieldException e) {
+                    // try the superclass
+                }
+            }
+            throw new RuntimeException("No added field slots found for " + type);
+        }
+    }
 }
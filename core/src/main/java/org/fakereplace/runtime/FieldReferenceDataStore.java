@@ -17,57 +17,122 @@
 
 package org.fakereplace.runtime;
 
-import java.util.Map;
+import java.util.Arrays;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.fakereplace.data.ClassLoaderData;
 
 /**
- * Maps a unique field signature to an arbitrary number. This number will be the same for all fields with the
- * same name and type, this field number is used to actually store the runtime data when adding fields
+ * Assigns numbers to added fields, which are used as indexes into the slot arrays of the class that owns the
+ * field storage.
+ * <p>
+ * Numbers are dense for each owner, so the slot arrays only need to be as big as the number of fields that have
+ * actually been added to the owner and its subclasses. Lookups of existing numbers do not take any locks.
  *
- * @author stuart
+ * @author Stuart Douglas
  */
 public class FieldReferenceDataStore {
 
     private static final FieldReferenceDataStore INSTANCE = new FieldReferenceDataStore();
 
-    private int counter = 0;
+    private static final ClassLoaderData.AttachmentKey<ConcurrentMap<String, FieldNumbers>> FIELD_NUMBERS = new ClassLoaderData.AttachmentKey<>();
 
-    private final Map<FieldReference, Integer> addedFieldNumbers = new ConcurrentHashMap<>();
-    private final Map<Integer, FieldReference> fieldsByNumber = new ConcurrentHashMap<>();
+    private final ClassValue<FieldNumbers> ownerNumbers = new ClassValue<FieldNumbers>() {
+        @Override
+        protected FieldNumbers computeValue(Class<?> type) {
+            return getFieldNumbers(type.getClassLoader(), type.getName());
+        }
+    };
 
     private FieldReferenceDataStore() {
 
     }
 
-    public synchronized Integer getFieldNo(String fieldName, String desc) {
-        FieldReference ref = new FieldReference(fieldName, desc);
-        Integer existing = addedFieldNumbers.get(ref);
-        if (existing != null) {
-            return existing;
-        }
-        int ret = counter++;
-        addedFieldNumbers.put(ref, ret);
-        fieldsByNumber.put(ret, ref);
-        return ret;
+    /**
+     * Returns the number of an added field
+     *
+     * @param loader         the class loader of the owner
+     * @param owner          the class that owns the storage for the field
+     * @param declaringClass the class that declares the field
+     * @param fieldName      the field name
+     * @param desc           the field descriptor
+     */
+    public int getFieldNo(ClassLoader loader, String owner, String declaringClass, String fieldName, String desc) {
+        return getFieldNumbers(loader, owner).getFieldNo(new FieldReference(declaringClass.replace('/', '.'), fieldName, desc));
     }
 
     public static FieldReferenceDataStore instance() {
         return INSTANCE;
     }
 
-    public String getFieldDescriptor(int field) {
-        FieldReference instance = fieldsByNumber.get(field);
-        if(instance == null) {
+    /**
+     * @return The number of field numbers that have been handed out for the given owner
+     */
+    public int getFieldCount(Class<?> owner) {
+        return ownerNumbers.get(owner).count.get();
+    }
+
+    public String getFieldDescriptor(Class<?> owner, int field) {
+        FieldReference[] fields = ownerNumbers.get(owner).fieldsByNumber;
+        if (field < 0 || field >= fields.length || fields[field] == null) {
             return null;
         }
-        return instance.descriptor;
+        return fields[field].descriptor;
+    }
+
+    private FieldNumbers getFieldNumbers(ClassLoader loader, String owner) {
+        ConcurrentMap<String, FieldNumbers> numbers = ClassLoaderData.get(loader).computeAttachmentIfAbsent(FIELD_NUMBERS, ConcurrentHashMap::new);
+        FieldNumbers ret = numbers.get(owner);
+        if (ret == null) {
+            ret = numbers.computeIfAbsent(owner, (k) -> new FieldNumbers());
+        }
+        return ret;
+    }
+
+    /**
+     * The fields that have been numbered for a single owner
+     */
+    private static final class FieldNumbers {
+
+        private final ConcurrentMap<FieldReference, Integer> addedFieldNumbers = new ConcurrentHashMap<>();
+
+        private final AtomicInteger count = new AtomicInteger();
+
+        private volatile FieldReference[] fieldsByNumber = new FieldReference[4];
+
+        int getFieldNo(FieldReference ref) {
+            Integer existing = addedFieldNumbers.get(ref);
+            if (existing != null) {
+                return existing;
+            }
+            return addedFieldNumbers.computeIfAbsent(ref, (r) -> {
+                int ret = count.getAndIncrement();
+                recordField(ret, r);
+                return ret;
+            });
+        }
+
+        private synchronized void recordField(int field, FieldReference ref) {
+            FieldReference[] fields = fieldsByNumber;
+            if (field >= fields.length) {
+                fields = Arrays.copyOf(fields, Math.max(field + 1, fields.length * 2));
+            } else {
+                fields = fields.clone();
+            }
+            fields[field] = ref;
+            fieldsByNumber = fields;
+        }
     }
 
     private static class FieldReference {
+        private final String declaringClass;
         private final String name;
         private final String descriptor;
 
-        public FieldReference(String name, String descriptor) {
+        public FieldReference(String declaringClass, String name, String descriptor) {
+            this.declaringClass = declaringClass;
             this.name = name;
             this.descriptor = descriptor;
         }
@@ -76,6 +141,7 @@ public class FieldReferenceDataStore {
         public int hashCode() {
             final int prime = 31;
             int result = 1;
+            result = prime * result + declaringClass.hashCode();
             result = prime * result + ((descriptor == null) ? 0 : descriptor.hashCode());
             result = prime * result + ((name == null) ? 0 : name.hashCode());
             return result;
@@ -90,6 +156,8 @@ public class FieldReferenceDataStore {
             if (getClass() != obj.getClass())
                 return false;
             FieldReference other = (FieldReference) obj;
+            if (!declaringClass.equals(other.declaringClass))
+                return false;
             if (descriptor == null) {
                 if (other.descriptor != null)
                     return false;
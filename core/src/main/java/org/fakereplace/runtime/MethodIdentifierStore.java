@@ -17,15 +17,19 @@
 
 package org.fakereplace.runtime;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Returns a method number for a generated method. Methods with the same name
  * and descriptor are assigned the same number to make emulating virtual calls
  * easier. The redifined method can call super.REDEFINED_METHOD with the same
  * method number and if the method exists on the superclass then it is handled
- * automatically
+ * automatically.
+ * <p>
+ * Because of this the numbers are shared by all classes rather than being assigned per class. They are still
+ * dense, and looking up an existing number does not take any locks.
  *
  * @author Stuart Douglas
  */
@@ -33,23 +37,24 @@ public class MethodIdentifierStore {
 
     private static final MethodIdentifierStore INSTANCE = new MethodIdentifierStore();
 
-    private final Map<String, Map<String, Integer>> data = new HashMap<>();
+    private final ConcurrentMap<String, ConcurrentMap<String, Integer>> data = new ConcurrentHashMap<>();
 
-    private int methodNo = 0;
+    private final AtomicInteger methodNo = new AtomicInteger();
 
     private MethodIdentifierStore() {
 
     }
 
-    public synchronized int getMethodNumber(String name, String descriptor) {
-        if (!data.containsKey(name)) {
-            data.put(name, new HashMap<>());
+    public int getMethodNumber(String name, String descriptor) {
+        ConcurrentMap<String, Integer> im = data.get(name);
+        if (im == null) {
+            im = data.computeIfAbsent(name, (k) -> new ConcurrentHashMap<>());
         }
-        Map<String, Integer> im = data.get(name);
-        if (!im.containsKey(descriptor)) {
-            im.put(descriptor, methodNo++);
+        Integer ret = im.get(descriptor);
+        if (ret == null) {
+            ret = im.computeIfAbsent(descriptor, (k) -> methodNo.getAndIncrement());
         }
-        return im.get(descriptor);
+        return ret;
     }
 
     public static MethodIdentifierStore instance() {
@@ -17,129 +17,199 @@
 
 package org.fakereplace.runtime;
 
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Method;
-import java.util.Iterator;
+import java.util.Collections;
+import java.util.Map;
 import java.util.Set;
-import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.ConcurrentHashMap;
 
+import org.fakereplace.core.ClassIdentifier;
 import org.fakereplace.core.Constants;
 import org.fakereplace.core.Fakereplace;
 
+/**
+ * Runtime support for added methods that override a method in a parent class.
+ * <p>
+ * The parent method has a guard injected at the top that asks this class if the
+ * actual class of the receiver has an added override that should be run instead.
+ * Each guard is identified by a guard id that is assigned at rewrite time, and the
+ * answers are cached per receiver class in a {@link ClassValue}. The cached answers
+ * are thrown away whenever the set of delegating methods changes.
+ *
+ * @author Stuart Douglas
+ */
 public class VirtualDelegator {
 
+    private static final byte UNKNOWN = 0;
+    private static final byte DELEGATE = 1;
+    private static final byte NO_DELEGATE = 2;
+
     /**
      * stores information about which methods need to be delegated to. This data
      * is not needed to actually call the new method, as we can just look up the
      * method no from the MethodIdentifierStore
      */
-    private static final Set<VirtualDelegatorData> delegatingMethods = new CopyOnWriteArraySet<>();
+    private static final Map<ClassIdentifier, Set<String>> delegatingMethods = new ConcurrentHashMap<>();
+
+    private static final Map<String, Integer> guardIds = new ConcurrentHashMap<>();
+
+    /**
+     * The guard sites, indexed by guard id
+     */
+    private static volatile GuardSite[] guardSites = new GuardSite[0];
+
+    /**
+     * incremented every time the delegating methods change, which invalidates all cached decisions
+     */
+    private static volatile int epoch;
+
+    private static final MethodType INVOKER_TYPE = MethodType.methodType(Object.class, Object.class, int.class, Object[].class);
+
+    private static final ClassValue<DecisionTable> decisionTables = new ClassValue<DecisionTable>() {
+        @Override
+        protected DecisionTable computeValue(Class<?> type) {
+            return new DecisionTable(type);
+        }
+    };
+
+    /**
+     * Invokers for the added method delegator of a receiver class
+     */
+    private static final ClassValue<MethodHandle> invokers = new ClassValue<MethodHandle>() {
+        @Override
+        protected MethodHandle computeValue(Class<?> type) {
+            try {
+                Method method = type.getMethod(Constants.ADDED_METHOD_NAME, int.class, Object[].class);
+                method.setAccessible(true);
+                return MethodHandles.lookup().unreflect(method).asType(INVOKER_TYPE);
+            } catch (NoSuchMethodException | IllegalAccessException e) {
+                throw new RuntimeException(e);
+            }
+        }
+    };
+
+    public static synchronized void add(ClassLoader loader, String className, String methodName, String methodDesc) {
+        delegatingMethods.computeIfAbsent(new ClassIdentifier(className, loader), (k) -> Collections.newSetFromMap(new ConcurrentHashMap<>())).add(methodName + methodDesc);
+        epoch++;
+    }
+
+    public static synchronized void clear(ClassLoader classLoader, String className) {
+        if (delegatingMethods.remove(new ClassIdentifier(className, classLoader)) != null) {
+            epoch++;
+        }
+    }
 
-    public static void add(ClassLoader loader, String className, String methodName, String methodDesc) {
-        delegatingMethods.add(new VirtualDelegatorData(loader, className, methodName, methodDesc));
+    /**
+     * Returns the guard id for the guard that is injected into the given method of the given class. The
+     * id is baked into the injected bytecode.
+     */
+    public static synchronized int getGuardId(String callingClassName, String methodName, String methodDesc) {
+        final String key = callingClassName + '.' + methodName + methodDesc;
+        Integer id = guardIds.get(key);
+        if (id != null) {
+            return id;
+        }
+        GuardSite[] sites = guardSites;
+        GuardSite[] newSites = new GuardSite[sites.length + 1];
+        System.arraycopy(sites, 0, newSites, 0, sites.length);
+        newSites[sites.length] = new GuardSite(callingClassName, methodName + methodDesc);
+        guardSites = newSites;
+        guardIds.put(key, sites.length);
+        return sites.length;
     }
 
-    public static void clear(ClassLoader classLoader, String className) {
-        delegatingMethods.removeIf(i -> i.getLoader() == classLoader && className.equals(i.getClassName()));
+    public static boolean contains(Object val, int guardId) {
+        return decisionTables.get(val.getClass()).delegates(guardId);
     }
 
-    public static boolean contains(Object val, String callingClassName, String methodName, String methodDesc) {
-        if (!Fakereplace.isClassReplaceable(val.getClass().getName(), val.getClass().getClassLoader())) {
+    /**
+     * Runs the added method with the given method number on the receiver. Exceptions thrown by the added method
+     * are propagated unchanged.
+     */
+    public static Object run(Object val, int methodNumber, Object[] params) throws Throwable {
+        return invokers.get(val.getClass()).invokeExact(val, methodNumber, params);
+    }
+
+    private static boolean computeDecision(Class<?> type, int guardId) {
+        if (!Fakereplace.isClassReplaceable(type.getName(), type.getClassLoader(), type.getProtectionDomain())) {
             return false;
         }
-        Class<?> c = val.getClass();
-        while (true) {
-            if (c.getName().equals(callingClassName)) {
+        final GuardSite site = guardSites[guardId];
+        Class<?> c = type;
+        while (c != null) {
+            if (c.getName().equals(site.callingClassName)) {
                 return false;
             }
-            VirtualDelegatorData i = new VirtualDelegatorData(c.getClassLoader(), c.getName(), methodName, methodDesc);
-            if (delegatingMethods.contains(i)) {
+            Set<String> methods = delegatingMethods.get(new ClassIdentifier(c.getName(), c.getClassLoader()));
+            if (methods != null && methods.contains(site.method)) {
                 return true;
             }
             c = c.getSuperclass();
         }
+        return false;
     }
 
-    public static Object run(Object val, String methodName, String methodDesc, Object[] params) {
-        try {
-            Method meth = val.getClass().getMethod(Constants.ADDED_METHOD_NAME, int.class, Object[].class);
-            int methodIdentifier = MethodIdentifierStore.instance().getMethodNumber(methodName, methodDesc);
-            return meth.invoke(val, methodIdentifier, params);
-        } catch (Exception e) {
-            throw new RuntimeException(e);
-        }
-    }
-
-    private static class VirtualDelegatorData {
-        private final ClassLoader loader;
-        private final String className;
-        private final String methodName;
-        private final String methodDesc;
+    private static final class GuardSite {
+        private final String callingClassName;
+        private final String method;
 
-        public ClassLoader getLoader() {
-            return loader;
-        }
-
-        public String getClassName() {
-            return className;
+        private GuardSite(String callingClassName, String method) {
+            this.callingClassName = callingClassName;
+            this.method = method;
         }
+    }
 
-        public String getMethodName() {
-            return methodName;
-        }
+    /**
+     * The cached decisions for a single receiver class. The decisions are only valid for the epoch they were
+     * computed in.
+     */
+    private static final class DecisionTable {
+        private final Class<?> type;
+        private volatile Decisions decisions = new Decisions(-1, new byte[0]);
 
-        public String getMethodDesc() {
-            return methodDesc;
+        private DecisionTable(Class<?> type) {
+            this.type = type;
         }
 
-        public VirtualDelegatorData(ClassLoader loader, String className, String methodName, String methodDesc) {
-            super();
-            this.loader = loader;
-            this.className = className;
-            this.methodName = methodName;
-            this.methodDesc = methodDesc;
+        boolean delegates(int guardId) {
+            Decisions d = decisions;
+            if (d.epoch == epoch && guardId < d.values.length) {
+                byte value = d.values[guardId];
+                if (value != UNKNOWN) {
+                    return value == DELEGATE;
+                }
+            }
+            return compute(guardId);
         }
 
-        @Override
-        public int hashCode() {
-            final int prime = 31;
-            int result = 1;
-            result = prime * result + ((className == null) ? 0 : className.hashCode());
-            result = prime * result + ((methodDesc == null) ? 0 : methodDesc.hashCode());
-            result = prime * result + ((methodName == null) ? 0 : methodName.hashCode());
+        private boolean compute(int guardId) {
+            //read the epoch first, if it changes while we are computing the decision we will just recompute it next time
+            final int currentEpoch = epoch;
+            Decisions d = decisions;
+            if (d.epoch != currentEpoch || guardId >= d.values.length) {
+                byte[] values = new byte[guardSites.length];
+                if (d.epoch == currentEpoch) {
+                    System.arraycopy(d.values, 0, values, 0, d.values.length);
+                }
+                d = new Decisions(currentEpoch, values);
+            }
+            boolean result = computeDecision(type, guardId);
+            d.values[guardId] = result ? DELEGATE : NO_DELEGATE;
+            decisions = d;
             return result;
         }
+    }
 
-        @Override
-        public boolean equals(Object obj) {
-            if (this == obj)
-                return true;
-            if (obj == null)
-                return false;
-            if (getClass() != obj.getClass())
-                return false;
-            VirtualDelegatorData other = (VirtualDelegatorData) obj;
-            if (className == null) {
-                if (other.className != null)
-                    return false;
-            } else if (!className.equals(other.className))
-                return false;
-            if (loader == null) {
-                if (other.loader != null)
-                    return false;
-            } else if (!loader.equals(other.loader))
-                return false;
-            if (methodDesc == null) {
-                if (other.methodDesc != null)
-                    return false;
-            } else if (!methodDesc.equals(other.methodDesc))
-                return false;
-            if (methodName == null) {
-                if (other.methodName != null)
-                    return false;
-            } else if (!methodName.equals(other.methodName))
-                return false;
-            return true;
-        }
+    private static final class Decisions {
+        private final int epoch;
+        private final byte[] values;
 
+        private Decisions(int epoch, byte[] values) {
+            this.epoch = epoch;
+            this.values = values;
+        }
     }
 }
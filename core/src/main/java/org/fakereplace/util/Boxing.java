@@ -18,6 +18,7 @@
 package org.fakereplace.util;
 
 import javassist.bytecode.Bytecode;
+import javassist.bytecode.Opcode;
 
 /**
  * This class is responsible for generating bytecode fragments to box/unbox
@@ -166,4 +167,43 @@ public class Boxing {
         return bc;
     }
 
+    /**
+     * Converts the primitive value on top of the stack to the long representation used for added primitive fields
+     * and the registers of the typed delegators. The zero value is the default for every type.
+     */
+    public static void toBits(Bytecode b, char type) {
+        switch (type) {
+            case 'J':
+                break;
+            case 'F':
+                b.addInvokestatic("java.lang.Float", "floatToRawIntBits", "(F)I");
+                b.add(Opcode.I2L);
+                break;
+            case 'D':
+                b.addInvokestatic("java.lang.Double", "doubleToRawLongBits", "(D)J");
+                break;
+            default:
+                b.add(Opcode.I2L);
+        }
+    }
+
+    /**
+     * Converts a long back to the given primitive type
+     */
+    public static void fromBits(Bytecode b, char type) {
+        switch (type) {
+            case 'J':
+                break;
+            case 'F':
+                b.add(Opcode.L2I);
+                b.addInvokestatic("java.lang.Float", "intBitsToFloat", "(I)F");
+                break;
+            case 'D':
+                b.addInvokestatic("java.lang.Double", "longBitsToDouble", "(J)D");
+                break;
+            default:
+                b.add(Opcode.L2I);
+        }
+    }
+
 }
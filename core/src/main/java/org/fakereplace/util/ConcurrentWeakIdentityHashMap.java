@@ -0,0 +1,139 @@
+/*
+ * Copyright 2016, Stuart Douglas, and individual contributors as indicated
+ * by the @authors tag.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.fakereplace.util;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * A concurrent map that holds its keys weakly and compares them by identity. Locking is striped by the
+ * underlying {@link ConcurrentHashMap}, and cleared keys are expunged on write.
+ * <p>
+ * Note that the JDK does not provide ephemerons, so a value that strongly references its key will keep the
+ * entry alive.
+ * <p>
+ * Lookups allocate a small key that wraps the object being looked up, as {@link ConcurrentHashMap} can only compare
+ * keys through {@link Object#equals(Object)}. It does not escape the lookup, so it is usually cheaper than the lock
+ * of a synchronized map.
+ */
+public class ConcurrentWeakIdentityHashMap<K, V> {
+
+    private final ConcurrentHashMap<IdentityKey, V> map = new ConcurrentHashMap<>();
+
+    private final ReferenceQueue<Object> queue = new ReferenceQueue<>();
+
+    public V get(K key) {
+        return map.get(new LookupKey(key));
+    }
+
+    public V computeIfAbsent(K key, Function<? super K, ? extends V> mappingFunction) {
+        V existing = map.get(new LookupKey(key));
+        if (existing != null) {
+            return existing;
+        }
+        expungeStaleEntries();
+        return map.computeIfAbsent(new WeakKey(key, queue), (k) -> mappingFunction.apply(key));
+    }
+
+    public V put(K key, V value) {
+        expungeStaleEntries();
+        return map.put(new WeakKey(key, queue), value);
+    }
+
+    public V remove(K key) {
+        expungeStaleEntries();
+        return map.remove(new LookupKey(key));
+    }
+
+    public int size() {
+        expungeStaleEntries();
+        return map.size();
+    }
+
+    private void expungeStaleEntries() {
+        Reference<?> ref;
+        while ((ref = queue.poll()) != null) {
+            map.remove(ref);
+        }
+    }
+
+    private interface IdentityKey {
+        Object referent();
+    }
+
+    private static boolean keyEquals(IdentityKey key, Object other) {
+        if (key == other) {
+            return true;
+        }
+        if (!(other instanceof IdentityKey)) {
+            return false;
+        }
+        Object referent = key.referent();
+        return referent != null && referent == ((IdentityKey) other).referent();
+    }
+
+    private static final class WeakKey extends WeakReference<Object> implements IdentityKey {
+        private final int hash;
+
+        WeakKey(Object referent, ReferenceQueue<Object> queue) {
+            super(referent, queue);
+            this.hash = System.identityHashCode(referent);
+        }
+
+        @Override
+        public Object referent() {
+            return get();
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            return keyEquals(this, obj);
+        }
+    }
+
+    private static final class LookupKey implements IdentityKey {
+        private final Object referent;
+
+        LookupKey(Object referent) {
+            this.referent = referent;
+        }
+
+        @Override
+        public Object referent() {
+            return referent;
+        }
+
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(referent);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            return keyEquals(this, obj);
+        }
+    }
+}
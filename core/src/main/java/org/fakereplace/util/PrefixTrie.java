@@ -0,0 +1,114 @@
+/*
+ * Copyright 2016, Stuart Douglas, and individual contributors as indicated
+ * by the @authors tag.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.fakereplace.util;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Immutable trie of class name prefixes. Package separators are normalised, so <code>java.lang</code> and
+ * <code>java/lang</code> are the same prefix, and a lookup walks the class name once without allocating.
+ */
+public final class PrefixTrie {
+
+    private static final char[] NO_KEYS = new char[0];
+    private static final Node[] NO_CHILDREN = new Node[0];
+
+    private final Node root;
+
+    public PrefixTrie(String... prefixes) {
+        Builder builder = new Builder();
+        for (String prefix : prefixes) {
+            if (prefix != null && !prefix.isEmpty()) {
+                builder.add(prefix);
+            }
+        }
+        this.root = builder.build();
+    }
+
+    /**
+     * @return <code>true</code> if the name starts with any of the prefixes in this trie
+     */
+    public boolean matches(CharSequence name) {
+        if (name == null) {
+            return false;
+        }
+        Node node = root;
+        final int length = name.length();
+        for (int i = 0; i < length; ++i) {
+            node = node.child(normalise(name.charAt(i)));
+            if (node == null) {
+                return false;
+            }
+            if (node.terminal) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static char normalise(char c) {
+        return c == '.' ? '/' : c;
+    }
+
+    private static final class Node {
+        private final char[] keys;
+        private final Node[] children;
+        private final boolean terminal;
+
+        Node(char[] keys, Node[] children, boolean terminal) {
+            this.keys = keys;
+            this.children = children;
+            this.terminal = terminal;
+        }
+
+        Node child(char c) {
+            int index = Arrays.binarySearch(keys, c);
+            return index < 0 ? null : children[index];
+        }
+    }
+
+    private static final class Builder {
+        private final Map<Character, Builder> children = new TreeMap<>();
+        private boolean terminal;
+
+        void add(String prefix) {
+            Builder current = this;
+            for (int i = 0; i < prefix.length(); ++i) {
+                current = current.children.computeIfAbsent(normalise(prefix.charAt(i)), (c) -> new Builder());
+            }
+            current.terminal = true;
+        }
+
+        Node build() {
+            if (terminal || children.isEmpty()) {
+                //anything below a terminal node can never be reached
+                return new Node(NO_KEYS, NO_CHILDREN, terminal);
+            }
+            char[] keys = new char[children.size()];
+            Node[] nodes = new Node[children.size()];
+            int i = 0;
+            for (Map.Entry<Character, Builder> entry : children.entrySet()) {
+                keys[i] = entry.getKey();
+                nodes[i++] = entry.getValue().build();
+            }
+            return new Node(keys, nodes, false);
+        }
+    }
+}
@@ -0,0 +1,76 @@
+/*
+ * Copyright 2016, Stuart Douglas, and individual contributors as indicated
+ * by the @authors tag.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package a.org.fakereplace.test.classfileevents;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.fakereplace.Extension;
+
+/**
+ * Records the batches of replaceable class file events it is given. Delivery blocks on {@link BlockingEventClass}
+ * until the test releases it, so events queue up behind it.
+ */
+public class BatchingExtension implements Extension {
+
+    /**
+     * Not a class literal, as loading it through the application class loader would block delivery too early
+     */
+    static final String BLOCKING_CLASS = "a.org.fakereplace.test.classfileevents.BlockingEventClass";
+
+    static final List<Batch> batches = Collections.synchronizedList(new ArrayList<>());
+
+    static final CountDownLatch blocked = new CountDownLatch(1);
+
+    static final CountDownLatch release = new CountDownLatch(1);
+
+    @Override
+    public boolean isReplaceableClassFileLoadedEnabled() {
+        return true;
+    }
+
+    @Override
+    public void replaceableClassFilesLoaded(List<String> classNames, ClassLoader classLoader) {
+        final List<String> names = new ArrayList<>();
+        for (String className : classNames) {
+            names.add(className.replace('/', '.'));
+        }
+        batches.add(new Batch(names, classLoader));
+        if (names.contains(BLOCKING_CLASS)) {
+            blocked.countDown();
+            try {
+                release.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            }
+        }
+    }
+
+    static final class Batch {
+        final List<String> classNames;
+        final ClassLoader classLoader;
+
+        Batch(List<String> classNames, ClassLoader classLoader) {
+            this.classNames = classNames;
+            this.classLoader = classLoader;
+        }
+    }
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright 2016, Stuart Douglas, and individual contributors as indicated
+ * by the @authors tag.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package a.org.fakereplace.test.classfileevents;
+
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests that replaceable class file events are delivered to extensions in batches grouped by class loader, unless the
+ * extension asks for them while the class is being loaded
+ */
+public class ClassFileEventsTest {
+
+    @Test
+    public void testClassFileEvents() throws Exception {
+        final URL[] classes = {EventClass.class.getProtectionDomain().getCodeSource().getLocation()};
+        final ClassLoader first = new URLClassLoader(classes, null);
+        final ClassLoader second = new URLClassLoader(classes, null);
+        try {
+            first.loadClass(BatchingExtension.BLOCKING_CLASS);
+            Assert.assertTrue(BatchingExtension.blocked.await(10, TimeUnit.SECONDS));
+
+            first.loadClass(EventClass.class.getName());
+            first.loadClass(OtherEventClass.class.getName());
+            second.loadClass(EventClass.class.getName());
+
+            //synchronous extensions are told straight away, on the loading thread
+            Assert.assertSame(Thread.currentThread(), SynchronousExtension.loaded.get(EventClass.class.getName()));
+            Assert.assertSame(Thread.currentThread(), SynchronousExtension.loaded.get(OtherEventClass.class.getName()));
+            Assert.assertTrue(classNames(first).isEmpty());
+        } finally {
+            BatchingExtension.release.countDown();
+        }
+        for (int i = 0; i < 100 && (classNames(first).isEmpty() || classNames(second).isEmpty()); ++i) {
+            Thread.sleep(100);
+        }
+        //the events that queued up while the extension was busy are delivered as one batch per loader
+        Assert.assertEquals(Collections.singletonList(Arrays.asList(EventClass.class.getName(), OtherEventClass.class.getName())), classNames(first));
+        Assert.assertEquals(Collections.singletonList(Collections.singletonList(EventClass.class.getName())), classNames(second));
+    }
+
+    /**
+     * @return the batches delivered for the given loader, apart from the one that blocked delivery
+     */
+    private static List<List<String>> classNames(ClassLoader loader) {
+        final List<List<String>> result = new ArrayList<>();
+        synchronized (BatchingExtension.batches) {
+            for (BatchingExtension.Batch batch : BatchingExtension.batches) {
+                if (batch.classLoader == loader && !batch.classNames.contains(BatchingExtension.BLOCKING_CLASS)) {
+                    result.add(batch.classNames);
+                }
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,51 @@
+/*
+ * Copyright 2016, Stuart Douglas, and individual contributors as indicated
+ * by the @authors tag.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package a.org.fakereplace.test.integration;
+
+import java.net.URL;
+import java.net.URLClassLoader;
+
+import org.fakereplace.core.ClassLookupManager;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests that integration classes are only served to the class loaders that enabled the integration, and that their
+ * bytes are only read once
+ */
+public class IntegrationClassTest {
+
+    @Test
+    public void testIntegrationClassBytesAreShared() throws Exception {
+        final URL[] classes = {IntegrationClassTest.class.getProtectionDomain().getCodeSource().getLocation()};
+        final ClassLoader first = new URLClassLoader(classes, null);
+        final ClassLoader second = new URLClassLoader(classes, null);
+        final ClassLoader other = new URLClassLoader(classes, null);
+        //the trigger is not referenced as a class literal, as that would enable the integration for this loader
+        first.loadClass(TestIntegrationExtension.TRIGGER);
+        second.loadClass(TestIntegrationExtension.TRIGGER);
+
+        final byte[] bytes = ClassLookupManager.getClassData(TestIntegrationExtension.AWARE, first);
+        Assert.assertNotNull(bytes);
+        Assert.assertSame(bytes, ClassLookupManager.getClassData(TestIntegrationExtension.AWARE, first));
+        Assert.assertSame(bytes, ClassLookupManager.getClassData(TestIntegrationExtension.AWARE, second));
+        Assert.assertNull(ClassLookupManager.getClassData(TestIntegrationExtension.AWARE, other));
+
+        Assert.assertSame(first, first.loadClass(TestIntegrationExtension.AWARE).getClassLoader());
+    }
+}
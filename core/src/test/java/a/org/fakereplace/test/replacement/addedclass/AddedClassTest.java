@@ -17,6 +17,7 @@
 
 package a.org.fakereplace.test.replacement.addedclass;
 
+import org.fakereplace.core.ClassLookupManager;
 import org.junit.Assert;
 import org.junit.Test;
 import a.org.fakereplace.test.util.ClassReplacer;
@@ -33,5 +34,7 @@ public class AddedClassTest {
         ReplacedClass c = new ReplacedClass();
         Assert.assertEquals("hello Bob", c.getValue());
 
+        // the class is defined, so its bytes are no longer retained
+        Assert.assertEquals(0, ClassLookupManager.getClassData("a.org.fakereplace.test.replacement.addedclass.AddedClass", ReplacedClass.class.getClassLoader()).length);
     }
 }
@@ -0,0 +1,57 @@
+/*
+ * Copyright 2016, Stuart Douglas, and individual contributors as indicated
+ * by the @authors tag.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package a.org.fakereplace.test.replacement.addedclass;
+
+import org.fakereplace.core.ClassLookupManager;
+import org.junit.Assert;
+import org.junit.Test;
+import a.org.fakereplace.test.util.ClassReplacer;
+
+/**
+ * Tests that an added class that is never loaded stops counting as pending once its class loader is collected, and
+ * that classes added after that are still served to instrumented class loaders
+ */
+public class PendingClassTest {
+
+    @Test
+    public void testPendingClasses() throws InterruptedException {
+        final int pending = ClassLookupManager.pendingClasses;
+        ClassLoader loader = new ClassLoader(getClass().getClassLoader()) {
+        };
+        ClassLookupManager.addClassInfo("a.org.fakereplace.test.replacement.addedclass.NeverLoadedClass", loader, new byte[]{1});
+        Assert.assertEquals(pending + 1, ClassLookupManager.pendingClasses);
+
+        loader = null;
+        for (int i = 0; i < 50 && ClassLookupManager.pendingClasses != pending; ++i) {
+            System.gc();
+            Thread.sleep(10);
+            //collected loaders are noticed on the next lookup
+            ClassLookupManager.getClassData("a.org.fakereplace.test.replacement.addedclass.NeverLoadedClass", getClass().getClassLoader());
+        }
+        Assert.assertEquals(pending, ClassLookupManager.pendingClasses);
+
+        ClassReplacer r = new ClassReplacer();
+        r.queueClassForReplacement(PendingReplacedClass.class, PendingReplacedClass1.class);
+        r.addNewClass(PendingAddedClass1.class, "a.org.fakereplace.test.replacement.addedclass.PendingAddedClass");
+        r.replaceQueuedClasses();
+        Assert.assertEquals(pending + 1, ClassLookupManager.pendingClasses);
+
+        Assert.assertEquals("added", new PendingReplacedClass().getValue());
+        Assert.assertEquals(pending, ClassLookupManager.pendingClasses);
+    }
+}
@@ -26,6 +26,9 @@ import a.org.fakereplace.test.util.ClassReplacer;
 
 public class AnnotatedClassTest {
 
+    @AnnotationArrayA({@StringA("1"), @StringA("2")})
+    private static int annotationArrayValue;
+
     @Test
     public void testStringA() throws SecurityException, NoSuchMethodException, IllegalArgumentException, IllegalAccessException, InvocationTargetException, NoSuchFieldException {
         ClassReplacer rep = new ClassReplacer();
@@ -96,5 +99,11 @@ public class AnnotatedClassTest {
         Assert.assertEquals("1", ar[0].value());
         Assert.assertEquals("2", ar[1].value());
 
+        AnnotationArrayA expected = AnnotatedClassTest.class.getDeclaredField("annotationArrayValue").getAnnotation(AnnotationArrayA.class);
+        AnnotationArrayA replaced = field.getAnnotation(AnnotationArrayA.class);
+        Assert.assertEquals(expected, replaced);
+        Assert.assertEquals(replaced, expected);
+        Assert.assertEquals(expected.hashCode(), replaced.hashCode());
+        Assert.assertEquals(AnnotationArrayA.class, replaced.annotationType());
     }
 }
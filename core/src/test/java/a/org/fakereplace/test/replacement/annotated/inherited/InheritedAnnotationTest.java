@@ -83,4 +83,22 @@ public class InheritedAnnotationTest {
         Assert.assertEquals(0, RemovedInheritedChild.class.getDeclaredAnnotations().length);
     }
 
+    /**
+     * test that annotations already looked up on a subclass are updated when the superclass is replaced
+     */
+    @Test
+    public void testInheritedAnnotationChangedAfterLookup() {
+        Assert.assertFalse(CachedInheritedChild.class.isAnnotationPresent(InheritedAnnotation.class));
+        Assert.assertEquals(0, CachedInheritedChild.class.getAnnotations().length);
+
+        ClassReplacer r = new ClassReplacer();
+        r.queueClassForReplacement(CachedInheritedSuperClass.class, CachedInheritedSuperClass1.class);
+        r.replaceQueuedClasses();
+
+        Assert.assertTrue(CachedInheritedChild.class.isAnnotationPresent(InheritedAnnotation.class));
+        Assert.assertEquals(30, CachedInheritedChild.class.getAnnotation(InheritedAnnotation.class).value());
+        Assert.assertEquals(1, CachedInheritedChild.class.getAnnotations().length);
+        Assert.assertEquals(0, CachedInheritedChild.class.getDeclaredAnnotations().length);
+    }
+
 }
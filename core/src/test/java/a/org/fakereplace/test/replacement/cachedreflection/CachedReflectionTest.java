@@ -0,0 +1,91 @@
+/*
+ * Copyright 2016, Stuart Douglas, and individual contributors as indicated
+ * by the @authors tag.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package a.org.fakereplace.test.replacement.cachedreflection;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+
+import org.junit.Assert;
+import org.junit.Test;
+import a.org.fakereplace.test.util.ClassReplacer;
+
+public class CachedReflectionTest {
+
+    @Test
+    public void testCachedMembersAreUpdatedOnReplacement() throws Exception {
+        Assert.assertNull(findMethod(CachedReflectionClass.class.getDeclaredMethods(), "addedMethod"));
+        Assert.assertNull(findMethod(CachedReflectionClass.class.getMethods(), "addedMethod"));
+        Assert.assertNull(findField(CachedReflectionClass.class.getDeclaredFields(), "addedField"));
+        Assert.assertNull(findField(CachedReflectionClass.class.getFields(), "addedField"));
+
+        ClassReplacer r = new ClassReplacer();
+        r.queueClassForReplacement(CachedReflectionClass.class, CachedReflectionClass1.class);
+        r.replaceQueuedClasses();
+
+        //ask twice, so the second lookup comes from the cache
+        for (int i = 0; i < 2; ++i) {
+            Method added = findMethod(CachedReflectionClass.class.getDeclaredMethods(), "addedMethod");
+            Assert.assertNotNull(added);
+            Assert.assertEquals("added", added.invoke(new CachedReflectionClass()));
+            Assert.assertNotNull(findMethod(CachedReflectionClass.class.getMethods(), "addedMethod"));
+            Assert.assertNotNull(findMethod(CachedReflectionClass.class.getDeclaredMethods(), "method"));
+            Assert.assertNotNull(findField(CachedReflectionClass.class.getDeclaredFields(), "addedField"));
+            Assert.assertNotNull(findField(CachedReflectionClass.class.getFields(), "addedField"));
+            Assert.assertEquals(1, count(CachedReflectionClass.class.getDeclaredFields(), "field"));
+        }
+    }
+
+    @Test
+    public void testCachedMembersAreCopies() throws Exception {
+        Method[] first = CachedReflectionClass.class.getDeclaredMethods();
+        Method[] second = CachedReflectionClass.class.getDeclaredMethods();
+        Assert.assertNotSame(first, second);
+        Method hidden = findMethod(first, "hiddenMethod");
+        hidden.setAccessible(true);
+        Assert.assertFalse(findMethod(second, "hiddenMethod").isAccessible());
+        Assert.assertFalse(findMethod(CachedReflectionClass.class.getDeclaredMethods(), "hiddenMethod").isAccessible());
+    }
+
+    private static Method findMethod(Method[] methods, String name) {
+        for (Method method : methods) {
+            if (method.getName().equals(name)) {
+                return method;
+            }
+        }
+        return null;
+    }
+
+    private static Field findField(Field[] fields, String name) {
+        for (Field field : fields) {
+            if (field.getName().equals(name)) {
+                return field;
+            }
+        }
+        return null;
+    }
+
+    private static int count(Field[] fields, String name) {
+        int count = 0;
+        for (Field field : fields) {
+            if (field.getName().equals(name)) {
+                count++;
+            }
+        }
+        return count;
+    }
+}
@@ -0,0 +1,53 @@
+/*
+ * Copyright 2016, Stuart Douglas, and individual contributors as indicated
+ * by the @authors tag.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package a.org.fakereplace.test.replacement.callerclass;
+
+import org.fakereplace.util.NoInstrument;
+
+@NoInstrument
+public class CallerClass1 {
+
+    private String secretField = "field";
+
+    public CallerClass1() {
+    }
+
+    private CallerClass1(String value) {
+        secretField = value;
+    }
+
+    public String invokeOwnMethod() throws Exception {
+        return (String) getClass().getDeclaredMethod("secret").invoke(this);
+    }
+
+    public String readOwnField() throws Exception {
+        return (String) getClass().getDeclaredField("secretField").get(this);
+    }
+
+    public Object createOwnInstance() throws Exception {
+        return getClass().getDeclaredConstructor(String.class).newInstance("constructor");
+    }
+
+    private String secret() {
+        return "method";
+    }
+
+    String packageSecret() {
+        return "package";
+    }
+}
@@ -0,0 +1,83 @@
+/*
+ * Copyright 2016, Stuart Douglas, and individual contributors as indicated
+ * by the @authors tag.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package a.org.fakereplace.test.replacement.callerclass;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import a.org.fakereplace.test.replacement.callerclass.other.OtherPackageCaller;
+import a.org.fakereplace.test.util.ClassReplacer;
+
+/**
+ * Tests that the reflection shims check access to added members against the class that actually made the call
+ */
+public class CallerClassTest {
+
+    @BeforeClass
+    public static void setup() {
+        ClassReplacer rep = new ClassReplacer();
+        rep.queueClassForReplacement(CallerClass.class, CallerClass1.class);
+        rep.replaceQueuedClasses();
+    }
+
+    @Test
+    public void testDeclaringClassCanAccessPrivateMembers() throws Exception {
+        CallerClass instance = new CallerClass();
+        Assert.assertEquals("method", instance.invokeOwnMethod());
+        Assert.assertEquals("field", instance.readOwnField());
+        Object created = instance.createOwnInstance();
+        Assert.assertEquals("constructor", ((CallerClass) created).readOwnField());
+    }
+
+    @Test
+    public void testOtherClassCanNotAccessPrivateMembers() throws Exception {
+        CallerClass instance = new CallerClass();
+        Method method = CallerClass.class.getDeclaredMethod("secret");
+        try {
+            method.invoke(instance);
+            Assert.fail();
+        } catch (IllegalAccessException expected) {
+        }
+        Field field = CallerClass.class.getDeclaredField("secretField");
+        try {
+            field.get(instance);
+            Assert.fail();
+        } catch (IllegalAccessException expected) {
+        }
+        try {
+            CallerClass.class.getDeclaredConstructor(String.class).newInstance("constructor");
+            Assert.fail();
+        } catch (IllegalAccessException expected) {
+        }
+    }
+
+    @Test
+    public void testPackageAccessDependsOnCaller() throws Exception {
+        CallerClass instance = new CallerClass();
+        Method method = CallerClass.class.getDeclaredMethod("packageSecret");
+        Assert.assertEquals("package", method.invoke(instance));
+        try {
+            OtherPackageCaller.invoke(method, instance);
+            Assert.fail();
+        } catch (IllegalAccessException expected) {
+        }
+    }
+}
@@ -0,0 +1,30 @@
+/*
+ * Copyright 2016, Stuart Douglas, and individual contributors as indicated
+ * by the @authors tag.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package a.org.fakereplace.test.replacement.callerclass.other;
+
+import java.lang.reflect.Method;
+
+/**
+ * Makes reflective calls from outside the package of the class that is being called
+ */
+public class OtherPackageCaller {
+
+    public static Object invoke(Method method, Object instance) throws Exception {
+        return method.invoke(instance);
+    }
+}
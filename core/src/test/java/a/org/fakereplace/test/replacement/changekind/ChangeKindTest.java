@@ -0,0 +1,58 @@
+/*
+ * Copyright 2016, Stuart Douglas, and individual contributors as indicated
+ * by the @authors tag.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package a.org.fakereplace.test.replacement.changekind;
+
+import java.lang.reflect.Method;
+
+import org.junit.Assert;
+import org.junit.Test;
+import a.org.fakereplace.test.util.ClassReplacer;
+
+/**
+ * Tests replacing a class with the same version again, and with a version that only changes method bodies
+ */
+public class ChangeKindTest {
+
+    @Test
+    public void testUnchangedAndBodyOnlyReplacement() throws Exception {
+        replace(ChangeKindClass1.class);
+        assertVersion(2, "first");
+
+        replace(ChangeKindClass1.class);
+        assertVersion(2, "first");
+
+        replace(ChangeKindClass2.class);
+        assertVersion(3, "second");
+    }
+
+    private static void replace(Class<?> replacement) {
+        ClassReplacer r = new ClassReplacer();
+        r.queueClassForReplacement(ChangeKindClass.class, replacement);
+        r.replaceQueuedClasses();
+    }
+
+    private static void assertVersion(int value, String added) throws Exception {
+        ChangeKindClass instance = new ChangeKindClass();
+        Assert.assertEquals(value, instance.value());
+        Method method = ChangeKindClass.class.getMethod("added");
+        Assert.assertEquals(added, method.invoke(instance));
+        Assert.assertEquals("added", method.getAnnotation(ChangeKindAnnotation.class).value());
+        Assert.assertEquals("method", ChangeKindClass.class.getMethod("value").getAnnotation(ChangeKindAnnotation.class).value());
+        Assert.assertEquals("class", ChangeKindClass.class.getAnnotation(ChangeKindAnnotation.class).value());
+    }
+}
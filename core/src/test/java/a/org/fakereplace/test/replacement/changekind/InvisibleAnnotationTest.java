@@ -0,0 +1,83 @@
+/*
+ * Copyright 2016, Stuart Douglas, and individual contributors as indicated
+ * by the @authors tag.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package a.org.fakereplace.test.replacement.changekind;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.fakereplace.api.ChangedClass;
+import org.fakereplace.api.ClassChangeAware;
+import org.fakereplace.api.NewClassData;
+import org.fakereplace.core.Fakereplace;
+import org.fakereplace.replacement.ClassChangeKind;
+import org.fakereplace.replacement.notification.ChangedClassImpl;
+import org.junit.Assert;
+import org.junit.Test;
+import a.org.fakereplace.test.util.ClassReplacer;
+
+/**
+ * Tests that a change to an annotation that is only retained in the class file is treated as a structural change
+ */
+public class InvisibleAnnotationTest {
+
+    @Test
+    public void testInvisibleMemberAnnotationChange() {
+        final KindAware aware = new KindAware();
+        Fakereplace.addClassChangeAware(aware);
+        try {
+            replace(InvisibleAnnotationClass1.class);
+            Assert.assertEquals(ClassChangeKind.STRUCTURAL, aware.last());
+
+            replace(InvisibleAnnotationClass2.class);
+            Assert.assertEquals("method annotation", ClassChangeKind.STRUCTURAL, aware.last());
+
+            replace(InvisibleAnnotationClass3.class);
+            Assert.assertEquals("field annotation", ClassChangeKind.STRUCTURAL, aware.last());
+
+            replace(InvisibleAnnotationClass4.class);
+            Assert.assertEquals("parameter annotation", ClassChangeKind.STRUCTURAL, aware.last());
+            Assert.assertEquals(4, aware.kinds.size());
+            Assert.assertEquals(1, new InvisibleAnnotationClass().value(1));
+        } finally {
+            Fakereplace.removeClassChangeAware(aware);
+        }
+    }
+
+    private static void replace(Class<?> replacement) {
+        ClassReplacer r = new ClassReplacer();
+        r.queueClassForReplacement(InvisibleAnnotationClass.class, replacement);
+        r.replaceQueuedClasses();
+    }
+
+    public static class KindAware implements ClassChangeAware {
+
+        final List<ClassChangeKind> kinds = new CopyOnWriteArrayList<>();
+
+        @Override
+        public void afterChange(List<ChangedClass> changed, List<NewClassData> added) {
+            for (ChangedClass c : changed) {
+                if (c.getChangedClass() == InvisibleAnnotationClass.class) {
+                    kinds.add(((ChangedClassImpl) c).getChangeKind());
+                }
+            }
+        }
+
+        ClassChangeKind last() {
+            return kinds.isEmpty() ? null : kinds.get(kinds.size() - 1);
+        }
+    }
+}
@@ -0,0 +1,83 @@
+/*
+ * Copyright 2016, Stuart Douglas, and individual contributors as indicated
+ * by the @authors tag.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package a.org.fakereplace.test.replacement.changekind;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import org.fakereplace.api.ChangedClass;
+import org.fakereplace.api.ClassChangeAware;
+import org.fakereplace.api.NewClassData;
+import org.fakereplace.core.Fakereplace;
+import org.fakereplace.core.ReplacementTimeline;
+import org.junit.Assert;
+import org.junit.Test;
+import a.org.fakereplace.test.util.ClassReplacer;
+
+/**
+ * Tests that a body only change, which runs the integration straight away, does not race with the integration timer
+ * when a ClassChangeAware takes longer than the timer delay
+ */
+public class SlowIntegrationTest {
+
+    @Test
+    public void testBodyOnlyChangeWithSlowIntegration() {
+        final SlowAware aware = new SlowAware();
+        Fakereplace.addClassChangeAware(aware);
+        try {
+            replace(SlowIntegrationClass1.class);
+            Assert.assertEquals(2, new SlowIntegrationClass().value());
+            Assert.assertEquals(1, aware.count.get());
+
+            replace(SlowIntegrationClass2.class);
+            Assert.assertEquals(3, new SlowIntegrationClass().value());
+            Assert.assertEquals(2, aware.count.get());
+
+            //the timer must not have closed the cycle while the aware was still running
+            final List<ReplacementTimeline.Cycle> cycles = ReplacementTimeline.getCycles();
+            final List<String> stages = cycles.get(cycles.size() - 1).getStages().stream().map(ReplacementTimeline.Stage::getName).collect(Collectors.toList());
+            Assert.assertTrue(stages.toString(), stages.contains("redefinition started"));
+            Assert.assertTrue(stages.toString(), stages.contains(SlowAware.class.getName() + " notified"));
+        } finally {
+            Fakereplace.removeClassChangeAware(aware);
+        }
+    }
+
+    private static void replace(Class<?> replacement) {
+        ClassReplacer r = new ClassReplacer();
+        r.queueClassForReplacement(SlowIntegrationClass.class, replacement);
+        r.replaceQueuedClasses();
+    }
+
+    public static class SlowAware implements ClassChangeAware {
+
+        final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public void afterChange(List<ChangedClass> changed, List<NewClassData> added) {
+            try {
+                //longer than the 300ms integration timer
+                Thread.sleep(800);
+            } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            }
+            count.incrementAndGet();
+        }
+    }
+}
@@ -0,0 +1,61 @@
+/*
+ * Copyright 2016, Stuart Douglas, and individual contributors as indicated
+ * by the @authors tag.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package a.org.fakereplace.test.replacement.instancefield;
+
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import a.org.fakereplace.test.util.ClassReplacer;
+
+public class InheritedFieldTest {
+
+    @BeforeClass
+    public static void setup() {
+        ClassReplacer rep = new ClassReplacer();
+        rep.queueClassForReplacement(FieldParent.class, FieldParent1.class);
+        rep.queueClassForReplacement(FieldChild.class, FieldChild1.class);
+        rep.queueClassForReplacement(SubclassReader.class, SubclassReader1.class);
+        rep.replaceQueuedClasses();
+    }
+
+    @Test
+    public void testAddedFieldAccessedThroughSubclass() {
+        FieldChild child = new FieldChild();
+        SubclassReader reader = new SubclassReader();
+        reader.write(child, "hello");
+        Assert.assertEquals("hello", child.getInherited());
+        child.setInherited("world");
+        Assert.assertEquals("world", reader.read(child));
+    }
+
+    @Test
+    public void testAddedFieldShadowedBySubclass() {
+        FieldChild child = new FieldChild();
+        child.setParentShadowed(1);
+        child.setChildShadowed(2);
+        Assert.assertEquals(1, child.getParentShadowed());
+        Assert.assertEquals(2, child.getChildShadowed());
+    }
+
+    @Test
+    public void testRealFieldAccessedThroughSubclass() {
+        FieldChild child = new FieldChild();
+        child.realField = "changed";
+        Assert.assertEquals("changed", new SubclassReader().readReal(child));
+    }
+}
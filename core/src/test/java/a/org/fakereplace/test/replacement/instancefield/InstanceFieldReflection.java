@@ -32,6 +32,14 @@ public class InstanceFieldReflection {
         return 0;
     }
 
+    public short getShortValue() {
+        return 0;
+    }
+
+    public double getDoubleValue() {
+        return 0;
+    }
+
     public int getPrivateField() {
         return 0;
     }
@@ -25,6 +25,10 @@ public class InstanceFieldReflection1 {
 
     int intValue = 0;
 
+    short shortValue = 0;
+
+    double doubleValue = 0;
+
     public int vis;
 
     private int privateField;
@@ -44,6 +48,14 @@ public class InstanceFieldReflection1 {
         return intValue;
     }
 
+    public short getShortValue() {
+        return shortValue;
+    }
+
+    public double getDoubleValue() {
+        return doubleValue;
+    }
+
     public int getPrivateField() {
         return privateField;
     }
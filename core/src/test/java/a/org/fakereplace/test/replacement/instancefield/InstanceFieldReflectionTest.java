@@ -41,7 +41,7 @@ public class InstanceFieldReflectionTest {
     public void testIntrospectorFlushesCache() throws IntrospectionException {
 
         BeanInfo info = Introspector.getBeanInfo(InstanceFieldReflection.class);
-        Assert.assertEquals(5, info.getPropertyDescriptors().length);
+        Assert.assertEquals(7, info.getPropertyDescriptors().length);
     }
 
     @Test
@@ -70,6 +70,33 @@ public class InstanceFieldReflectionTest {
         Assert.assertEquals(10, field.getLong(r));
     }
 
+    @Test
+    public void testWideningPrimitiveFieldByReflection() throws SecurityException, NoSuchFieldException, IllegalArgumentException, IllegalAccessException {
+        InstanceFieldReflection r = new InstanceFieldReflection();
+        Field shortField = InstanceFieldReflection.class.getDeclaredField("shortValue");
+        shortField.setByte(r, (byte) -3);
+        Assert.assertEquals(-3, r.getShortValue());
+        Assert.assertEquals(-3, shortField.getShort(r));
+        Assert.assertEquals(-3, shortField.getInt(r));
+        Assert.assertEquals(-3L, shortField.getLong(r));
+        Assert.assertEquals(-3.0, shortField.getDouble(r), 0);
+
+        Field doubleField = InstanceFieldReflection.class.getDeclaredField("doubleValue");
+        doubleField.setDouble(r, 2.5);
+        Assert.assertEquals(2.5, r.getDoubleValue(), 0);
+        Assert.assertEquals(2.5, doubleField.getDouble(r), 0);
+        doubleField.setInt(r, 7);
+        Assert.assertEquals(7.0, r.getDoubleValue(), 0);
+        doubleField.setFloat(r, 1.5f);
+        Assert.assertEquals(1.5, doubleField.getDouble(r), 0);
+        Assert.assertEquals(1.5, doubleField.get(r));
+
+        Field longField = InstanceFieldReflection.class.getDeclaredField("longValue");
+        longField.setInt(r, -12);
+        Assert.assertEquals(-12L, r.getLongValue());
+        Assert.assertEquals(-12f, longField.getFloat(r), 0);
+    }
+
     @Test
     public void testGettingInstanceFieldByReflection() throws SecurityException, NoSuchFieldException, IllegalArgumentException, IllegalAccessException {
         InstanceFieldReflection r = new InstanceFieldReflection();
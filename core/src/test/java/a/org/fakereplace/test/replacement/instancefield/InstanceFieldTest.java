@@ -52,6 +52,19 @@ public class InstanceFieldTest {
         Assert.assertEquals(20, type.getValue());
     }
 
+    @Test
+    public void testAddingPrimitiveInstanceFields() {
+        ClassReplacer rep = new ClassReplacer();
+        rep.queueClassForReplacement(PrimitiveFieldClass.class, PrimitiveFieldClass1.class);
+        rep.replaceQueuedClasses();
+        PrimitiveFieldClass type = new PrimitiveFieldClass();
+        Assert.assertEquals("false 0 0 0 0.0 0.0", type.describe());
+        type.update();
+        Assert.assertEquals("true -1 97 -2 1.5 -0.25", type.describe());
+        type.update();
+        Assert.assertEquals("false -1 97 -4 3.0 -0.5", type.describe());
+    }
+
     @Test
     public void testSettingObjectInstanceField() throws SecurityException, NoSuchMethodException, IllegalArgumentException, IllegalAccessException, InvocationTargetException {
         InstanceFieldClass ns = new InstanceFieldClass();
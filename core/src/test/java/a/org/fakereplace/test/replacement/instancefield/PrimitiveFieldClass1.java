@@ -0,0 +1,41 @@
+/*
+ * Copyright 2016, Stuart Douglas, and individual contributors as indicated
+ * by the @authors tag.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package a.org.fakereplace.test.replacement.instancefield;
+
+public class PrimitiveFieldClass1 {
+
+    boolean booleanField;
+    byte byteField;
+    char charField;
+    short shortField;
+    float floatField;
+    double doubleField;
+
+    public String describe() {
+        return booleanField + " " + byteField + " " + (int) charField + " " + shortField + " " + floatField + " " + doubleField;
+    }
+
+    public void update() {
+        booleanField = !booleanField;
+        byteField = -1;
+        charField = 'a';
+        shortField = (short) (shortField - 2);
+        floatField += 1.5f;
+        doubleField -= 0.25;
+    }
+}
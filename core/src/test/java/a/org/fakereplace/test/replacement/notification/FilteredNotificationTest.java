@@ -0,0 +1,72 @@
+/*
+ * Copyright 2016, Stuart Douglas, and individual contributors as indicated
+ * by the @authors tag.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package a.org.fakereplace.test.replacement.notification;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.fakereplace.api.ChangedClass;
+import org.fakereplace.api.ClassChangeAware;
+import org.fakereplace.api.ClassChangeFilter;
+import org.fakereplace.api.NewClassData;
+import org.fakereplace.core.Fakereplace;
+import org.junit.Assert;
+import org.junit.Test;
+import a.org.fakereplace.test.util.ClassReplacer;
+
+/**
+ * Tests that a ClassChangeAware is only notified about changes that match its filter
+ */
+public class FilteredNotificationTest {
+
+    @Test
+    public void testFilteredNotification() {
+        final FilteredAware aware = new FilteredAware();
+        Fakereplace.addClassChangeAware(aware);
+        try {
+            ClassReplacer r = new ClassReplacer();
+            r.queueClassForReplacement(FilteredClass.class, FilteredClass1.class);
+            r.replaceQueuedClasses();
+            Assert.assertEquals(2, new FilteredClass().value());
+            Assert.assertEquals(0, aware.count.get());
+
+            r = new ClassReplacer();
+            r.queueClassForReplacement(AnnotatedFilteredClass.class, AnnotatedFilteredClass1.class);
+            r.replaceQueuedClasses();
+            Assert.assertTrue(AnnotatedFilteredClass.class.isAnnotationPresent(FilteredAnnotation.class));
+            Assert.assertEquals(1, aware.count.get());
+        } finally {
+            Fakereplace.removeClassChangeAware(aware);
+        }
+    }
+
+    public static class FilteredAware implements ClassChangeAware {
+
+        final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public void afterChange(List<ChangedClass> changed, List<NewClassData> added) {
+            count.incrementAndGet();
+        }
+
+        @Override
+        public ClassChangeFilter getFilter() {
+            return ClassChangeFilter.annotatedWith(FilteredAnnotation.class);
+        }
+    }
+}
@@ -0,0 +1,119 @@
+/*
+ * Copyright 2016, Stuart Douglas, and individual contributors as indicated
+ * by the @authors tag.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package a.org.fakereplace.test.replacement.notification;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.fakereplace.api.ChangedClass;
+import org.fakereplace.api.ClassChangeAware;
+import org.fakereplace.api.NewClassData;
+import org.fakereplace.core.ClassChangeNotifier;
+import org.fakereplace.core.Fakereplace;
+import org.junit.Assert;
+import org.junit.Test;
+import a.org.fakereplace.test.util.ClassReplacer;
+
+/**
+ * Tests that ClassChangeAware instances that never return or that throw an Error can not stop later instances from
+ * being notified, even when there are more of them than notification threads, and that instances are notified with
+ * the context class loader of the thread that reported the change
+ */
+public class HangingNotificationTest {
+
+    private static final CountDownLatch release = new CountDownLatch(1);
+
+    @Test
+    public void testHangingNotification() {
+        System.setProperty("org.fakereplace.notification-timeout." + HangingAware.class.getName(), "200");
+        final ClassLoader loader = new ClassLoader(getClass().getClassLoader()) {
+        };
+        final RecordingAware recorder = new RecordingAware();
+        final ClassChangeAware[] awares = {new HangingAware(), new HangingAware(), new HangingAware(), new HangingAware(), new HangingAware(), new ErrorAware(), recorder};
+        for (ClassChangeAware aware : awares) {
+            Fakereplace.addClassChangeAware(aware);
+        }
+        final ClassLoader old = Thread.currentThread().getContextClassLoader();
+        Thread.currentThread().setContextClassLoader(loader);
+        try {
+            ClassReplacer r = new ClassReplacer();
+            r.queueClassForReplacement(HangingNotificationClass.class, HangingNotificationClass1.class);
+            r.replaceQueuedClasses();
+            Assert.assertEquals(2, new HangingNotificationClass().value());
+            Assert.assertEquals(1, recorder.count.get());
+
+            for (int i = 0; i < 5; ++i) {
+                Fakereplace.removeClassChangeAware(awares[i]);
+            }
+            r = new ClassReplacer();
+            r.queueClassForReplacement(HangingNotificationClass.class, HangingNotificationClass2.class);
+            r.replaceQueuedClasses();
+            Assert.assertEquals(3, new HangingNotificationClass().value());
+            Assert.assertEquals(2, recorder.count.get());
+
+            ClassChangeNotifier.instance().afterChange(Collections.emptyList(), Collections.emptyList());
+            Assert.assertEquals(3, recorder.count.get());
+            Assert.assertSame(loader, recorder.contextClassLoader);
+        } finally {
+            Thread.currentThread().setContextClassLoader(old);
+            release.countDown();
+            for (ClassChangeAware aware : awares) {
+                Fakereplace.removeClassChangeAware(aware);
+            }
+        }
+    }
+
+    public static class HangingAware implements ClassChangeAware {
+        @Override
+        public void afterChange(List<ChangedClass> changed, List<NewClassData> added) {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            }
+        }
+    }
+
+    public static class ErrorAware implements ClassChangeAware {
+        @Override
+        public void afterChange(List<ChangedClass> changed, List<NewClassData> added) {
+            throw new NoClassDefFoundError("thrown by " + ErrorAware.class.getName());
+        }
+    }
+
+    public static class RecordingAware implements ClassChangeAware {
+
+        final AtomicInteger count = new AtomicInteger();
+
+        volatile ClassLoader contextClassLoader;
+
+        @Override
+        public void afterChange(List<ChangedClass> changed, List<NewClassData> added) {
+            contextClassLoader = Thread.currentThread().getContextClassLoader();
+            count.incrementAndGet();
+        }
+
+        @Override
+        public Set<String> getDependencies() {
+            return Collections.singleton(ErrorAware.class.getName());
+        }
+    }
+}
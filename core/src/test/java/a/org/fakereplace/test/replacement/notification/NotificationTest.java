@@ -0,0 +1,90 @@
+/*
+ * Copyright 2016, Stuart Douglas, and individual contributors as indicated
+ * by the @authors tag.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package a.org.fakereplace.test.replacement.notification;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+import org.fakereplace.api.ChangedClass;
+import org.fakereplace.api.ClassChangeAware;
+import org.fakereplace.api.NewClassData;
+import org.fakereplace.core.Fakereplace;
+import org.junit.Assert;
+import org.junit.Test;
+import a.org.fakereplace.test.util.ClassReplacer;
+
+/**
+ * Tests that independent ClassChangeAware instances are notified concurrently, and that dependencies are respected
+ */
+public class NotificationTest {
+
+    private static final List<String> notified = Collections.synchronizedList(new ArrayList<>());
+
+    @Test
+    public void testConcurrentNotification() {
+        final ClassChangeAware[] awares = {new DependentAware(), new SlowAware(), new FastAware()};
+        for (ClassChangeAware aware : awares) {
+            Fakereplace.addClassChangeAware(aware);
+        }
+        try {
+            ClassReplacer r = new ClassReplacer();
+            r.queueClassForReplacement(NotificationClass.class, NotificationClass1.class);
+            r.replaceQueuedClasses();
+            Assert.assertEquals(2, new NotificationClass().value());
+            Assert.assertEquals(Arrays.asList("fast", "slow", "dependent"), notified);
+        } finally {
+            for (ClassChangeAware aware : awares) {
+                Fakereplace.removeClassChangeAware(aware);
+            }
+        }
+    }
+
+    public static class SlowAware implements ClassChangeAware {
+        @Override
+        public void afterChange(List<ChangedClass> changed, List<NewClassData> added) {
+            try {
+                Thread.sleep(500);
+            } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            }
+            notified.add("slow");
+        }
+    }
+
+    public static class FastAware implements ClassChangeAware {
+        @Override
+        public void afterChange(List<ChangedClass> changed, List<NewClassData> added) {
+            notified.add("fast");
+        }
+    }
+
+    public static class DependentAware implements ClassChangeAware {
+        @Override
+        public void afterChange(List<ChangedClass> changed, List<NewClassData> added) {
+            notified.add("dependent");
+        }
+
+        @Override
+        public Set<String> getDependencies() {
+            return Collections.singleton(SlowAware.class.getName());
+        }
+    }
+}
@@ -0,0 +1,53 @@
+/*
+ * Copyright 2016, Stuart Douglas, and individual contributors as indicated
+ * by the @authors tag.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package a.org.fakereplace.test.replacement.parallel;
+
+import org.junit.Assert;
+import org.junit.Test;
+import a.org.fakereplace.test.util.ClassReplacer;
+
+/**
+ * Tests replacing enough classes at once for them to be analysed in parallel, both for the redefined classes and for
+ * the added ones
+ */
+public class ParallelRedefinitionTest {
+
+    @Test
+    public void testParallelRedefinition() throws NoSuchMethodException {
+        ClassReplacer r = new ClassReplacer();
+        r.queueClassForReplacement(ParallelA.class, ParallelA1.class);
+        r.queueClassForReplacement(ParallelB.class, ParallelB1.class);
+        r.queueClassForReplacement(ParallelC.class, ParallelC1.class);
+        r.queueClassForReplacement(ParallelD.class, ParallelD1.class);
+        r.queueClassForReplacement(ParallelE.class, ParallelE1.class);
+        r.addNewClass(ParallelAddedA1.class, "a.org.fakereplace.test.replacement.parallel.ParallelAddedA");
+        r.addNewClass(ParallelAddedB1.class, "a.org.fakereplace.test.replacement.parallel.ParallelAddedB");
+        r.addNewClass(ParallelAddedC1.class, "a.org.fakereplace.test.replacement.parallel.ParallelAddedC");
+        r.addNewClass(ParallelAddedD1.class, "a.org.fakereplace.test.replacement.parallel.ParallelAddedD");
+        r.replaceQueuedClasses();
+
+        Assert.assertEquals("added a1", new ParallelA().value());
+        Assert.assertEquals("added b1", new ParallelB().value());
+        Assert.assertEquals("added c1", new ParallelC().value());
+        Assert.assertEquals("added d1", new ParallelD().value());
+        Assert.assertEquals("e1", new ParallelE().value());
+        for (Class<?> c : new Class[]{ParallelA.class, ParallelB.class, ParallelC.class, ParallelD.class, ParallelE.class}) {
+            Assert.assertEquals(String.class, c.getMethod("extra").getReturnType());
+        }
+    }
+}
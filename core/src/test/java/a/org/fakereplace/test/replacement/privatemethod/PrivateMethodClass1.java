@@ -29,4 +29,8 @@ public class PrivateMethodClass1 {
         return 1;
     }
 
+    int packageResult() {
+        return 2;
+    }
+
 }
@@ -53,4 +53,30 @@ public class PrivateMethodTest {
         PrivateMethodClass cls = new PrivateMethodClass();
         Assert.assertEquals(1, method.invoke(cls));
     }
+
+    @Test
+    public void testRepeatedInvocationChecksAccessEachTime() throws SecurityException, NoSuchMethodException, IllegalArgumentException, IllegalAccessException, InvocationTargetException {
+        PrivateMethodClass cls = new PrivateMethodClass();
+        Method accessible = PrivateMethodClass.class.getDeclaredMethod("realResult");
+        accessible.setAccessible(true);
+        for (int i = 0; i < 3; ++i) {
+            Assert.assertEquals(1, accessible.invoke(cls));
+        }
+        Method method = PrivateMethodClass.class.getDeclaredMethod("realResult");
+        for (int i = 0; i < 2; ++i) {
+            try {
+                method.invoke(cls);
+                Assert.fail();
+            } catch (IllegalAccessException expected) {
+            }
+        }
+    }
+
+    @Test
+    public void testPackagePrivateMethodAccessibleFromSamePackage() throws SecurityException, NoSuchMethodException, IllegalArgumentException, IllegalAccessException, InvocationTargetException {
+        Method method = PrivateMethodClass.class.getDeclaredMethod("packageResult");
+        PrivateMethodClass cls = new PrivateMethodClass();
+        Assert.assertEquals(2, method.invoke(cls));
+        Assert.assertEquals(2, method.invoke(cls));
+    }
 }
@@ -0,0 +1,62 @@
+/*
+ * Copyright 2016, Stuart Douglas, and individual contributors as indicated
+ * by the @authors tag.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package a.org.fakereplace.test.replacement.proxyreuse;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+
+import org.fakereplace.core.MemberProxies;
+import org.junit.Assert;
+import org.junit.Test;
+import a.org.fakereplace.test.util.ClassReplacer;
+
+/**
+ * Tests that the proxies of added members are reused when only the method bodies change
+ */
+public class ProxyReuseTest {
+
+    @Test
+    public void testProxiesReusedForBodyOnlyChange() throws Exception {
+        replace(ProxyReuseClass1.class);
+        assertVersion("first");
+
+        long reused = MemberProxies.getReusedProxyCount();
+        replace(ProxyReuseClass2.class);
+        assertVersion("second");
+        //the added field, method and static method are each reused once
+        Assert.assertEquals(reused + 3, MemberProxies.getReusedProxyCount());
+    }
+
+    private static void replace(Class<?> replacement) {
+        ClassReplacer r = new ClassReplacer();
+        r.queueClassForReplacement(ProxyReuseClass.class, replacement);
+        r.replaceQueuedClasses();
+    }
+
+    private static void assertVersion(String version) throws Exception {
+        ProxyReuseClass instance = new ProxyReuseClass();
+        Field field = ProxyReuseClass.class.getField("count");
+        Assert.assertEquals(ProxyReuseClass.class, field.getDeclaringClass());
+        field.set(instance, 10);
+        Method method = ProxyReuseClass.class.getMethod("added");
+        Assert.assertEquals(ProxyReuseClass.class, method.getDeclaringClass());
+        Assert.assertEquals(version + " 10", method.invoke(instance));
+        Method staticMethod = ProxyReuseClass.class.getMethod("addedStatic");
+        Assert.assertEquals(version, staticMethod.invoke(null));
+    }
+}
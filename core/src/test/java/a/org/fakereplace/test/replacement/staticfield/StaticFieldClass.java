@@ -25,4 +25,8 @@ public class StaticFieldClass {
     public static long incAndGet() {
         return 0;
     }
+
+    public static int getCounter() {
+        return -1;
+    }
 }
@@ -27,9 +27,15 @@ public class StaticFieldClass1 {
 
     static List<String> list = null;
 
+    private static int counter;
+
     public static long incAndGet() {
         longField++;
         return longField;
     }
 
+    public static int getCounter() {
+        return counter;
+    }
+
 }
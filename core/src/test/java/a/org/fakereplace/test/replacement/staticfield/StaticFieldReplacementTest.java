@@ -88,6 +88,16 @@ public class StaticFieldReplacementTest {
         Assert.assertTrue( !removedField);
     }
 
+    @Test
+    public void testAddedStaticFieldReflection() throws NoSuchFieldException, IllegalAccessException {
+        Field f = StaticFieldClass.class.getDeclaredField("counter");
+        f.setAccessible(true);
+        Assert.assertEquals(0, f.getInt(null));
+        f.setInt(null, 5);
+        Assert.assertEquals(5, StaticFieldClass.getCounter());
+        Assert.assertEquals(5, f.get(null));
+    }
+
     @Test
     public void testStaticFieldGenericType() throws SecurityException, NoSuchMethodException, IllegalArgumentException, IllegalAccessException, InvocationTargetException, NoSuchFieldException {
         Field f = StaticFieldClass.class.getDeclaredField("list");
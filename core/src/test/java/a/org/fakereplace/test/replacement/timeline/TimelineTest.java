@@ -0,0 +1,67 @@
+/*
+ * Copyright 2016, Stuart Douglas, and individual contributors as indicated
+ * by the @authors tag.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package a.org.fakereplace.test.replacement.timeline;
+
+import java.lang.management.ManagementFactory;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import javax.management.ObjectName;
+
+import org.fakereplace.core.ReplacementTimeline;
+import org.junit.Assert;
+import org.junit.Test;
+import a.org.fakereplace.test.util.ClassReplacer;
+
+public class TimelineTest {
+
+    @Test
+    public void testReplacementRecorded() throws Exception {
+        ClassReplacer r = new ClassReplacer();
+        r.queueClassForReplacement(TimelineClass.class, TimelineClass1.class);
+        r.replaceQueuedClasses();
+        Assert.assertEquals(2, new TimelineClass().value());
+
+        List<ReplacementTimeline.Cycle> cycles = ReplacementTimeline.getCycles();
+        Assert.assertFalse(cycles.isEmpty());
+        ReplacementTimeline.Cycle cycle = cycles.get(cycles.size() - 1);
+        List<String> stages = cycle.getStages().stream().map(ReplacementTimeline.Stage::getName).collect(Collectors.toList());
+        Assert.assertTrue(stages.toString(), stages.contains("redefinition started"));
+        Assert.assertTrue(stages.toString(), stages.contains("classes redefined"));
+        Assert.assertEquals("integration finished", stages.get(stages.size() - 1));
+
+        Long count = (Long) ManagementFactory.getPlatformMBeanServer().getAttribute(new ObjectName(ReplacementTimeline.OBJECT_NAME), "CycleCount");
+        Assert.assertTrue(count >= cycle.getId());
+    }
+
+    @Test
+    public void testLateMarkDoesNotOpenCycle() {
+        Assert.assertEquals(0, ReplacementTimeline.currentCycle());
+        final List<ReplacementTimeline.Cycle> before = ReplacementTimeline.getCycles();
+        ReplacementTimeline.mark("late stage");
+        ReplacementTimeline.mark(before.isEmpty() ? 1 : before.get(before.size() - 1).getId(), "late stage", System.nanoTime());
+        Assert.assertEquals(0, ReplacementTimeline.currentCycle());
+        final List<ReplacementTimeline.Cycle> after = ReplacementTimeline.getCycles();
+        Assert.assertEquals(before.size(), after.size());
+        for (ReplacementTimeline.Cycle cycle : after) {
+            for (ReplacementTimeline.Stage stage : cycle.getStages()) {
+                Assert.assertNotEquals("late stage", stage.getName());
+            }
+        }
+    }
+}
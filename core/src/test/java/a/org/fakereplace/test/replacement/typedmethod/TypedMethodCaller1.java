@@ -0,0 +1,38 @@
+/*
+ * Copyright 2016, Stuart Douglas, and individual contributors as indicated
+ * by the @authors tag.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package a.org.fakereplace.test.replacement.typedmethod;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class TypedMethodCaller1 {
+
+    public Object call() {
+        TypedMethodClass1 instance = new TypedMethodClass1("prefix", 10L);
+        List<Object> results = new ArrayList<>();
+        results.add(instance.getName());
+        results.add(instance.addLong(Long.MAX_VALUE - 5, 3));
+        results.add(instance.scale(1.5, 2.0f));
+        results.add(instance.matches('a', (byte) 1, (short) 2));
+        results.add(instance.concat("-", 7, 2));
+        instance.nothing();
+        results.add(instance.manyReferences("a", "b", "c", "d", "e"));
+        results.add(TypedMethodClass1.half(-3.0f));
+        return results;
+    }
+}
@@ -0,0 +1,66 @@
+/*
+ * Copyright 2016, Stuart Douglas, and individual contributors as indicated
+ * by the @authors tag.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package a.org.fakereplace.test.replacement.typedmethod;
+
+public class TypedMethodClass1 {
+
+    private final String name;
+
+    public TypedMethodClass1() {
+        this.name = "default";
+    }
+
+    public TypedMethodClass1(String prefix, long value) {
+        this.name = prefix + value;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public long addLong(long a, int b) {
+        return a + b;
+    }
+
+    public double scale(double value, float factor) {
+        return value * factor;
+    }
+
+    public boolean matches(char c, byte b, short s) {
+        return c == 'a' && b == 1 && s == 2;
+    }
+
+    public String concat(String a, Object b, int count) {
+        StringBuilder sb = new StringBuilder(name);
+        for (int i = 0; i < count; ++i) {
+            sb.append(a).append(b);
+        }
+        return sb.toString();
+    }
+
+    public void nothing() {
+    }
+
+    public String manyReferences(String a, String b, String c, String d, String e) {
+        return a + b + c + d + e;
+    }
+
+    public static float half(float value) {
+        return value / 2;
+    }
+}
@@ -0,0 +1,68 @@
+/*
+ * Copyright 2016, Stuart Douglas, and individual contributors as indicated
+ * by the @authors tag.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package a.org.fakereplace.test.replacement.typedmethod;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import a.org.fakereplace.test.util.ClassReplacer;
+
+/**
+ * Tests calls to added methods and constructors that go through the typed delegators
+ */
+public class TypedMethodTest {
+
+    @BeforeClass
+    public static void setup() {
+        ClassReplacer rep = new ClassReplacer();
+        rep.queueClassForReplacement(TypedMethodClass.class, TypedMethodClass1.class);
+        rep.queueClassForReplacement(TypedMethodCaller.class, TypedMethodCaller1.class);
+        rep.replaceQueuedClasses();
+    }
+
+    @Test
+    public void testDirectCalls() {
+        List<?> results = (List<?>) new TypedMethodCaller().call();
+        Assert.assertEquals(Arrays.asList("prefix10", Long.MAX_VALUE - 2, 3.0, true, "prefix10-7-7", "abcde", -1.5f), results);
+    }
+
+    @Test
+    public void testReflectiveCalls() throws Exception {
+        Constructor<?> constructor = TypedMethodClass.class.getConstructor(String.class, long.class);
+        Object instance = constructor.newInstance("p", -1L);
+        Assert.assertEquals("p-1", ((TypedMethodClass) instance).getName());
+
+        Method method = TypedMethodClass.class.getMethod("addLong", long.class, int.class);
+        Assert.assertEquals(Long.MIN_VALUE, method.invoke(instance, Long.MIN_VALUE + 1, -1));
+        method = TypedMethodClass.class.getMethod("scale", double.class, float.class);
+        Assert.assertEquals(-0.75, method.invoke(instance, 0.5, -1.5f));
+        method = TypedMethodClass.class.getMethod("matches", char.class, byte.class, short.class);
+        Assert.assertEquals(false, method.invoke(instance, 'b', (byte) 1, (short) 2));
+        method = TypedMethodClass.class.getMethod("concat", String.class, Object.class, int.class);
+        Assert.assertEquals("p-1", method.invoke(instance, "x", "y", 0));
+        method = TypedMethodClass.class.getMethod("nothing");
+        Assert.assertNull(method.invoke(instance));
+        method = TypedMethodClass.class.getMethod("half", float.class);
+        Assert.assertEquals(4.0f, method.invoke(null, 8.0f));
+    }
+}
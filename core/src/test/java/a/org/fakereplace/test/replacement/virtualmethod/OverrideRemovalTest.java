@@ -0,0 +1,50 @@
+/*
+ * Copyright 2016, Stuart Douglas, and individual contributors as indicated
+ * by the @authors tag.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package a.org.fakereplace.test.replacement.virtualmethod;
+
+import org.junit.Assert;
+import org.junit.Test;
+import a.org.fakereplace.test.util.ClassReplacer;
+
+/**
+ * Tests that an override that is added and then removed again is picked up by existing instances, after the decision
+ * to not delegate has already been cached for their class
+ */
+public class OverrideRemovalTest {
+
+    @Test
+    public void testAddAndRemoveOverride() {
+        final OverrideParent child = new OverrideChild();
+        final OverrideParent parent = new OverrideParent();
+        Assert.assertEquals("parent", child.getName());
+
+        ClassReplacer r = new ClassReplacer();
+        r.queueClassForReplacement(OverrideChild.class, OverrideChild1.class);
+        r.replaceQueuedClasses();
+        Assert.assertEquals("child", child.getName());
+        Assert.assertEquals("child", new OverrideChild().getName());
+        Assert.assertEquals("parent", parent.getName());
+
+        r = new ClassReplacer();
+        r.queueClassForReplacement(OverrideChild.class, OverrideChild2.class);
+        r.replaceQueuedClasses();
+        Assert.assertEquals("parent", child.getName());
+        Assert.assertEquals("parent", new OverrideChild().getName());
+        Assert.assertEquals("parent", parent.getName());
+    }
+}
@@ -0,0 +1,57 @@
+/*
+ * Copyright 2016, Stuart Douglas, and individual contributors as indicated
+ * by the @authors tag.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package a.org.fakereplace.test.replacement.virtualmethod;
+
+public class SwitchDispatchClass1 {
+
+    public String name() {
+        return "original";
+    }
+
+    public String dense(int value) {
+        switch (value) {
+            case 1:
+                return "one";
+            case 2:
+                return "two";
+            case 3:
+                return "three";
+            default:
+                return "other";
+        }
+    }
+
+    public String sparse(long value) {
+        switch ((int) value) {
+            case 10:
+                return "ten";
+            case 1000:
+                return "thousand";
+            default:
+                return "other";
+        }
+    }
+
+    public int sum(int a, int b) {
+        return a + b;
+    }
+
+    public static String staticName(String prefix) {
+        return prefix + "static";
+    }
+}
@@ -0,0 +1,54 @@
+/*
+ * Copyright 2016, Stuart Douglas, and individual contributors as indicated
+ * by the @authors tag.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package a.org.fakereplace.test.replacement.virtualmethod;
+
+import java.lang.reflect.Method;
+
+import org.junit.Assert;
+import org.junit.Test;
+import a.org.fakereplace.test.util.ClassReplacer;
+
+/**
+ * Tests that added methods containing switch statements of their own are still dispatched correctly
+ */
+public class SwitchDispatchTest {
+
+    @Test
+    public void testAddedMethodsWithSwitches() throws Exception {
+        ClassReplacer cr = new ClassReplacer();
+        cr.queueClassForReplacement(SwitchDispatchClass.class, SwitchDispatchClass1.class);
+        cr.replaceQueuedClasses();
+
+        SwitchDispatchClass instance = new SwitchDispatchClass();
+        Method dense = SwitchDispatchClass.class.getMethod("dense", int.class);
+        Method sparse = SwitchDispatchClass.class.getMethod("sparse", long.class);
+        Method sum = SwitchDispatchClass.class.getMethod("sum", int.class, int.class);
+        Method staticName = SwitchDispatchClass.class.getMethod("staticName", String.class);
+        for (int i = 0; i < 3; ++i) {
+            Assert.assertEquals("one", dense.invoke(instance, 1));
+            Assert.assertEquals("three", dense.invoke(instance, 3));
+            Assert.assertEquals("other", dense.invoke(instance, 4));
+            Assert.assertEquals("ten", sparse.invoke(instance, 10L));
+            Assert.assertEquals("thousand", sparse.invoke(instance, 1000L));
+            Assert.assertEquals("other", sparse.invoke(instance, 11L));
+            Assert.assertEquals(7, sum.invoke(instance, 3, 4));
+            Assert.assertEquals("astatic", staticName.invoke(null, "a"));
+        }
+        Assert.assertEquals("original", instance.name());
+    }
+}
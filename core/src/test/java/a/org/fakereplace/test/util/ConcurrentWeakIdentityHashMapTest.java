@@ -0,0 +1,59 @@
+/*
+ * Copyright 2016, Stuart Douglas, and individual contributors as indicated
+ * by the @authors tag.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package a.org.fakereplace.test.util;
+
+import java.net.URL;
+import java.net.URLClassLoader;
+
+import org.fakereplace.util.ConcurrentWeakIdentityHashMap;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ConcurrentWeakIdentityHashMapTest {
+
+    @Test
+    public void testKeysAreComparedByIdentity() {
+        final ConcurrentWeakIdentityHashMap<String, String> map = new ConcurrentWeakIdentityHashMap<>();
+        final String key = new String("key");
+        final String equalKey = new String("key");
+        map.put(key, "value");
+        Assert.assertEquals("value", map.get(key));
+        Assert.assertNull(map.get(equalKey));
+        Assert.assertEquals("value", map.computeIfAbsent(key, (k) -> "other"));
+        Assert.assertEquals("other", map.computeIfAbsent(equalKey, (k) -> "other"));
+        Assert.assertEquals(2, map.size());
+        Assert.assertEquals("value", map.remove(key));
+        Assert.assertNull(map.get(key));
+    }
+
+    @Test
+    public void testCollectedLoaderIsRemoved() throws InterruptedException {
+        final ConcurrentWeakIdentityHashMap<ClassLoader, Boolean> map = new ConcurrentWeakIdentityHashMap<>();
+        ClassLoader loader = new URLClassLoader(new URL[0], null);
+        map.put(loader, Boolean.TRUE);
+        Assert.assertEquals(Boolean.TRUE, map.get(loader));
+        Assert.assertEquals(1, map.size());
+
+        loader = null;
+        for (int i = 0; i < 50 && map.size() != 0; ++i) {
+            System.gc();
+            Thread.sleep(10);
+        }
+        Assert.assertEquals(0, map.size());
+    }
+}
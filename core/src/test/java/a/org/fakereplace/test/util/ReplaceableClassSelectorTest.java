@@ -0,0 +1,90 @@
+/*
+ * Copyright 2016, Stuart Douglas, and individual contributors as indicated
+ * by the @authors tag.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package a.org.fakereplace.test.util;
+
+import java.security.ProtectionDomain;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.fakereplace.ReplaceableClassSelector;
+import org.fakereplace.core.Fakereplace;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests that replaceable class selectors are consulted and their decisions are cached per class loader, without
+ * letting a decision made without a protection domain hide one made with it
+ */
+public class ReplaceableClassSelectorTest {
+
+    private static final String NAME = "selector.test.SelectedClass";
+
+    @Test
+    public void testSelectorDecisionsAreCached() {
+        final DomainSelector selector = new DomainSelector();
+        final ClassLoader loader = new ClassLoader(getClass().getClassLoader()) {
+        };
+        final ProtectionDomain domain = new ProtectionDomain(null, null);
+        Fakereplace.addReplaceableClassSelector(selector);
+        try {
+            Assert.assertFalse(Fakereplace.isClassReplaceable(NAME, loader));
+            Assert.assertFalse(Fakereplace.isClassReplaceable(NAME, loader));
+            Assert.assertEquals(1, selector.count.get());
+
+            //a decision made without a domain does not stop the selector from being asked with one
+            Assert.assertTrue(Fakereplace.isClassReplaceable(NAME, loader, domain));
+            Assert.assertEquals(2, selector.count.get());
+            Assert.assertTrue(Fakereplace.isClassReplaceable(NAME, loader, domain));
+            Assert.assertTrue(Fakereplace.isClassReplaceable(NAME, loader));
+            Assert.assertEquals(2, selector.count.get());
+
+            //a different loader gets its own decision
+            Assert.assertTrue(Fakereplace.isClassReplaceable(NAME, new ClassLoader(getClass().getClassLoader()) {
+            }, domain));
+            Assert.assertEquals(3, selector.count.get());
+
+            //classes of the bootstrap loader are not cached
+            Assert.assertTrue(Fakereplace.isClassReplaceable(NAME, null, domain));
+            Assert.assertTrue(Fakereplace.isClassReplaceable(NAME, null, domain));
+            Assert.assertEquals(5, selector.count.get());
+        } finally {
+            Fakereplace.removeReplaceableClassSelector(selector);
+        }
+        //removing the selector discards its decisions
+        Assert.assertFalse(Fakereplace.isClassReplaceable(NAME, loader, domain));
+        Assert.assertEquals(5, selector.count.get());
+    }
+
+    private static final class DomainSelector implements ReplaceableClassSelector {
+
+        final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public boolean isClassReplaceable(String className, ClassLoader loader) {
+            return isClassReplaceable(className, loader, null);
+        }
+
+        @Override
+        public boolean isClassReplaceable(String className, ClassLoader loader, ProtectionDomain protectionDomain) {
+            if (!className.equals(NAME)) {
+                return false;
+            }
+            count.incrementAndGet();
+            return protectionDomain != null;
+        }
+    }
+}
@@ -36,6 +36,7 @@ import java.util.Map;
 import java.util.Set;
 
 import org.fakereplace.core.Fakereplace;
+import org.fakereplace.core.ReplacementTimeline;
 import org.fakereplace.data.ClassLoaderData;
 import org.fakereplace.replacement.AddedClass;
 import org.fakereplace.util.FileReader;
@@ -96,6 +97,7 @@ class FileSystemWatcher {
                         }
                     }
                 }
+                ReplacementTimeline.mark("class files read");
                 Fakereplace.redefine(changedClasses.toArray(new ClassDefinition[changedClasses.size()]), addedClasses.toArray(new AddedClass[addedClasses.size()]));
             } catch (Exception e) {
                 e.printStackTrace();
@@ -103,10 +105,16 @@ class FileSystemWatcher {
         }
     }
 
-    synchronized void addClassFile(String className, ClassLoader classLoader) {
+    synchronized void addClassFiles(List<String> classNames, ClassLoader classLoader) {
         if (classLoader == null) {
             return;
         }
+        for (String className : classNames) {
+            addClassFile(className, classLoader);
+        }
+    }
+
+    private void addClassFile(String className, ClassLoader classLoader) {
         URL resource = classLoader.getResource(className.replace(".", "/") + ".class");
         if (resource == null) {
             return;
@@ -17,6 +17,8 @@
 
 package org.fakereplace.integration.filewatcher;
 
+import java.util.List;
+
 import org.fakereplace.Extension;
 
 public class FileSystemWatcherExtension implements Extension {
@@ -24,7 +26,12 @@ public class FileSystemWatcherExtension implements Extension {
     private final FileSystemWatcher watcher = new FileSystemWatcher();
 
     @Override
-    public void replaceableClassFileLoaded(String className, ClassLoader classLoader) {
-        watcher.addClassFile(className, classLoader);
+    public boolean isReplaceableClassFileLoadedEnabled() {
+        return true;
+    }
+
+    @Override
+    public void replaceableClassFilesLoaded(List<String> classNames, ClassLoader classLoader) {
+        watcher.addClassFiles(classNames, classLoader);
     }
 }
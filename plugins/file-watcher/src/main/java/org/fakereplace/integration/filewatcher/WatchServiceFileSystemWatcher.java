@@ -44,6 +44,8 @@ import java.util.Set;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Stream;
 
+import org.fakereplace.core.ReplacementTimeline;
+
 import com.sun.nio.file.SensitivityWatchEventModifier;
 
 public class WatchServiceFileSystemWatcher implements Runnable, AutoCloseable {
@@ -75,6 +77,7 @@ public class WatchServiceFileSystemWatcher implements Runnable, AutoCloseable {
         while (!stopped) {
             try {
                 final WatchKey key = watchService.take();
+                final long detected = System.nanoTime();
                 if (key != null) {
                     try {
                         PathData pathData = pathDataByKey.get(key);
@@ -144,6 +147,9 @@ public class WatchServiceFileSystemWatcher implements Runnable, AutoCloseable {
                             results.addAll(newEvents);
 
                             if (!results.isEmpty()) {
+                                ReplacementTimeline.begin(detected);
+                                ReplacementTimeline.mark("file change detected", detected);
+                                ReplacementTimeline.mark("file changes settled");
                                 for (FileChangeCallback callback : pathData.callbacks) {
                                     invokeCallback(callback, results);
                                 }
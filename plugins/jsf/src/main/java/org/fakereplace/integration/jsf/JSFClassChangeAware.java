@@ -26,6 +26,7 @@ import java.util.Set;
 
 import org.fakereplace.api.ChangedClass;
 import org.fakereplace.api.ClassChangeAware;
+import org.fakereplace.api.ClassChangeFilter;
 import org.fakereplace.api.NewClassData;
 import org.fakereplace.data.InstanceTracker;
 import org.fakereplace.logging.Logger;
@@ -46,6 +47,11 @@ public class JSFClassChangeAware implements ClassChangeAware {
         return getField(clazz.getSuperclass(), name);
     }
 
+    @Override
+    public ClassChangeFilter getFilter() {
+        return ClassChangeFilter.changedClasses();
+    }
+
     @Override
     public void afterChange(List<ChangedClass> changed, List<NewClassData> addedOO) {
         Set<?> data = InstanceTracker.get("javax.el.BeanELResolver");
@@ -25,6 +25,7 @@ import java.util.Set;
 
 import org.fakereplace.api.ChangedClass;
 import org.fakereplace.api.ClassChangeAware;
+import org.fakereplace.api.ClassChangeFilter;
 import org.fakereplace.api.NewClassData;
 import org.fakereplace.data.InstanceTracker;
 
@@ -54,6 +55,11 @@ public class MetawidgetClassChangeAware implements ClassChangeAware {
     /**
      * clear the action and properties caches
      */
+    @Override
+    public ClassChangeFilter getFilter() {
+        return ClassChangeFilter.changedClasses();
+    }
+
     @Override
     public void afterChange(List<ChangedClass> changed, List<NewClassData> added) {
         Set<?> data = InstanceTracker.get(MetawidgetExtension.BASE_ACTION_STYLE);
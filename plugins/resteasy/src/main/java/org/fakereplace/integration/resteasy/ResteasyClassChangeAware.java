@@ -28,6 +28,7 @@ import javax.ws.rs.Path;
 
 import org.fakereplace.api.ChangedClass;
 import org.fakereplace.api.ClassChangeAware;
+import org.fakereplace.api.ClassChangeFilter;
 import org.fakereplace.api.NewClassData;
 import org.fakereplace.data.InstanceTracker;
 import org.fakereplace.logging.Logger;
@@ -38,6 +39,11 @@ public class ResteasyClassChangeAware implements ClassChangeAware {
     private static final String RESOURCES = "resteasy.scanned.resources";
     private final Logger logger = Logger.getLogger(ResteasyClassChangeAware.class);
 
+    @Override
+    public ClassChangeFilter getFilter() {
+        return ClassChangeFilter.annotatedWith(Path.class);
+    }
+
     @Override
     public void afterChange(final List<ChangedClass> changed, final List<NewClassData> added) {
         boolean requiresRestart = false;
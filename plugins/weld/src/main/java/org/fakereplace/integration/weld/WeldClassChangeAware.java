@@ -29,6 +29,7 @@ import javax.enterprise.inject.spi.Bean;
 
 import org.fakereplace.api.ChangedClass;
 import org.fakereplace.api.ClassChangeAware;
+import org.fakereplace.api.ClassChangeFilter;
 import org.fakereplace.api.NewClassData;
 import org.fakereplace.integration.weld.javassist.WeldProxyClassLoadingDelegate;
 
@@ -39,6 +40,11 @@ public class WeldClassChangeAware implements ClassChangeAware {
      */
     private static final Map<Object, Object> proxyFactories = Collections.synchronizedMap(new WeakHashMap<>());
 
+    @Override
+    public ClassChangeFilter getFilter() {
+        return ClassChangeFilter.changedClasses();
+    }
+
     @Override
     public void afterChange(List<ChangedClass> changed, List<NewClassData> added) {
         ClassLoader oldCl = null;
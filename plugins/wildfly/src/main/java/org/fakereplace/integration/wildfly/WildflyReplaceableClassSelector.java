@@ -17,6 +17,7 @@
 package org.fakereplace.integration.wildfly;
 
 import org.fakereplace.ReplaceableClassSelector;
+import org.fakereplace.util.ConcurrentWeakIdentityHashMap;
 import org.jboss.modules.ModuleClassLoader;
 
 /**
@@ -24,12 +25,15 @@ import org.jboss.modules.ModuleClassLoader;
  */
 public class WildflyReplaceableClassSelector implements ReplaceableClassSelector {
 
+    /**
+     * Every class in a module gets the same answer, so it is only worked out once per module class loader
+     */
+    private final ConcurrentWeakIdentityHashMap<ClassLoader, Boolean> deploymentLoaders = new ConcurrentWeakIdentityHashMap<>();
+
     @Override
     public boolean isClassReplaceable(final String className, final ClassLoader loader) {
         if (loader instanceof ModuleClassLoader) {
-            if (((ModuleClassLoader) loader).getModule().getIdentifier().toString().startsWith("deployment.")) {
-                return true;
-            }
+            return deploymentLoaders.computeIfAbsent(loader, (l) -> ((ModuleClassLoader) l).getModule().getIdentifier().toString().startsWith("deployment."));
         }
         return false;
     }
@@ -25,6 +25,7 @@ import javax.persistence.Entity;
 
 import org.fakereplace.api.ChangedClass;
 import org.fakereplace.api.ClassChangeAware;
+import org.fakereplace.api.ClassChangeFilter;
 import org.fakereplace.api.NewClassData;
 import org.fakereplace.data.InstanceTracker;
 import org.jboss.as.jpa.service.PersistenceUnitServiceImpl;
@@ -43,6 +44,11 @@ import org.jboss.msc.service.StopContext;
  */
 public class WildflyHibernate5ClassChangeAware implements ClassChangeAware {
 
+    @Override
+    public ClassChangeFilter getFilter() {
+        return ClassChangeFilter.annotatedWith(Entity.class);
+    }
+
     @Override
     public void afterChange(final List<ChangedClass> changed, final List<NewClassData> added) {
         boolean replace = false;